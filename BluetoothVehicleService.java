@@ -29,9 +29,6 @@ import android.util.Log;
 import androidx.core.app.NotificationCompat;
 import com.miletrackerpro.app.MainActivity;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -43,7 +40,6 @@ import java.util.Set;
 public class BluetoothVehicleService extends Service {
     private static final String TAG = "BluetoothVehicleService";
     private static final String PREFS_NAME = "BluetoothVehiclePrefs";
-    private static final String VEHICLE_REGISTRY_KEY = "vehicle_registry";
     private static final String CHANNEL_ID = "BluetoothVehicleService";
     private static final int NOTIFICATION_ID = 1001;
     
@@ -54,8 +50,8 @@ public class BluetoothVehicleService extends Service {
     private SharedPreferences prefs;
     private Handler handler;
     
-    // Vehicle registry - maps MAC addresses to vehicle info
-    private Map<String, VehicleInfo> vehicleRegistry = new HashMap<>();
+    // Vehicle registry - shared with MainActivity, keyed by MAC address
+    private VehicleRegistry vehicleRegistry;
     
     // Current connection state
     private VehicleInfo currentVehicle;
@@ -245,12 +241,11 @@ public class BluetoothVehicleService extends Service {
         Set<BluetoothDevice> bondedDevices = bluetoothAdapter.getBondedDevices();
         for (BluetoothDevice device : bondedDevices) {
             // Check if device is a registered vehicle
-            if (vehicleRegistry.containsKey(device.getAddress())) {
+            if (vehicleRegistry.contains(device.getAddress())) {
                 // Use reflection to check if device is connected (Android limitation)
                 try {
                     boolean isConnected = (boolean) device.getClass().getMethod("isConnected").invoke(device);
                     if (isConnected && currentVehicle == null) {
-                        VehicleInfo vehicle = vehicleRegistry.get(device.getAddress());
                         onDeviceConnected(device);
                     }
                 } catch (Exception e) {
@@ -263,8 +258,8 @@ public class BluetoothVehicleService extends Service {
     private void onDeviceConnected(BluetoothDevice device) {
         Log.d(TAG, "Device connected: " + device.getName() + " (" + device.getAddress() + ")");
         
-        if (vehicleRegistry.containsKey(device.getAddress())) {
-            VehicleInfo vehicle = vehicleRegistry.get(device.getAddress());
+        VehicleInfo vehicle = lookupVehicle(device.getAddress());
+        if (vehicle != null) {
             currentVehicle = vehicle;
             
             // Update notification
@@ -347,14 +342,8 @@ public class BluetoothVehicleService extends Service {
     private void registerVehicle(String deviceName, String macAddress, String vehicleType) {
         Log.d(TAG, "Registering vehicle: " + deviceName + " (" + vehicleType + ")");
         
-        VehicleInfo vehicle = new VehicleInfo();
-        vehicle.macAddress = macAddress;
-        vehicle.deviceName = deviceName;
-        vehicle.vehicleType = vehicleType;
-        vehicle.registrationTime = System.currentTimeMillis();
-        
-        vehicleRegistry.put(macAddress, vehicle);
-        saveVehicleRegistry();
+        VehicleInfo vehicle = new VehicleInfo(macAddress, deviceName, vehicleType);
+        vehicleRegistry.register(vehicle.toRegistryEntry());
         
         // Send broadcast to MainActivity
         Intent intent = new Intent("com.miletrackerpro.VEHICLE_REGISTERED");
@@ -367,47 +356,15 @@ public class BluetoothVehicleService extends Service {
     }
     
     private void loadVehicleRegistry() {
-        try {
-            String registryJson = prefs.getString(VEHICLE_REGISTRY_KEY, "{}");
-            JSONObject registry = new JSONObject(registryJson);
-            
-            for (String macAddress : registry.keys()) {
-                JSONObject vehicleJson = registry.getJSONObject(macAddress);
-                VehicleInfo vehicle = new VehicleInfo();
-                vehicle.macAddress = macAddress;
-                vehicle.deviceName = vehicleJson.optString("deviceName", "Unknown");
-                vehicle.vehicleType = vehicleJson.optString("vehicleType", "Personal");
-                vehicle.registrationTime = vehicleJson.optLong("registrationTime", System.currentTimeMillis());
-                
-                vehicleRegistry.put(macAddress, vehicle);
-                Log.d(TAG, "Loaded vehicle: " + vehicle.deviceName + " (" + vehicle.vehicleType + ")");
-            }
-            
-            Log.d(TAG, "Vehicle registry loaded: " + vehicleRegistry.size() + " vehicles");
-        } catch (JSONException e) {
-            Log.e(TAG, "Error loading vehicle registry", e);
-        }
+        // Parsed once per process and shared with MainActivity; the first load
+        // also merges in the registry this service used to keep in PREFS_NAME
+        vehicleRegistry = VehicleRegistry.getInstance(this);
+        Log.d(TAG, "Vehicle registry loaded: " + vehicleRegistry.size() + " vehicles");
     }
     
-    private void saveVehicleRegistry() {
-        try {
-            JSONObject registry = new JSONObject();
-            
-            for (Map.Entry<String, VehicleInfo> entry : vehicleRegistry.entrySet()) {
-                VehicleInfo vehicle = entry.getValue();
-                JSONObject vehicleJson = new JSONObject();
-                vehicleJson.put("deviceName", vehicle.deviceName);
-                vehicleJson.put("vehicleType", vehicle.vehicleType);
-                vehicleJson.put("registrationTime", vehicle.registrationTime);
-                
-                registry.put(entry.getKey(), vehicleJson);
-            }
-            
-            prefs.edit().putString(VEHICLE_REGISTRY_KEY, registry.toString()).apply();
-            Log.d(TAG, "Vehicle registry saved: " + vehicleRegistry.size() + " vehicles");
-        } catch (JSONException e) {
-            Log.e(TAG, "Error saving vehicle registry", e);
-        }
+    private VehicleInfo lookupVehicle(String macAddress) {
+        VehicleRegistry.Vehicle entry = vehicleRegistry.get(macAddress);
+        return entry != null ? VehicleInfo.fromRegistry(entry) : null;
     }
     
     public static class VehicleInfo {
@@ -450,6 +407,21 @@ public class BluetoothVehicleService extends Service {
             if (expirationTime == 0) return false;
             return System.currentTimeMillis() > expirationTime;
         }
+        
+        static VehicleInfo fromRegistry(VehicleRegistry.Vehicle entry) {
+            VehicleInfo vehicle = new VehicleInfo(entry.macAddress, entry.deviceName, entry.vehicleType);
+            vehicle.registrationTime = entry.registrationTime;
+            vehicle.expirationTime = entry.expirationTime;
+            if (entry.suggestedCategory != null) {
+                vehicle.suggestedCategory = entry.suggestedCategory;
+            }
+            return vehicle;
+        }
+        
+        VehicleRegistry.Vehicle toRegistryEntry() {
+            return new VehicleRegistry.Vehicle(macAddress, deviceName, vehicleType,
+                                               registrationTime, expirationTime, suggestedCategory);
+        }
     }
     
     public BluetoothVehicleService(Context context) {
@@ -631,14 +603,13 @@ public class BluetoothVehicleService extends Service {
             Log.d(TAG, "Checking device connection: " + deviceName + " (" + macAddress + ")");
             
             // Check if this is a registered vehicle
-            VehicleInfo vehicleInfo = vehicleRegistry.get(macAddress);
+            VehicleInfo vehicleInfo = lookupVehicle(macAddress);
             if (vehicleInfo != null) {
                 Log.d(TAG, "Found registered vehicle: " + vehicleInfo.deviceName);
                 
                 if (vehicleInfo.isExpired()) {
                     // Remove expired vehicle
                     vehicleRegistry.remove(macAddress);
-                    saveVehicleRegistry();
                     Log.d(TAG, "Removed expired vehicle: " + vehicleInfo.deviceName);
                     return;
                 }
@@ -726,7 +697,7 @@ public class BluetoothVehicleService extends Service {
             
             // ENHANCED VEHICLE DETECTION: For registered vehicles, assume connection if device recently appeared
             // This addresses issues with Uconnect and other vehicle systems that don't use standard profiles
-            VehicleInfo vehicleInfo = vehicleRegistry.get(macAddress);
+            VehicleInfo vehicleInfo = lookupVehicle(macAddress);
             if (vehicleInfo != null && isPaired) {
                 Log.d(TAG, "Registered vehicle detected and paired - assuming active connection: " + deviceName);
                 return true;
@@ -919,8 +890,7 @@ public class BluetoothVehicleService extends Service {
     
     public void registerVehicle(String macAddress, String deviceName, String vehicleType) {
         VehicleInfo vehicle = new VehicleInfo(macAddress, deviceName, vehicleType);
-        vehicleRegistry.put(macAddress, vehicle);
-        saveVehicleRegistry();
+        vehicleRegistry.register(vehicle.toRegistryEntry());
         
         Log.d(TAG, "Vehicle registered: " + deviceName + " (" + vehicleType + ")");
         
@@ -931,15 +901,18 @@ public class BluetoothVehicleService extends Service {
     }
     
     public void unregisterVehicle(String macAddress) {
-        VehicleInfo vehicle = vehicleRegistry.remove(macAddress);
-        if (vehicle != null) {
-            saveVehicleRegistry();
+        VehicleRegistry.Vehicle vehicle = vehicleRegistry.get(macAddress);
+        if (vehicle != null && vehicleRegistry.remove(macAddress)) {
             Log.d(TAG, "Vehicle unregistered: " + vehicle.deviceName);
         }
     }
     
     public Map<String, VehicleInfo> getRegisteredVehicles() {
-        return new HashMap<>(vehicleRegistry);
+        Map<String, VehicleInfo> vehicles = new HashMap<>();
+        for (VehicleRegistry.Vehicle entry : vehicleRegistry.getAll()) {
+            vehicles.put(entry.macAddress, VehicleInfo.fromRegistry(entry));
+        }
+        return vehicles;
     }
     
     public VehicleInfo getCurrentVehicle() {
@@ -947,73 +920,21 @@ public class BluetoothVehicleService extends Service {
     }
     
     private void loadVehicleRegistry() {
-        String registryJson = prefs.getString(VEHICLE_REGISTRY_KEY, "{}");
-        Log.d(TAG, "Loading vehicle registry from: " + registryJson);
-        
-        try {
-            JSONObject registry = new JSONObject(registryJson);
-            vehicleRegistry.clear();
-            
-            java.util.Iterator<String> keys = registry.keys();
-            while (keys.hasNext()) {
-                String macAddress = keys.next();
-                JSONObject vehicleJson = registry.getJSONObject(macAddress);
-                VehicleInfo vehicle = new VehicleInfo(
-                    macAddress,
-                    vehicleJson.getString("deviceName"),
-                    vehicleJson.getString("vehicleType")
-                );
-                vehicle.registrationTime = vehicleJson.optLong("registrationTime", System.currentTimeMillis());
-                vehicle.expirationTime = vehicleJson.optLong("expirationTime", 0);
-                vehicle.suggestedCategory = vehicleJson.optString("suggestedCategory", "Personal");
-                
-                vehicleRegistry.put(macAddress, vehicle);
-                Log.d(TAG, "Loaded vehicle: " + vehicle.deviceName + " (" + macAddress + ")");
-            }
-            
-            Log.d(TAG, "Successfully loaded " + vehicleRegistry.size() + " vehicles from registry");
-        } catch (JSONException e) {
-            Log.e(TAG, "Error loading vehicle registry: " + e.getMessage());
-        }
-    }
-    
-    private void saveVehicleRegistry() {
-        try {
-            JSONObject registry = new JSONObject();
-            for (Map.Entry<String, VehicleInfo> entry : vehicleRegistry.entrySet()) {
-                VehicleInfo vehicle = entry.getValue();
-                JSONObject vehicleJson = new JSONObject();
-                vehicleJson.put("deviceName", vehicle.deviceName);
-                vehicleJson.put("vehicleType", vehicle.vehicleType);
-                vehicleJson.put("registrationTime", vehicle.registrationTime);
-                vehicleJson.put("expirationTime", vehicle.expirationTime);
-                vehicleJson.put("suggestedCategory", vehicle.suggestedCategory);
-                
-                registry.put(entry.getKey(), vehicleJson);
-            }
-            
-            prefs.edit().putString(VEHICLE_REGISTRY_KEY, registry.toString()).apply();
-        } catch (JSONException e) {
-            Log.e(TAG, "Error saving vehicle registry: " + e.getMessage());
-        }
+        // Parsed once per process and shared with MainActivity; the first load
+        // also merges in the registry this service used to keep in PREFS_NAME
+        vehicleRegistry = VehicleRegistry.getInstance(context);
+        Log.d(TAG, "Successfully loaded " + vehicleRegistry.size() + " vehicles from registry");
     }
     
     private void cleanupExpiredVehicles() {
-        boolean hasExpired = false;
         long currentTime = System.currentTimeMillis();
         
-        for (Map.Entry<String, VehicleInfo> entry : vehicleRegistry.entrySet()) {
-            VehicleInfo vehicle = entry.getValue();
-            if (vehicle.isExpired()) {
+        for (VehicleRegistry.Vehicle vehicle : vehicleRegistry.getAll()) {
+            if (vehicle.isExpired(currentTime)) {
                 Log.d(TAG, "Cleaning up expired vehicle: " + vehicle.deviceName);
-                vehicleRegistry.remove(entry.getKey());
-                hasExpired = true;
+                vehicleRegistry.remove(vehicle.macAddress);
             }
         }
-        
-        if (hasExpired) {
-            saveVehicleRegistry();
-        }
     }
     
     public void destroy() {
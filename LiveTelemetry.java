@@ -0,0 +1,88 @@
+package com.miletrackerpro.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Live tracking telemetry for the dashboard: speed, trip distance and
+ * trip state, pushed by the location pipeline.
+ *
+ * publish() may be called from any thread. A snapshot that looks the same
+ * as the last one at display precision is dropped; the rest are coalesced
+ * to at most one delivery per display frame, on the main thread, and a
+ * burst of fixes within a frame delivers only the newest. With no
+ * subscribers nothing is scheduled at all.
+ */
+public class LiveTelemetry {
+
+    public interface Listener {
+        /** Called on the main thread */
+        void onTelemetry(TripStatus status);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> dispatch();
+    private final Runnable scheduleFrame = () -> Choreographer.getInstance().postFrameCallback(frameCallback);
+
+    private TripStatus latest;     // last published, delivered or not
+    private TripStatus pending;    // waiting for the next frame
+    private boolean frameScheduled = false;
+
+    /**
+     * Offer a new snapshot. Returns false if it was dropped as unchanged.
+     */
+    public boolean publish(TripStatus status) {
+        synchronized (this) {
+            if (latest != null && latest.isSameAs(status)) return false;
+            latest = status;
+            if (listeners.isEmpty()) return true;
+            pending = status;
+            if (frameScheduled) return true;
+            frameScheduled = true;
+        }
+        // Choreographer is per-thread - always schedule from the main thread
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            scheduleFrame.run();
+        } else {
+            mainHandler.post(scheduleFrame);
+        }
+        return true;
+    }
+
+    /**
+     * Main thread. The listener gets the latest snapshot right away, if any.
+     */
+    public void subscribe(Listener listener) {
+        listeners.addIfAbsent(listener);
+        TripStatus current;
+        synchronized (this) {
+            current = latest;
+        }
+        if (current != null) listener.onTelemetry(current);
+    }
+
+    public void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public synchronized TripStatus latest() {
+        return latest;
+    }
+
+    private void dispatch() {
+        TripStatus status;
+        synchronized (this) {
+            frameScheduled = false;
+            status = pending;
+            pending = null;
+        }
+        if (status == null) return;
+        for (Listener listener : listeners) {
+            listener.onTelemetry(status);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.miletrackerpro.app.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.miletrackerpro.app.GeoMath;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Learned trip categories by place, keyed by geohash cell.
+ *
+ * Every time the user files a trip, its start and end coordinates vote for
+ * the chosen category in their ~150 m geohash cell (precision 7). Cells are
+ * held in a hash map keyed by the 35-bit geohash value, which doubles as a
+ * grid index: a radius query visits only the few cells the circle touches.
+ * Matching on coordinates makes suggestions independent of how the geocoder
+ * happened to format the address.
+ *
+ * Cells are persisted as one JSON object in the "location_classification"
+ * preferences, keyed by the base32 geohash string. Votes are written back
+ * after a short debounce, so filing a trip (two votes) or a burst of swipes
+ * costs one serialization; flush() writes immediately.
+ *
+ * The cell math is shared with TripTimeIndex, which keys uncategorized
+ * trips by the same cells to find trips near a newly filed one.
+ */
+public class LocationClassificationStore {
+    private static final String TAG = "LocationClassStore";
+    private static final String PREFS_NAME = "location_classification";
+    private static final String CELLS_KEY = "geohash_cells";
+
+    // Geohash precision 7 = 35 bits: 18 longitude bits interleaved with 17 latitude bits
+    private static final int LAT_BITS = 17;
+    private static final int LON_BITS = 18;
+    private static final int HASH_BITS = LAT_BITS + LON_BITS;
+    private static final double LAT_STEP = 180.0 / (1 << LAT_BITS);
+    private static final double LON_STEP = 360.0 / (1 << LON_BITS);
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private static final double METERS_PER_DEGREE = 111320.0;
+    public static final double DEFAULT_RADIUS_METERS = 150;
+
+    // Only suggest once a place has been filed at least this many times
+    private static final int MIN_VISITS_FOR_SUGGESTION = 2;
+
+    private static final long WRITE_DEBOUNCE_MS = 2000;
+
+    private static final class Cell {
+        int visits = 0;
+        final Map<String, Integer> votes = new HashMap<>(4);
+    }
+
+    private final SharedPreferences prefs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable writeRunnable = this::flush;
+    private final HashMap<Long, Cell> cells = new HashMap<>();
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    public LocationClassificationStore(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Record that a trip endpoint at these coordinates was filed as category
+     */
+    public synchronized void recordVisit(double latitude, double longitude, String category) {
+        if (!hasLocation(latitude, longitude) || category == null || "Uncategorized".equals(category)) return;
+        ensureLoaded();
+
+        long hash = encode(latitude, longitude);
+        Cell cell = cells.get(hash);
+        if (cell == null) {
+            cell = new Cell();
+            cells.put(hash, cell);
+        }
+        cell.visits++;
+        Integer votes = cell.votes.get(category);
+        cell.votes.put(category, votes == null ? 1 : votes + 1);
+
+        dirty = true;
+        mainHandler.removeCallbacks(writeRunnable);
+        mainHandler.postDelayed(writeRunnable, WRITE_DEBOUNCE_MS);
+    }
+
+    /**
+     * Write pending votes to SharedPreferences now
+     */
+    public synchronized void flush() {
+        mainHandler.removeCallbacks(writeRunnable);
+        if (!dirty) return;
+        dirty = false;
+        save();
+    }
+
+    /**
+     * Most-voted category for places within the default radius, or null if
+     * the area has not been filed often enough
+     */
+    public String suggest(double latitude, double longitude) {
+        return suggest(latitude, longitude, DEFAULT_RADIUS_METERS);
+    }
+
+    public synchronized String suggest(double latitude, double longitude, double radiusMeters) {
+        if (!hasLocation(latitude, longitude)) return null;
+        ensureLoaded();
+        if (cells.isEmpty()) return null;
+
+        int visits = 0;
+        Map<String, Integer> totals = new HashMap<>(4);
+
+        for (long hash : cellsWithin(latitude, longitude, radiusMeters)) {
+            Cell cell = cells.get(hash);
+            if (cell == null) continue;
+
+            visits += cell.visits;
+            for (Map.Entry<String, Integer> vote : cell.votes.entrySet()) {
+                Integer total = totals.get(vote.getKey());
+                totals.put(vote.getKey(), total == null ? vote.getValue() : total + vote.getValue());
+            }
+        }
+
+        if (visits < MIN_VISITS_FOR_SUGGESTION) return null;
+
+        String best = null;
+        int bestVotes = 0;
+        for (Map.Entry<String, Integer> total : totals.entrySet()) {
+            if (total.getValue() > bestVotes) {
+                best = total.getKey();
+                bestVotes = total.getValue();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * True if two points are within radiusMeters of each other
+     */
+    public static boolean isNearby(double lat1, double lon1, double lat2, double lon2, double radiusMeters) {
+        if (!hasLocation(lat1, lon1) || !hasLocation(lat2, lon2)) return false;
+        return GeoMath.distanceMeters(lat1, lon1, lat2, lon2) <= radiusMeters;
+    }
+
+    /**
+     * Base32 geohash (precision 7) for the cell containing these coordinates
+     */
+    public static String geohash(double latitude, double longitude) {
+        return toBase32(encode(latitude, longitude));
+    }
+
+    /**
+     * Cell containing these coordinates, as a 35-bit geohash value
+     */
+    static long cellOf(double latitude, double longitude) {
+        return encode(latitude, longitude);
+    }
+
+    /**
+     * Every cell a circle of radiusMeters around these coordinates reaches
+     */
+    static long[] cellsWithin(double latitude, double longitude, double radiusMeters) {
+        int latDeltaCells = (int) Math.ceil(radiusMeters / METERS_PER_DEGREE / LAT_STEP);
+        double metersPerLonDegree = METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        int lonDeltaCells = (int) Math.ceil(radiusMeters / metersPerLonDegree / LON_STEP);
+
+        int centerRow = rowOf(latitude);
+        int centerCol = colOf(longitude);
+        int maxRow = (1 << LAT_BITS) - 1;
+        int maxCol = (1 << LON_BITS) - 1;
+
+        long[] result = new long[(2 * latDeltaCells + 1) * (2 * lonDeltaCells + 1)];
+        int count = 0;
+        for (int row = Math.max(0, centerRow - latDeltaCells); row <= Math.min(maxRow, centerRow + latDeltaCells); row++) {
+            for (int col = Math.max(0, centerCol - lonDeltaCells); col <= Math.min(maxCol, centerCol + lonDeltaCells); col++) {
+                // Skip corner cells the circle does not actually reach
+                double nearestLat = clamp(latitude, row * LAT_STEP - 90, (row + 1) * LAT_STEP - 90);
+                double nearestLon = clamp(longitude, col * LON_STEP - 180, (col + 1) * LON_STEP - 180);
+                if (GeoMath.distanceMeters(latitude, longitude, nearestLat, nearestLon) > radiusMeters) continue;
+
+                result[count++] = interleave(row, col);
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    static boolean hasLocation(double latitude, double longitude) {
+        // Trips without a GPS fix are stored with 0,0
+        return !(latitude == 0 && longitude == 0) && !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    private static long encode(double latitude, double longitude) {
+        return interleave(rowOf(latitude), colOf(longitude));
+    }
+
+    private static int rowOf(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / LAT_STEP);
+        return Math.max(0, Math.min((1 << LAT_BITS) - 1, row));
+    }
+
+    private static int colOf(double longitude) {
+        int col = (int) Math.floor((longitude + 180) / LON_STEP);
+        return Math.max(0, Math.min((1 << LON_BITS) - 1, col));
+    }
+
+    // Geohash bit order: starting from the most significant bit, even
+    // positions carry longitude bits and odd positions latitude bits
+    private static long interleave(int row, int col) {
+        long hash = 0;
+        for (int i = 0; i < HASH_BITS; i++) {
+            int bit = (i % 2 == 0)
+                ? (col >> (LON_BITS - 1 - i / 2)) & 1
+                : (row >> (LAT_BITS - 1 - i / 2)) & 1;
+            hash = (hash << 1) | bit;
+        }
+        return hash;
+    }
+
+    private static String toBase32(long hash) {
+        char[] chars = new char[HASH_BITS / 5];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = BASE32.charAt((int) (hash >>> (HASH_BITS - 5 * (i + 1))) & 31);
+        }
+        return new String(chars);
+    }
+
+    private static long fromBase32(String geohash) {
+        if (geohash.length() != HASH_BITS / 5) throw new IllegalArgumentException("Bad geohash: " + geohash);
+        long hash = 0;
+        for (int i = 0; i < geohash.length(); i++) {
+            int value = BASE32.indexOf(geohash.charAt(i));
+            if (value < 0) throw new IllegalArgumentException("Bad geohash: " + geohash);
+            hash = (hash << 5) | value;
+        }
+        return hash;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+
+        String json = prefs.getString(CELLS_KEY, null);
+        if (json == null) return;
+        try {
+            JSONObject stored = new JSONObject(json);
+            Iterator<String> keys = stored.keys();
+            while (keys.hasNext()) {
+                String geohash = keys.next();
+                JSONObject entry = stored.getJSONObject(geohash);
+                Cell cell = new Cell();
+                cell.visits = entry.optInt("v", 0);
+                JSONObject votes = entry.optJSONObject("c");
+                if (votes != null) {
+                    Iterator<String> categories = votes.keys();
+                    while (categories.hasNext()) {
+                        String category = categories.next();
+                        cell.votes.put(category, votes.optInt(category, 0));
+                    }
+                }
+                cells.put(fromBase32(geohash), cell);
+            }
+            Log.d(TAG, "Loaded " + cells.size() + " classified location cells");
+        } catch (JSONException | IllegalArgumentException e) {
+            Log.e(TAG, "Error loading location classifications: " + e.getMessage());
+        }
+    }
+
+    private void save() {
+        try {
+            JSONObject stored = new JSONObject();
+            for (Map.Entry<Long, Cell> entry : cells.entrySet()) {
+                JSONObject json = new JSONObject();
+                json.put("v", entry.getValue().visits);
+                json.put("c", new JSONObject(entry.getValue().votes));
+                stored.put(toBase32(entry.getKey()), json);
+            }
+            prefs.edit().putString(CELLS_KEY, stored.toString()).apply();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error saving location classifications: " + e.getMessage());
+        }
+    }
+}
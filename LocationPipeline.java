@@ -0,0 +1,108 @@
+package com.miletrackerpro.app;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Runs MainActivity's GPS fix handling on a dedicated HandlerThread, so
+ * trip detection never waits behind UI work (and never stalls it).
+ *
+ * Each fix goes through the stages in order - quality filter, detection
+ * (which accumulates the path), persistence - and then a TripStatus
+ * snapshot is published to LiveTelemetry. Trip state is only touched on
+ * the pipeline thread; anything else that needs it (geocoder callbacks,
+ * restore, lifecycle flushes) goes through post().
+ */
+public class LocationPipeline {
+    private static final String TAG = "LocationPipeline";
+
+    public interface Stages {
+        /** Quality filter: false drops the fix before detection */
+        boolean accept(Location location);
+
+        /** Trip detection and path accumulation */
+        void detect(Location location);
+
+        /** Write out whatever detect() added */
+        void persist();
+
+        /** Status to show after this fix, or null to leave the UI alone */
+        TripStatus snapshot(Location location, boolean accepted);
+    }
+
+    private final Stages stages;
+    private final LiveTelemetry telemetry;
+    private HandlerThread thread;
+    private Handler handler;
+
+    public LocationPipeline(Stages stages, LiveTelemetry telemetry) {
+        this.stages = stages;
+        this.telemetry = telemetry;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = new HandlerThread("location-pipeline", Process.THREAD_PRIORITY_DEFAULT);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Let queued work finish, then end the thread
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        thread.quitSafely();
+        thread = null;
+        handler = null;
+    }
+
+    public synchronized Looper looper() {
+        return thread != null ? thread.getLooper() : null;
+    }
+
+    /**
+     * Queue a fix from any thread. The location is copied, so callers may
+     * reuse theirs.
+     */
+    public void submit(Location location) {
+        if (location == null) return;
+        final Location fix = new Location(location);
+        post(() -> process(fix));
+    }
+
+    /**
+     * Run a task on the pipeline thread
+     */
+    public synchronized boolean post(Runnable task) {
+        return handler != null && handler.post(task);
+    }
+
+    public synchronized boolean postDelayed(Runnable task, long delayMs) {
+        return handler != null && handler.postDelayed(task, delayMs);
+    }
+
+    public synchronized void removeCallbacks(Runnable task) {
+        if (handler != null) handler.removeCallbacks(task);
+    }
+
+    private void process(Location location) {
+        try {
+            boolean accepted = stages.accept(location);
+            if (accepted) {
+                stages.detect(location);
+                stages.persist();
+            }
+            TripStatus status = stages.snapshot(location, accepted);
+            if (status != null) {
+                telemetry.publish(status);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing location: " + e.getMessage(), e);
+        }
+    }
+}
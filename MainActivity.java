@@ -78,9 +78,17 @@
   import com.miletrackerpro.app.services.ManualTripService;
   import com.miletrackerpro.app.services.BluetoothVehicleService;
   import com.miletrackerpro.app.services.BluetoothWorker;
+  import com.miletrackerpro.app.services.VehicleRegistry;
   import com.miletrackerpro.app.storage.Trip;
   import com.miletrackerpro.app.storage.TripStorage;
+  import com.miletrackerpro.app.storage.TripRollups;
+  import com.miletrackerpro.app.storage.TripTimeIndex;
+  import com.miletrackerpro.app.storage.TripContentIndex;
+  import com.miletrackerpro.app.storage.TripArchive;
+  import com.miletrackerpro.app.storage.LocationClassificationStore;
+  import com.miletrackerpro.app.storage.TripMigrationJob;
   import com.miletrackerpro.app.utils.BillingManager;
+  import com.miletrackerpro.app.utils.PhotoLoader;
   import com.miletrackerpro.app.utils.EventTracker;
   import com.miletrackerpro.app.utils.FeedbackManager;
   import android.net.Uri;
@@ -275,30 +283,35 @@
       // Services and storage
       private LocationManager locationManager;
       private TripStorage tripStorage;
+      private final TripTimeIndex tripIndex = new TripTimeIndex(); // start-time index, see getTripIndex()
+      private final TripContentIndex tripContentIndex = new TripContentIndex(); // change detection for cloud downloads
+      private TripMigrationJob tripMigrations; // unique id migration, told about every store write
+      private static final long CLOUD_TRIP_ID_OFFSET = 1000000L; // ids at or above this came from the cloud (see the trip diagnostics)
       private BillingManager billingManager;
       private FeedbackManager feedbackManager;
       private BroadcastReceiver tripLimitReceiver;
       private boolean bluetoothServiceStarted = false;
       private boolean checklistDismissedThisSession = false;
       private boolean batteryPromptedThisSession    = false;
-      private boolean autoDetectionEnabled = false;
+      private volatile boolean autoDetectionEnabled = false; // read on the location pipeline thread
       private boolean manualTripInProgress = false;
       private boolean isVehicleRegistrationDialogShowing = false;
 
       // Statistics period tracking
       private String currentStatsPeriod = "YTD"; // YTD, Quarter, Month
-      private Handler speedHandler = new Handler();
-      private Runnable speedRunnable;
+      private boolean liveLocationUpdatesActive = false;
 
-      // Real-time distance tracking
+      // Real-time distance tracking (location pipeline thread)
       private double realTimeDistance = 0.0;
       private android.location.Location lastDistanceLocation = null;
 
-      // Enhanced auto detection variables
+      // Enhanced auto detection variables - owned by the location pipeline
+      // thread; other threads go through runOnLocationPipeline()
       private boolean isCurrentlyTracking = false;
       private boolean currentTripPaused = false;
       private long currentTripStartTime = 0;
       private long lastCloudSyncMs      = 0; // rate-limit onResume cloud sync
+      private int pausedMonthlyTripCount = -1; // detect background saves between onPause and onResume
       private double currentTripStartLatitude = 0;
       private double currentTripStartLongitude = 0;
       private String currentTripStartAddress = null;
@@ -316,12 +329,74 @@
       private boolean swipeInProgress = false;
 
       // Auto-classification storage
-      private SharedPreferences locationPrefs;
-      private List<LocationPoint> currentTripPath = new ArrayList<>();
-      private int movingReadingsCount = 0;
-      private int stationaryReadingsCount = 0;
-      private Long tripPauseStartTime = null;
-      private LocationPoint pausedTripLocation = null;
+      private LocationClassificationStore locationClassifications;
+      private final TripPathBuffer currentTripPath = new TripPathBuffer();
+      private int checkpointedPathPoints = 0; // committed path points already in the checkpoint
+      private TripCheckpoint tripCheckpoint;
+      private long lastPipelineFixTime = 0;
+
+      // GPS fixes are filtered, run through trip detection and persisted off
+      // the main thread; the UI only receives TripStatus snapshots
+      private final LocationPipeline.Stages locationStages = new LocationPipeline.Stages() {
+          @Override
+          public boolean accept(Location location) {
+              if (isRepeatOrNetworkFix(location)) return false;
+              if (!isLocationAccurateEnough(location)) return false;
+              lastPipelineFixTime = location.getTime();
+              return true;
+          }
+
+          @Override
+          public void detect(Location location) {
+              updateRealTimeDistance(location);
+              if (autoDetectionEnabled) {
+                  processEnhancedAutoDetection(
+                      location.getSpeed() * 2.237, // m/s to mph
+                      location.getLatitude(),
+                      location.getLongitude(),
+                      location.getAccuracy(),
+                      location.getTime()
+                  );
+              }
+          }
+
+          @Override
+          public void persist() {
+              persistTripPath();
+          }
+
+          @Override
+          public TripStatus snapshot(Location location, boolean accepted) {
+              if (!accepted) {
+                  if (isRepeatOrNetworkFix(location)) return null;
+                  return new TripStatus(TripStatus.STATE_WEAK_SIGNAL, 0, 0, 0, 0, realTimeDistance);
+              }
+              return buildTripStatus(location.getSpeed() * 2.237, location.getTime());
+          }
+      };
+      private final LiveTelemetry liveTelemetry = new LiveTelemetry();
+      private final LocationPipeline locationPipeline = new LocationPipeline(locationStages, liveTelemetry);
+
+      // Dashboard widgets subscribe while the activity is in the foreground
+      private final LiveTelemetry.Listener speedTelemetryListener = status -> {
+          if (speedText != null) {
+              speedText.setText(status.statusText());
+          }
+      };
+      private final LiveTelemetry.Listener distanceTelemetryListener = status -> {
+          if (realTimeDistanceText != null) {
+              realTimeDistanceText.setText(status.distanceText());
+          }
+      };
+
+      // Registered vehicles, shared with BluetoothVehicleService
+      private VehicleRegistry vehicleRegistry;
+      private final VehicleRegistry.Listener vehicleRegistryListener = registry -> {
+          if (connectedVehicleText != null) {
+              updateVehicleRegistrationUI();
+          }
+      };
+      private final TripDetectionEngine tripDetector = new TripDetectionEngine(TripDetectionEngine.ACTIVITY_PROFILE);
 
       // Auto detection blinking animation
       private Handler blinkHandler = new Handler();
@@ -527,6 +602,8 @@
               }
 
               tripStorage = new TripStorage(this);
+              tripMigrations = new TripMigrationJob(this);
+              tripIndex.setArchive(new TripArchive(this)); // Past tax years live in compressed segments
 
               // Auto-upgrade IRS rates from 2025 to 2026 for existing users
               SharedPreferences irsPrefs = getSharedPreferences("miletracker_settings", MODE_PRIVATE);
@@ -561,8 +638,22 @@
                   // Check and send grace period notifications if needed
                   tripStorage.checkAndSendGracePeriodNotification();
 
-                  // Stage 1: Migrate existing trips to have unique IDs for offline sync
-                  tripStorage.migrateExistingTrips();
+                  // Stage 1: Migrate existing trips to have unique IDs for offline sync.
+                  // Versioned background job - once the store is current it only
+                  // runs if a save since the last launch lacked a unique id.
+                  tripMigrations.start(tripStorage, new TripMigrationJob.ProgressListener() {
+                      @Override
+                      public void onProgress(int processed, int total) {
+                          Log.d(TAG, "Trip migration progress: " + processed + "/" + total);
+                      }
+
+                      @Override
+                      public void onComplete(boolean changed) {
+                          if (changed) {
+                              tripIndex.invalidate();
+                          }
+                      }
+                  });
               }
 
               // Initialize in-app feedback system (available for all users including guests)
@@ -581,7 +672,7 @@
               // Check if app was opened from feedback notification
               handleFeedbackNotificationIntent(getIntent());
 
-              locationPrefs = getSharedPreferences("location_classification", MODE_PRIVATE);
+              locationClassifications = new LocationClassificationStore(this);
               initializeGestureDetector();
               createCleanLayout();
               setupSpeedMonitoring();
@@ -612,6 +703,7 @@
               registerBroadcastReceiver();
               initializeBluetoothBackgroundService();
               restoreAutoDetectionState();
+              runOnLocationPipeline(this::restoreCheckpointedTrip);
 
               // TRIGGER DOWNLOAD OF ALL USER TRIPS
               triggerAllUserTripsDownload();
@@ -665,11 +757,35 @@
       protected void onStop() {
           super.onStop();
           EventTracker.trackAppBackground(this);
+
+          // Persist buffered path points while we are still allowed to run
+          runOnLocationPipeline(() -> {
+              if (isCurrentlyTracking && tripCheckpoint != null) {
+                  try {
+                      tripCheckpoint.flush();
+                  } catch (java.io.IOException e) {
+                      Log.w(TAG, "Trip checkpoint flush failed: " + e.getMessage());
+                  }
+              }
+          });
+      }
+
+      @Override
+      protected void onPause() {
+          super.onPause();
+          liveTelemetry.unsubscribe(speedTelemetryListener);
+          liveTelemetry.unsubscribe(distanceTelemetryListener);
+          if (locationClassifications != null) {
+              locationClassifications.flush();
+          }
+          pausedMonthlyTripCount = tripStorage != null ? tripStorage.getMonthlyTripCount() : -1;
       }
 
       @Override
       protected void onResume() {
           super.onResume();
+          liveTelemetry.subscribe(speedTelemetryListener);
+          liveTelemetry.subscribe(distanceTelemetryListener);
           checklistDismissedThisSession = false;
           batteryPromptedThisSession    = false;
 
@@ -726,6 +842,13 @@
               }, 500);
           }
 
+          // Background services save trips through their own TripStorage;
+          // ManualTripService broadcasts its saves, AutoDetectionService does
+          // not, so a changed monthly count means it saved while we were away
+          if (tripStorage != null && tripStorage.getMonthlyTripCount() != pausedMonthlyTripCount) {
+              tripIndex.invalidate();
+          }
+
           // Always refresh home screen stats on resume for all users (guest + registered)
           updateStats();
 
@@ -738,21 +861,15 @@
               || (tripStorage != null && tripStorage.isPremiumUser());
           if (!isGuestMode && isPremiumForCloudSync && tripStorage.isApiSyncEnabled() && syncDue) {
               lastCloudSyncMs = System.currentTimeMillis(); // stamp before thread starts
-              new Thread(() -> {
-                  try {
-                      CloudBackupService cloudBackup = new CloudBackupService(this);
-                      cloudBackup.downloadAllUserTrips();
-
-                      // Update UI on main thread after cloud sync completes
-                      runOnUiThread(() -> {
-                          updateStats();
-                          updateAllTrips();
-                      });
-                  } catch (Exception e) {
-                      Log.e(TAG, "Error refreshing trips: " + e.getMessage());
+              syncUserTrips(changedIds -> {
+                  if (changedIds == null) {
                       lastCloudSyncMs = 0; // allow retry on next resume if sync failed
+                  } else if (!changedIds.isEmpty()) {
+                      // Update UI after cloud sync completes - only if it brought changes
+                      updateStats();
+                      updateAllTrips();
                   }
-              }).start();
+              });
           }
 
           // Check if user should be prompted for feedback (works for all users)
@@ -769,20 +886,16 @@
 
           try {
               if (tripStorage.isApiSyncEnabled()) {
-                  CloudBackupService cloudBackup = new CloudBackupService(this);
-                  cloudBackup.downloadAllUserTrips();
                   Log.d(TAG, "Triggered download of ALL user trips (not device-specific)");
-
-                  // Update UI after a short delay to allow download to complete
-                  Handler handler = new Handler();
-                  handler.postDelayed(() -> {
+                  syncUserTrips(changedIds -> {
+                      if (changedIds == null || changedIds.isEmpty()) return;
                       updateStats();
                       if ("home".equals(currentTab)) {
                           updateRecentTrips();
                       } else {
                           updateAllTrips();
                       }
-                  }, 3000); // 3 second delay
+                  });
               }
           } catch (Exception e) {
               Log.e(TAG, "Error triggering ALL user trips download: " + e.getMessage(), e);
@@ -1844,7 +1957,7 @@
       private void updateRecentTrips() {
           try {
               recentTripsLayout.removeAllViews();
-              List<Trip> trips = tripStorage.getAllTrips();
+              List<Trip> trips = getTripIndex().getLatest(3);
 
               if (trips.isEmpty()) {
                   TextView noTripsText = new TextView(this);
@@ -1854,17 +1967,8 @@
                   noTripsText.setPadding(10, 10, 10, 10);
                   recentTripsLayout.addView(noTripsText);
               } else {
-                  // Sort trips by date/time descending to show newest first
-                  trips.sort((t1, t2) -> {
-                      if (t1.getStartTime() != 0 && t2.getStartTime() != 0) {
-                          return Long.compare(t2.getStartTime(), t1.getStartTime());
-                      }
-                      return Long.compare(t2.getId(), t1.getId());
-                  });
-
-                  int maxTrips = Math.min(3, trips.size());
-                  for (int i = 0; i < maxTrips; i++) {
-                      Trip trip = trips.get(i);
+                  // Index returns newest first by start time
+                  for (Trip trip : trips) {
                       addTripCard(recentTripsLayout, trip, true);
                   }
               }
@@ -1885,17 +1989,11 @@
           try {
               classifyTripsLayout.removeAllViews();
 
-              List<Trip> allTrips = tripStorage.getAllTrips();
-              List<Trip> uncategorizedTrips = new ArrayList<>();
-
-              // Filter to only uncategorized trips
-              for (Trip trip : allTrips) {
-                  if (trip.getCategory() == null || 
-                      trip.getCategory().isEmpty() || 
-                      "Uncategorized".equals(trip.getCategory())) {
-                      uncategorizedTrips.add(trip);
-                  }
-              }
+              // Only uncategorized trips, oldest first
+              List<Trip> uncategorizedTrips = getTripIndex().getTrips(Long.MIN_VALUE, Long.MAX_VALUE, trip ->
+                  trip.getCategory() == null || 
+                  trip.getCategory().isEmpty() || 
+                  "Uncategorized".equals(trip.getCategory()));
 
               if (uncategorizedTrips.isEmpty()) {
                   TextView noTripsText = new TextView(this);
@@ -1927,10 +2025,10 @@
 
               categorizedTripsContainer.removeAllViews();
 
-              List<Trip> allTrips = tripStorage.getAllTrips();
-              Log.d("MainActivity", "updateCategorizedTrips: found " + allTrips.size() + " trips");
+              TripTimeIndex index = getTripIndex();
+              Log.d("MainActivity", "updateCategorizedTrips: found " + index.size() + " trips");
 
-              if (allTrips.isEmpty()) {
+              if (index.size() == 0) {
                   TextView emptyText = new TextView(this);
                   emptyText.setText("No trips found. Tap REFRESH to sync your trips from the server.");
                   emptyText.setTextSize(16);
@@ -1941,38 +2039,28 @@
                   return;
               }
 
-              // Start with all trips
-              List<Trip> displayTrips = new ArrayList<>(allTrips);
-
-              // Apply category filter (only if not "All")
-              if (currentCategoryFilter != null && !"All".equals(currentCategoryFilter)) {
-                  List<Trip> filtered = new ArrayList<>();
-                  for (Trip trip : displayTrips) {
-                      if (trip.getCategory() != null && currentCategoryFilter.equals(trip.getCategory())) {
-                          filtered.add(trip);
-                      }
+              // Category filter (only if not "All") and search filter (only if
+              // search query is not empty), applied by the index so archived
+              // trips that don't match are never read from storage
+              final String categoryFilter = currentCategoryFilter != null && !"All".equals(currentCategoryFilter)
+                  ? currentCategoryFilter : null;
+              final String query = currentSearchQuery != null && !currentSearchQuery.isEmpty()
+                  ? currentSearchQuery.toLowerCase() : null;
+              List<Trip> displayTrips = index.getTrips(Long.MIN_VALUE, Long.MAX_VALUE, trip -> {
+                  if (categoryFilter != null && !categoryFilter.equals(trip.getCategory())) {
+                      return false;
                   }
-                  displayTrips = filtered;
-              }
+                  if (query == null) return true;
 
-              // Apply search filter (only if search query is not empty)
-              if (currentSearchQuery != null && !currentSearchQuery.isEmpty()) {
-                  List<Trip> filtered = new ArrayList<>();
-                  String query = currentSearchQuery.toLowerCase();
-                  for (Trip trip : displayTrips) {
-                      String startAddr = trip.getStartAddress() != null ? trip.getStartAddress().toLowerCase() : "";
-                      String endAddr = trip.getEndAddress() != null ? trip.getEndAddress().toLowerCase() : "";
-                      String clientName = trip.getClientName() != null ? trip.getClientName().toLowerCase() : "";
-                      String notes = trip.getNotes() != null ? trip.getNotes().toLowerCase() : "";
-                      String category = trip.getCategory() != null ? trip.getCategory().toLowerCase() : "";
+                  String startAddr = trip.getStartAddress() != null ? trip.getStartAddress().toLowerCase() : "";
+                  String endAddr = trip.getEndAddress() != null ? trip.getEndAddress().toLowerCase() : "";
+                  String clientName = trip.getClientName() != null ? trip.getClientName().toLowerCase() : "";
+                  String notes = trip.getNotes() != null ? trip.getNotes().toLowerCase() : "";
+                  String category = trip.getCategory() != null ? trip.getCategory().toLowerCase() : "";
 
-                      if (startAddr.contains(query) || endAddr.contains(query) || 
-                          clientName.contains(query) || notes.contains(query) || category.contains(query)) {
-                          filtered.add(trip);
-                      }
-                  }
-                  displayTrips = filtered;
-              }
+                  return startAddr.contains(query) || endAddr.contains(query) || 
+                      clientName.contains(query) || notes.contains(query) || category.contains(query);
+              });
 
               // Sort by newest first (default)
               displayTrips.sort((a, b) -> Long.compare(b.getStartTime(), a.getStartTime()));
@@ -2029,40 +2117,26 @@
           try {
               allTripsLayout.removeAllViews();
               selectedTripIds.clear(); // Clear selection when refreshing
-              List<Trip> trips = tripStorage.getAllTrips();
+              // Apply search and category filters in the index, with null safety
+              final String query = searchQuery.toLowerCase();
+              List<Trip> trips = getTripIndex().getTrips(Long.MIN_VALUE, Long.MAX_VALUE, trip -> {
+                  if (!"All Categories".equals(categoryFilter) && !categoryFilter.equals(trip.getCategory())) {
+                      return false;
+                  }
+                  if (query.isEmpty()) return true;
+
+                  // Null-safe string checking
+                  String startAddr = trip.getStartAddress() != null ? trip.getStartAddress().toLowerCase() : "";
+                  String endAddr = trip.getEndAddress() != null ? trip.getEndAddress().toLowerCase() : "";
+                  String clientName = trip.getClientName() != null ? trip.getClientName().toLowerCase() : "";
+                  String notes = trip.getNotes() != null ? trip.getNotes().toLowerCase() : "";
+
+                  return startAddr.contains(query) || endAddr.contains(query) || 
+                      clientName.contains(query) || notes.contains(query);
+              });
 
               Log.d(TAG, "filterAndDisplayTrips() called - found " + trips.size() + " trips, search: '" + searchQuery + "', sort: '" + sortOption + "', category: '" + categoryFilter + "'");
 
-              // Apply search filter with null safety
-              if (!searchQuery.isEmpty()) {
-                  List<Trip> filteredTrips = new ArrayList<>();
-                  String query = searchQuery.toLowerCase();
-                  for (Trip trip : trips) {
-                      // Null-safe string checking
-                      String startAddr = trip.getStartAddress() != null ? trip.getStartAddress().toLowerCase() : "";
-                      String endAddr = trip.getEndAddress() != null ? trip.getEndAddress().toLowerCase() : "";
-                      String clientName = trip.getClientName() != null ? trip.getClientName().toLowerCase() : "";
-                      String notes = trip.getNotes() != null ? trip.getNotes().toLowerCase() : "";
-
-                      if (startAddr.contains(query) || endAddr.contains(query) || 
-                          clientName.contains(query) || notes.contains(query)) {
-                          filteredTrips.add(trip);
-                      }
-                  }
-                  trips = filteredTrips;
-              }
-
-              // Apply category filter
-              if (!"All Categories".equals(categoryFilter)) {
-                  List<Trip> filteredTrips = new ArrayList<>();
-                  for (Trip trip : trips) {
-                      if (categoryFilter.equals(trip.getCategory())) {
-                          filteredTrips.add(trip);
-                      }
-                  }
-                  trips = filteredTrips;
-              }
-
               // Apply sorting
               switch (sortOption) {
                   case "Newest First":
@@ -2117,7 +2191,7 @@
 
       private void executeTripseMerge() {
           try {
-              tripStorage.mergeUserTrips(selectedTripIds);
+              mergeTripsIndexed(selectedTripIds);
 
               // Exit merge mode and refresh
               mergeMode = false;
@@ -2138,7 +2212,7 @@
 
       private void executeCategorizedMerge() {
           try {
-              tripStorage.mergeUserTrips(selectedTripIds);
+              mergeTripsIndexed(selectedTripIds);
 
               // Exit merge mode and refresh
               mergeMode = false;
@@ -2160,7 +2234,7 @@
 
       private void executeClassifyMerge() {
           try {
-              tripStorage.mergeUserTrips(selectedTripIds);
+              mergeTripsIndexed(selectedTripIds);
 
               // Exit merge mode and refresh
               mergeMode = false;
@@ -2275,8 +2349,10 @@
                   StringBuilder tripDetails = new StringBuilder();
 
                   // Get auto-classification suggestion
-                  String startSuggestion = getAutoClassificationSuggestion(trip.getStartAddress());
-                  String endSuggestion = getAutoClassificationSuggestion(trip.getEndAddress());
+                  String startSuggestion = getAutoClassificationSuggestion(
+                      trip.getStartLatitude(), trip.getStartLongitude(), trip.getStartAddress());
+                  String endSuggestion = getAutoClassificationSuggestion(
+                      trip.getEndLatitude(), trip.getEndLongitude(), trip.getEndAddress());
                   String autoSuggestion = startSuggestion != null ? startSuggestion : endSuggestion;
 
                   // Add swipe hint if there's an auto-classification suggestion
@@ -2731,18 +2807,7 @@
           options.add("None");
 
           // Get existing clients from trips
-          List<Trip> trips = tripStorage.getAllTrips();
-          List<String> existingClients = new ArrayList<>();
-          for (Trip trip : trips) {
-              if (trip.getClientName() != null && !trip.getClientName().trim().isEmpty()) {
-                  String clientName = trip.getClientName().trim();
-                  if (!existingClients.contains(clientName)) {
-                      existingClients.add(clientName);
-                  }
-              }
-          }
-
-          options.addAll(existingClients);
+          options.addAll(getTripIndex().getClientNames());
           options.add("+ Add New Client");
 
           return options;
@@ -2802,7 +2867,7 @@
               Log.d(TAG, String.format("Manual trip with USER duration: %.2f miles, %d minutes", distance, durationMinutes));
 
               // Save locally
-              tripStorage.saveTrip(trip);
+              saveTripIndexed(trip);
 
               // Save to API if enabled
               if (tripStorage.isApiSyncEnabled()) {
@@ -3389,7 +3454,7 @@
               statusColor = COLOR_SUCCESS;
           } else if (tripStorage.isInGracePeriod()) {
               int daysRemaining = tripStorage.getGracePeriodDaysRemaining();
-              int totalTrips = tripStorage.getAllTrips().size();
+              int totalTrips = getTripIndex().size();
               statusText = String.format("⏰ GRACE PERIOD (View-Only)\n\nYou have %d day%s left to upgrade!\n\nYour %d trips are safe and viewable.\nUpgrade now to keep adding trips.", 
                   daysRemaining, 
                   daysRemaining == 1 ? "" : "s",
@@ -3753,10 +3818,9 @@
        * Hook this into your existing mileage calculation logic.
        */
       private double getTotalBusinessMiles() {
-          // Replace with your actual business miles calculation
-          // This likely already exists somewhere in your stats methods
-          // Look at getDetailedStats() at line 3740 for the source
-          return 294.3; // placeholder — replace with real value
+          TripRollups rollups = getTripIndex().getRollups();
+          int fromKey = rollups.monthKeyOf(getCurrentPeriodStart());
+          return rollups.getTotals(fromKey, Integer.MAX_VALUE, "Business").miles;
       }
 
       /**
@@ -3993,14 +4057,8 @@
                   final double irsRate = getIrsBusinessRate();
                   new Thread(() -> {
                       try {
-                          List<Trip> allTrips = tripStorage.getAllTrips();
-                          double miles = 0;
-                          for (Trip t : allTrips) {
-                              if ("Business".equals(t.getCategory())) {
-                                  miles += t.getDistance();
-                              }
-                          }
-                          final double totalMiles = miles;
+                          // Index load may hit storage once; the sum itself is O(#months)
+                          final double totalMiles = getTripIndex().getRollups().getTotals("Business").miles;
                           final double deductionTotal = totalMiles * irsRate;
                           runOnUiThread(() -> {
                               if (deductionsValueText != null) {
@@ -4022,6 +4080,19 @@
               // Check mileage milestones (fires local notification + optional review prompt)
               checkAndShowMilestoneNotification();
 
+              // Developer builds cross-check the incremental rollups against a full rebuild
+              if (developerMode) {
+                  new Thread(() -> {
+                      try {
+                          if (!tripIndex.verifyRollups(tripStorage)) {
+                              Log.w(TAG, "Trip rollups drifted from storage and were rebuilt");
+                          }
+                      } catch (Exception ve) {
+                          Log.e(TAG, "Error verifying trip rollups: " + ve.getMessage());
+                      }
+                  }).start();
+              }
+
               // One-time "7-day free trial now available" notice for free-tier users
               checkAndShowTrialLaunchNotification();
 
@@ -4097,26 +4168,15 @@
       // Full statistics for Settings dialog
       private String getDetailedStats() {
           try {
-              List<Trip> trips = getTripsForCurrentPeriod();
-              double totalMiles = 0;
-              double businessMiles = 0;
-              double personalMiles = 0;
-              double medicalMiles = 0;
-              double charityMiles = 0;
-
-              for (Trip trip : trips) {
-                  totalMiles += trip.getDistance();
-
-                  if ("Business".equals(trip.getCategory())) {
-                      businessMiles += trip.getDistance();
-                  } else if ("Personal".equals(trip.getCategory())) {
-                      personalMiles += trip.getDistance();
-                  } else if ("Medical".equals(trip.getCategory())) {
-                      medicalMiles += trip.getDistance();
-                  } else if ("Charity".equals(trip.getCategory())) {
-                      charityMiles += trip.getDistance();
-                  }
-              }
+              // Period starts are month-aligned, so monthly rollups are exact
+              TripRollups rollups = getTripIndex().getRollups();
+              int fromKey = rollups.monthKeyOf(getCurrentPeriodStart());
+              TripRollups.Totals all = rollups.getTotals(fromKey, Integer.MAX_VALUE, null);
+              double totalMiles = all.miles;
+              double businessMiles = rollups.getTotals(fromKey, Integer.MAX_VALUE, "Business").miles;
+              double personalMiles = rollups.getTotals(fromKey, Integer.MAX_VALUE, "Personal").miles;
+              double medicalMiles = rollups.getTotals(fromKey, Integer.MAX_VALUE, "Medical").miles;
+              double charityMiles = rollups.getTotals(fromKey, Integer.MAX_VALUE, "Charity").miles;
 
               double businessDeduction = businessMiles * getIrsBusinessRate();
               double personalDeduction = 0.00;
@@ -4128,7 +4188,7 @@
               return String.format(
                   "%s Statistics\n\n• Total Trips: %d\n• Total Miles: %s\n• Business: %s ($%.2f)\n• Personal: %s ($%.2f)\n• Medical: %s ($%.2f)\n• Charity: %s ($%.2f)\n\nTotal Deduction: $%.2f",
                   periodLabel,
-                  trips.size(), formatMiles(totalMiles),
+                  all.count, formatMiles(totalMiles),
                   formatMiles(businessMiles), businessDeduction,
                   formatMiles(personalMiles), personalDeduction,
                   formatMiles(medicalMiles), medicalDeduction,
@@ -4142,9 +4202,13 @@
       }
 
       private List<Trip> getTripsForCurrentPeriod() {
-          List<Trip> allTrips = tripStorage.getAllTrips();
+          // Range query on the start-time index instead of filtering every trip
+          return getTripIndex().getTrips(getCurrentPeriodStart(), Long.MAX_VALUE, (TripTimeIndex.Filter) null);
+      }
+
+      // Start of the selected stats period (always the first of a month)
+      private long getCurrentPeriodStart() {
           Calendar cal = Calendar.getInstance();
-          long currentTime = cal.getTimeInMillis();
 
           // Calculate start of period based on currentStatsPeriod
           Calendar periodStart = Calendar.getInstance();
@@ -4178,17 +4242,128 @@
                   break;
           }
 
-          long periodStartTime = periodStart.getTimeInMillis();
+          return periodStart.getTimeInMillis();
+      }
 
-          // Filter trips to current period
-          List<Trip> periodTrips = new ArrayList<>();
-          for (Trip trip : allTrips) {
-              if (trip.getStartTime() >= periodStartTime) {
-                  periodTrips.add(trip);
-              }
+      /**
+       * Start-time index over all trips, built from TripStorage on first use.
+       * Saves and deletes go through saveTripIndexed()/deleteTripIndexed() so it
+       * stays current; bulk changes (merge, cloud download) invalidate it.
+       */
+      private TripTimeIndex getTripIndex() {
+          tripIndex.ensureLoaded(tripStorage);
+          return tripIndex;
+      }
+
+      private void saveTripIndexed(Trip trip) {
+          synchronized (TripMigrationJob.STORE_LOCK) {
+              tripStorage.saveTrip(trip);
+          }
+          tripIndex.put(trip);
+          tripContentIndex.record(trip);
+          tripMigrations.noteSaved(trip);
+      }
+
+      private void deleteTripIndexed(long tripId) {
+          synchronized (TripMigrationJob.STORE_LOCK) {
+              tripStorage.deleteTrip(tripId);
+          }
+          tripIndex.remove(tripId);
+          tripContentIndex.forget(tripId);
+      }
+
+      private void mergeTripsIndexed(List<String> tripIds) {
+          synchronized (TripMigrationJob.STORE_LOCK) {
+              tripStorage.mergeUserTrips(tripIds);
           }
+          tripIndex.invalidate();
+          tripMigrations.noteStoreRewritten();
+      }
+
+      /**
+       * Download all user trips, then call listener on the UI thread with the
+       * ids of trips that were added or edited - or null if the download
+       * failed.
+       *
+       * Each downloaded trip goes through TripContentIndex.upsertAll(): trips
+       * we already hold unchanged are not written, edited ones are updated in
+       * place, and only what changed is patched into the trip index. Trips
+       * are never deleted by a download.
+       */
+      private void syncUserTrips(TripContentIndex.Listener listener) {
+          new Thread(() -> {
+              List<Long> changedIds = null;
+              try {
+                  String userEmail = new UserAuthManager(MainActivity.this).getCurrentUserEmail();
+                  if (userEmail == null || userEmail.isEmpty()) throw new IllegalStateException("Not signed in");
+
+                  List<Trip> downloaded = new ArrayList<>();
+                  List<String> uniqueTripIds = new ArrayList<>();
+                  downloadUserTrips(userEmail, downloaded, uniqueTripIds);
+
+                  TripContentIndex.Changes changes;
+                  synchronized (TripMigrationJob.STORE_LOCK) {
+                      // Baseline once; saveTripIndexed()/deleteTripIndexed() keep it current
+                      if (!tripContentIndex.isPrimed()) {
+                          tripContentIndex.ensurePrimed(tripStorage.getAllTrips());
+                      }
+                      changes = tripContentIndex.upsertAll(tripStorage, downloaded, uniqueTripIds);
+                  }
+                  for (Trip trip : changes.changed) {
+                      tripIndex.put(trip);
+                      tripMigrations.noteSaved(trip);
+                  }
+                  Log.d(TAG, "Cloud download: " + downloaded.size() + " trips, " + changes.changed.size() + " added or edited");
+                  changedIds = changes.changedIds();
+              } catch (Exception e) {
+                  Log.e(TAG, "Error downloading user trips: " + e.getMessage(), e);
+              }
+              final List<Long> result = changedIds;
+              runOnUiThread(() -> listener.onTripsSynced(result));
+          }).start();
+      }
+
+      // Blocking fetch of every trip on the account, across devices. Trips
+      // new to this device are saved under CLOUD_TRIP_ID_OFFSET + server id.
+      private void downloadUserTrips(String userEmail, List<Trip> trips, List<String> uniqueTripIds) throws Exception {
+          okhttp3.OkHttpClient client = new okhttp3.OkHttpClient.Builder()
+              .connectTimeout(10, java.util.concurrent.TimeUnit.SECONDS)
+              .readTimeout(30, java.util.concurrent.TimeUnit.SECONDS)
+              .build();
+
+          String encodedEmail = java.net.URLEncoder.encode(userEmail, "UTF-8");
+          okhttp3.Request request = new okhttp3.Request.Builder()
+              .url("https://miletracker-pro.replit.app/api/user/trips/" + encodedEmail)
+              .get()
+              .build();
 
-          return periodTrips;
+          try (okhttp3.Response response = client.newCall(request).execute()) {
+              if (!response.isSuccessful()) throw new java.io.IOException("HTTP " + response.code());
+              org.json.JSONArray items = new org.json.JSONObject(response.body().string()).getJSONArray("trips");
+              for (int i = 0; i < items.length(); i++) {
+                  org.json.JSONObject item = items.getJSONObject(i);
+                  if (item.isNull("startTime")) continue; // Nothing to match it by
+
+                  Trip trip = new Trip();
+                  trip.setId(CLOUD_TRIP_ID_OFFSET + item.getLong("id"));
+                  trip.setStartTime(item.getLong("startTime"));
+                  trip.setEndTime(item.optLong("endTime", item.getLong("startTime")));
+                  trip.setDistance(item.optDouble("distance", 0));
+                  trip.setDuration(item.optLong("duration", 0));
+                  trip.setStartLatitude(item.optDouble("startLatitude", 0));
+                  trip.setStartLongitude(item.optDouble("startLongitude", 0));
+                  trip.setEndLatitude(item.optDouble("endLatitude", 0));
+                  trip.setEndLongitude(item.optDouble("endLongitude", 0));
+                  trip.setAutoDetected(item.optBoolean("isAutoDetected", false));
+                  trip.setStartAddress(item.optString("startAddress", null));
+                  trip.setEndAddress(item.optString("endAddress", null));
+                  trip.setCategory(item.optString("category", "Personal"));
+                  trip.setClientName(item.optString("clientName", ""));
+                  trip.setNotes(item.optString("notes", ""));
+                  trips.add(trip);
+                  uniqueTripIds.add(item.optString("uniqueTripId", null));
+              }
+          }
       }
 
       private String getPeriodLabel() {
@@ -4242,74 +4417,69 @@
               locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
               if (locationManager != null && ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
                   statusText.setText("GPS ready");
+                  startLiveLocationUpdates();
               }
           } catch (Exception e) {
               Log.e(TAG, "Error initializing GPS: " + e.getMessage(), e);
           }
       }
 
+      // Live speed and distance are pushed: passive location updates (fixes
+      // the background service or any other app already obtained) are
+      // delivered on the location pipeline thread, which publishes
+      // LiveTelemetry snapshots for the dashboard
       private void setupSpeedMonitoring() {
           try {
-              speedRunnable = new Runnable() {
-                  @Override
-                  public void run() {
-                      if (ContextCompat.checkSelfPermission(MainActivity.this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED && locationManager != null) {
-                          try {
-                              android.location.Location lastKnownLocation = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
-                              if (lastKnownLocation != null && speedText != null) {
-                                  // GPS Signal Quality Validation (Priority 2)
-                                  if (!isLocationAccurateEnough(lastKnownLocation)) {
-                                      // Log poor quality GPS reading but continue displaying speed for user feedback
-                                      Log.d(TAG, String.format("Rejecting poor quality GPS reading - Accuracy: %.1fm", 
-                                          lastKnownLocation.hasAccuracy() ? lastKnownLocation.getAccuracy() : -1));
-                                      if (speedText != null) {
-                                          speedText.setText("Speed: GPS signal weak");
-                                      }
-                                      return; // Skip trip detection for poor quality readings
-                                  }
-
-                                  float speed = lastKnownLocation.getSpeed() * 2.237f; // Convert m/s to mph
+              locationPipeline.start();
+              startLiveLocationUpdates();
+          } catch (Exception e) {
+              Log.e(TAG, "Error setting up speed monitoring: " + e.getMessage(), e);
+          }
+      }
 
-                                  // Update real-time distance
-                                  updateRealTimeDistance(lastKnownLocation);
+      private void startLiveLocationUpdates() {
+          if (liveLocationUpdatesActive || locationManager == null || locationPipeline.looper() == null) return;
+          if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) return;
+          try {
+              locationManager.requestLocationUpdates(LocationManager.PASSIVE_PROVIDER, 0, 0, this, locationPipeline.looper());
+              liveLocationUpdatesActive = true;
+          } catch (Exception e) {
+              Log.w(TAG, "Live location updates unavailable: " + e.getMessage());
+          }
+      }
 
-                                  // Process enhanced auto detection if enabled (only with quality GPS)
-                                  if (autoDetectionEnabled) {
-                                      processEnhancedAutoDetection(
-                                          (double) speed, 
-                                          lastKnownLocation.getLatitude(), 
-                                          lastKnownLocation.getLongitude(), 
-                                          System.currentTimeMillis()
-                                      );
-                                  } else {
-                                      speedText.setText(String.format("Speed: %.1f mph", speed));
-                                  }
-                              }
-                          } catch (Exception e) {
-                              Log.w(TAG, "Error getting speed: " + e.getMessage());
-                          }
-                      }
-                      speedHandler.postDelayed(this, 5000); // Update every 5 seconds
-                  }
-              };
-              speedHandler.post(speedRunnable);
+      private void stopLiveLocationUpdates() {
+          if (!liveLocationUpdatesActive) return;
+          liveLocationUpdatesActive = false;
+          try {
+              locationManager.removeUpdates(this);
           } catch (Exception e) {
-              Log.e(TAG, "Error setting up speed monitoring: " + e.getMessage(), e);
+              Log.w(TAG, "Error removing live location updates: " + e.getMessage());
+          }
+      }
+
+      // Network fixes only reach us through the passive provider; the polled
+      // GPS fix they replace never included them
+      private boolean isRepeatOrNetworkFix(Location location) {
+          return location.getTime() == lastPipelineFixTime
+              || LocationManager.NETWORK_PROVIDER.equals(location.getProvider());
+      }
+
+      // Run on the location pipeline thread, or inline if it isn't running
+      private void runOnLocationPipeline(Runnable task) {
+          if (!locationPipeline.post(task)) {
+              task.run();
           }
       }
 
       private void updateRealTimeDistance(android.location.Location currentLocation) {
           try {
               if (lastDistanceLocation != null) {
-                  double distance = calculateDistance(
+                  double distance = GeoMath.distanceMiles(
                       lastDistanceLocation.getLatitude(), lastDistanceLocation.getLongitude(),
                       currentLocation.getLatitude(), currentLocation.getLongitude()
                   );
                   realTimeDistance += distance;
-
-                  if (realTimeDistanceText != null) {
-                      realTimeDistanceText.setText(String.format("Distance: %.1f miles", realTimeDistance));
-                  }
               }
               lastDistanceLocation = currentLocation;
           } catch (Exception e) {
@@ -4317,96 +4487,56 @@
           }
       }
 
-      private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-          final int R = 3959; // Earth's radius in miles
-          double latDistance = Math.toRadians(lat2 - lat1);
-          double lonDistance = Math.toRadians(lon2 - lon1);
-          double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                  + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                  * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-          double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-          return R * c;
-      }
-
-      // Enhanced trip segmentation for better stop detection
-      private void processEnhancedAutoDetection(double speed, double latitude, double longitude, long timestamp) {
+      // Enhanced trip segmentation for better stop detection. Start / pause /
+      // end rules live in TripDetectionEngine (ACTIVITY_PROFILE thresholds)
+      private void processEnhancedAutoDetection(double speed, double latitude, double longitude, float accuracy, long timestamp) {
           // Validate timestamp to prevent 1969 phantom trips
           if (timestamp <= 0) {
               timestamp = System.currentTimeMillis();
               Log.w(TAG, "Invalid timestamp detected, using current time: " + timestamp);
           }
 
-          final double DRIVING_SPEED_THRESHOLD = 4.6; // mph to consider driving (matches MileIQ for better start location accuracy)
-          final double STATIONARY_SPEED_THRESHOLD = 2.0; // mph to consider stationary
-          final int DRIVING_READINGS_TO_START = 3; // consecutive readings to start trip
-          final int STATIONARY_READINGS_TO_PAUSE = 4; // consecutive readings to pause trip
-          final long TRIP_END_TIMEOUT = 8 * 60 * 1000; // 8 minutes to end trip
-          final long PAUSE_DETECTION_TIME = 3 * 60 * 1000; // 3 minutes to detect meaningful pause
-          final double LOCATION_CHANGE_THRESHOLD = 0.05; // miles to detect location change
-
           try {
-              if (speed >= DRIVING_SPEED_THRESHOLD) {
-                  // Driving detected
-                  movingReadingsCount++;
-                  stationaryReadingsCount = 0;
-
-                  if (currentTripPaused && movingReadingsCount >= DRIVING_READINGS_TO_START) {
-                      // Resume paused trip or start new trip if location changed significantly
-                      if (pausedTripLocation != null) {
-                          double distanceFromPause = calculateDistance(
-                              pausedTripLocation.latitude, pausedTripLocation.longitude,
-                              latitude, longitude
-                          );
-
-                          if (distanceFromPause > LOCATION_CHANGE_THRESHOLD) {
-                              // Location changed significantly - end previous trip and start new one
-                              endCurrentTrip(pausedTripLocation.latitude, pausedTripLocation.longitude, timestamp);
-                              startNewTrip(latitude, longitude, speed, timestamp);
-                          } else {
-                              // Resume same trip
-                              resumeCurrentTrip(latitude, longitude, speed, timestamp);
-                          }
-                      } else {
-                          startNewTrip(latitude, longitude, speed, timestamp);
-                      }
-                  } else if (!isCurrentlyTracking && movingReadingsCount >= DRIVING_READINGS_TO_START) {
-                      // Start new trip
-                      startNewTrip(latitude, longitude, speed, timestamp);
-                  }
+              switch (tripDetector.onFix(latitude, longitude, speed, accuracy, timestamp)) {
+                  case TripDetectionEngine.EVENT_TRIP_STARTED:
+                      startNewTrip(latitude, longitude, speed, accuracy, timestamp);
+                      break;
 
-                  // Update trip path if actively tracking
-                  if (isCurrentlyTracking && !currentTripPaused) {
-                      currentTripPath.add(new LocationPoint(latitude, longitude, speed, timestamp));
-                  }
+                  case TripDetectionEngine.EVENT_TRIP_SPLIT:
+                      // Location changed significantly - end previous trip and start new one
+                      endCurrentTrip(tripDetector.endLatitude(), tripDetector.endLongitude(), tripDetector.endTime());
+                      startNewTrip(latitude, longitude, speed, accuracy, timestamp);
+                      break;
 
-              } else if (speed <= STATIONARY_SPEED_THRESHOLD && isCurrentlyTracking) {
-                  // Stationary detected during active trip
-                  stationaryReadingsCount++;
-                  movingReadingsCount = 0;
+                  case TripDetectionEngine.EVENT_TRIP_RESUMED:
+                      resumeCurrentTrip(latitude, longitude, speed, accuracy, timestamp);
+                      break;
 
-                  if (!currentTripPaused && stationaryReadingsCount >= STATIONARY_READINGS_TO_PAUSE) {
-                      // Pause the current trip
+                  case TripDetectionEngine.EVENT_TRIP_PAUSED:
+                      addTripPathPoint(latitude, longitude, speed, accuracy, timestamp);
                       pauseCurrentTrip(latitude, longitude, timestamp);
-                  }
+                      break;
+
+                  case TripDetectionEngine.EVENT_TRIP_ENDED:
+                      endCurrentTrip(tripDetector.endLatitude(), tripDetector.endLongitude(), tripDetector.endTime());
+                      break;
 
-                  // Check if we should end the trip after extended pause
-                  if (currentTripPaused && tripPauseStartTime != null) {
-                      long pauseDuration = timestamp - tripPauseStartTime;
-                      if (pauseDuration > TRIP_END_TIMEOUT) {
-                          endCurrentTrip(latitude, longitude, timestamp);
+                  default:
+                      // Every fix of a trip, slow ones included, goes to the path buffer:
+                      // its distance filter holds still through stops and its stopped-time
+                      // tally needs the slow fixes to see them at all
+                      if (isCurrentlyTracking && tripDetector.isTripFix(speed)) {
+                          addTripPathPoint(latitude, longitude, speed, accuracy, timestamp);
                       }
-                  }
+                      break;
               }
 
-              // Update status display
-              updateTripStatus(speed, timestamp);
-
           } catch (Exception e) {
               Log.e(TAG, "Error in enhanced auto detection", e);
           }
       }
 
-      private void startNewTrip(double latitude, double longitude, double speed, long timestamp) {
+      private void startNewTrip(double latitude, double longitude, double speed, float accuracy, long timestamp) {
           try {
               // Validate timestamp to prevent corrupted trip data
               if (timestamp <= 0) {
@@ -4420,25 +4550,34 @@
               currentTripStartLatitude = latitude;
               currentTripStartLongitude = longitude;
               currentTripPath.clear();
-              currentTripPath.add(new LocationPoint(latitude, longitude, speed, timestamp));
-
-              // Reset counters
-              movingReadingsCount = 0;
-              stationaryReadingsCount = 0;
-              tripPauseStartTime = null;
-              pausedTripLocation = null;
+              checkpointedPathPoints = 0;
+              try {
+                  getTripCheckpoint().begin(timestamp, buildTripCheckpointHeader());
+              } catch (Exception e) {
+                  Log.w(TAG, "Trip checkpoint unavailable: " + e.getMessage());
+              }
+              addTripPathPoint(latitude, longitude, speed, accuracy, timestamp);
 
               // Set immediate fallback start address (coordinates) in case geocoding is slow
               currentTripStartAddress = String.format("%.4f, %.4f", latitude, longitude);
 
               // Get start address (async - will overwrite fallback when resolved)
+              final long tripStartTime = currentTripStartTime;
               getAddressFromCoordinates(latitude, longitude, new AddressCallback() {
                   @Override
                   public void onAddressReceived(String address) {
-                      if (address != null && !address.trim().isEmpty()) {
+                      if (address == null || address.trim().isEmpty()) return;
+                      runOnLocationPipeline(() -> {
+                          // The trip may have ended (or been replaced) while geocoding
+                          if (!isCurrentlyTracking || currentTripStartTime != tripStartTime) return;
                           currentTripStartAddress = address;
-                      }
-                      Log.d(TAG, "Trip started at: " + currentTripStartAddress);
+                          try {
+                              getTripCheckpoint().updateHeader(buildTripCheckpointHeader());
+                          } catch (Exception e) {
+                              Log.w(TAG, "Trip checkpoint header update failed: " + e.getMessage());
+                          }
+                          Log.d(TAG, "Trip started at: " + address);
+                      });
                   }
               });
 
@@ -4452,8 +4591,6 @@
       private void pauseCurrentTrip(double latitude, double longitude, long timestamp) {
           try {
               currentTripPaused = true;
-              tripPauseStartTime = timestamp;
-              pausedTripLocation = new LocationPoint(latitude, longitude, 0, timestamp);
 
               Log.d(TAG, "Trip paused - Stationary detected");
 
@@ -4462,14 +4599,12 @@
           }
       }
 
-      private void resumeCurrentTrip(double latitude, double longitude, double speed, long timestamp) {
+      private void resumeCurrentTrip(double latitude, double longitude, double speed, float accuracy, long timestamp) {
           try {
               currentTripPaused = false;
-              tripPauseStartTime = null;
-              pausedTripLocation = null;
 
               // Add resume point to path
-              currentTripPath.add(new LocationPoint(latitude, longitude, speed, timestamp));
+              addTripPathPoint(latitude, longitude, speed, accuracy, timestamp);
 
               Log.d(TAG, "Trip resumed - Movement detected");
 
@@ -4485,50 +4620,52 @@
               isCurrentlyTracking = false;
               currentTripPaused = false;
 
-              // Calculate trip distance from path
-              double totalDistance = 0;
-              for (int i = 1; i < currentTripPath.size(); i++) {
-                  LocationPoint prev = currentTripPath.get(i - 1);
-                  LocationPoint curr = currentTripPath.get(i);
-                  totalDistance += calculateDistance(prev.latitude, prev.longitude, curr.latitude, curr.longitude);
-              }
-
-              // Make totalDistance final for use in inner class
-              final double finalTotalDistance = totalDistance;
+              // Trip distance is Kalman-filtered by the path buffer as points arrive
+              final double finalTotalDistance = currentTripPath.distanceMiles();
 
-              if (finalTotalDistance < 0.1) {
+              if (finalTotalDistance < tripDetector.profile().minTripMiles) {
                   Log.d(TAG, "Trip too short (" + String.format("%.2f", finalTotalDistance) + " mi), not saving");
                   resetTripTracking();
                   return;
               }
 
+              // Capture the trip now - a split starts the next trip before the
+              // geocoder answers, so the callback must not read shared state
+              final long validatedEndTime;
+              if (timestamp > 0) {
+                  validatedEndTime = timestamp;
+              } else {
+                  validatedEndTime = System.currentTimeMillis();
+                  Log.w(TAG, "Invalid end timestamp, using current time: " + validatedEndTime);
+              }
+              if (currentTripStartTime <= 0) {
+                  currentTripStartTime = validatedEndTime - (5 * 60 * 1000); // Default 5-minute trip if start time corrupted
+                  Log.w(TAG, "Invalid start timestamp, using estimated time: " + currentTripStartTime);
+              }
+              final long tripStartTime = currentTripStartTime;
+              final double tripStartLatitude = currentTripStartLatitude;
+              final double tripStartLongitude = currentTripStartLongitude;
+              final String tripStartAddress = currentTripStartAddress;
+
+              // Calculate actual driving duration (excluding pause times)
+              final long actualDrivingDuration = calculateActualDrivingTime();
+
+              // Reset for next trip
+              resetTripTracking();
+
               // Get end address
               getAddressFromCoordinates(latitude, longitude, new AddressCallback() {
                   @Override
                   public void onAddressReceived(String endAddress) {
-                      // Validate timestamps before saving trip to prevent corruption
-                      long validatedEndTime = timestamp;
-                      if (validatedEndTime <= 0) {
-                          validatedEndTime = System.currentTimeMillis();
-                          Log.w(TAG, "Invalid end timestamp, using current time: " + validatedEndTime);
-                      }
-                      if (currentTripStartTime <= 0) {
-                          currentTripStartTime = validatedEndTime - (5 * 60 * 1000); // Default 5-minute trip if start time corrupted
-                          Log.w(TAG, "Invalid start timestamp, using estimated time: " + currentTripStartTime);
-                      }
-
-                      // Calculate actual driving duration (excluding pause times)
-                      long actualDrivingDuration = calculateActualDrivingTime();
-
                       // Save the completed trip
                       Trip completedTrip = new Trip();
-                      completedTrip.setStartTime(currentTripStartTime);
+                      completedTrip.setStartTime(tripStartTime);
                       completedTrip.setEndTime(validatedEndTime);
-                      completedTrip.setStartLatitude(currentTripStartLatitude);
-                      completedTrip.setStartLongitude(currentTripStartLongitude);
+                      completedTrip.setStartLatitude(tripStartLatitude);
+                      completedTrip.setStartLongitude(tripStartLongitude);
                       completedTrip.setEndLatitude(latitude);
                       completedTrip.setEndLongitude(longitude);
-                      completedTrip.setStartAddress(currentTripStartAddress != null && !currentTripStartAddress.trim().isEmpty() ? currentTripStartAddress : "Unknown");
+                      completedTrip.setStartAddress(tripStartAddress != null && !tripStartAddress.trim().isEmpty() ? tripStartAddress : "Unknown");
                       completedTrip.setEndAddress(endAddress != null ? endAddress : "Unknown");
                       completedTrip.setDistance(finalTotalDistance);
                       completedTrip.setDuration(actualDrivingDuration); // Only actual driving time
@@ -4536,7 +4673,7 @@
                       completedTrip.setAutoDetected(true); // Fix labeling bug - auto trips
                       completedTrip.setCategory("Business");
 
-                      tripStorage.saveTrip(completedTrip);
+                      saveTripIndexed(completedTrip);
 
                       // Track guest mode trip completion for registration prompts
                       onGuestTripCompleted();
@@ -4552,8 +4689,6 @@
 
                       Log.d(TAG, "Trip completed - Distance: " + String.format("%.1f", finalTotalDistance) + " miles");
 
-                      // Reset for next trip
-                      resetTripTracking();
                       refreshTripDisplay();
                   }
               });
@@ -4569,97 +4704,136 @@
           currentTripStartLongitude = 0;
           currentTripStartAddress = null;
           currentTripPath.clear();
-          movingReadingsCount = 0;
-          stationaryReadingsCount = 0;
-          tripPauseStartTime = null;
-          pausedTripLocation = null;
+          checkpointedPathPoints = 0;
           realTimeDistance = 0.0;
+          if (tripCheckpoint != null) {
+              tripCheckpoint.clear();
+          }
       }
 
-      // Calculate actual driving time by excluding pause periods
-      private long calculateActualDrivingTime() {
+      private TripCheckpoint getTripCheckpoint() {
+          if (tripCheckpoint == null) {
+              java.io.File dir = new java.io.File(getFilesDir(), "journal");
+              tripCheckpoint = new TripCheckpoint(new java.io.File(dir, "activity_trip.ckpt"), 10, 60 * 1000);
+          }
+          return tripCheckpoint;
+      }
+
+      private org.json.JSONObject buildTripCheckpointHeader() throws org.json.JSONException {
+          org.json.JSONObject header = new org.json.JSONObject();
+          header.put("startTime", currentTripStartTime);
+          header.put("startLatitude", currentTripStartLatitude);
+          header.put("startLongitude", currentTripStartLongitude);
+          header.put("startAddress", currentTripStartAddress);
+          return header;
+      }
+
+      // Feed the in-memory path; points it keeps after simplification are
+      // checkpointed by persistTripPath()
+      private void addTripPathPoint(double latitude, double longitude, double speed, float accuracy, long timestamp) {
+          currentTripPath.add(latitude, longitude, speed, accuracy, timestamp);
+      }
+
+      // Pipeline persistence stage: append newly committed path points to the
+      // crash-safe checkpoint log
+      private void persistTripPath() {
+          if (!isCurrentlyTracking) return;
           try {
-              long totalTime = System.currentTimeMillis() - currentTripStartTime;
-              long pauseTime = 0;
-
-              // Estimate pause time based on stationary periods in trip path
-              long lastDrivingTime = currentTripStartTime;
-              boolean wasPaused = false;
-              long pauseStartTime = 0;
-
-              for (LocationPoint point : currentTripPath) {
-                  if (point.speed <= 1.0) { // Stationary speed threshold
-                      if (!wasPaused) {
-                          wasPaused = true;
-                          pauseStartTime = point.timestamp;
-                      }
-                  } else { // Driving speed
-                      if (wasPaused) {
-                          pauseTime += (point.timestamp - pauseStartTime);
-                          wasPaused = false;
-                      }
-                      lastDrivingTime = point.timestamp;
-                  }
+              getTripCheckpoint().setTotals(currentTripPath.distanceMeters(),
+                      currentTripPath.completedPauseMs(), currentTripPath.pauseStartTime());
+              for (; checkpointedPathPoints < currentTripPath.size(); checkpointedPathPoints++) {
+                  int i = checkpointedPathPoints;
+                  getTripCheckpoint().addPoint(currentTripPath.latitudeAt(i), currentTripPath.longitudeAt(i),
+                          currentTripPath.speedAt(i), currentTripPath.timestampAt(i));
               }
+          } catch (java.io.IOException e) {
+              Log.w(TAG, "Trip checkpoint append failed: " + e.getMessage());
+          }
+      }
 
-              // Handle if still paused at end
-              if (wasPaused && pauseStartTime > 0) {
-                  pauseTime += (System.currentTimeMillis() - pauseStartTime);
-              }
+      // Pick up an auto-detected trip that was in progress when the process was killed
+      private void restoreCheckpointedTrip() {
+          try {
+              TripCheckpoint.Restored restored = getTripCheckpoint().restore();
+              if (restored == null || isCurrentlyTracking) return;
 
-              long drivingTime = totalTime - pauseTime;
-              Log.d(TAG, "Calculated driving time: " + (drivingTime / 60000) + " minutes (excluded " + (pauseTime / 60000) + " minutes of stops)");
+              currentTripStartTime = restored.header.optLong("startTime", restored.tripId);
+              currentTripStartLatitude = restored.header.optDouble("startLatitude", 0);
+              currentTripStartLongitude = restored.header.optDouble("startLongitude", 0);
+              currentTripStartAddress = restored.header.optString("startAddress", null);
+              currentTripPath.clear();
 
-              return Math.max(drivingTime, 60000); // Minimum 1 minute driving time
+              double lastLat = currentTripStartLatitude;
+              double lastLon = currentTripStartLongitude;
+              long lastTime = currentTripStartTime;
+              PathCodec.Reader reader = new PathCodec.Reader(restored.path.buffer(), restored.path.byteLength());
+              while (reader.next()) {
+                  lastLat = reader.latitude();
+                  lastLon = reader.longitude();
+                  lastTime = reader.timestamp();
+                  // Already simplified and in the checkpoint - new points continue from here
+                  currentTripPath.restore(lastLat, lastLon, reader.speedMph(), lastTime);
+              }
+              // Filtered distance and stopped time as they were, not rebuilt from the path
+              currentTripPath.restoreTotals(restored.distanceMeters, restored.completedPauseMs, restored.pauseStartTime);
+              checkpointedPathPoints = currentTripPath.size();
+
+              isCurrentlyTracking = true;
+              currentTripPaused = false;
 
+              // Same timeout as a paused trip: past it, close the trip where it stopped
+              if (System.currentTimeMillis() - lastTime > tripDetector.profile().pauseTimeoutMs) {
+                  endCurrentTrip(lastLat, lastLon, lastTime);
+              } else {
+                  tripDetector.resumeTrip(currentTripStartTime);
+                  liveTelemetry.publish(buildTripStatus(0, System.currentTimeMillis()));
+                  Log.d(TAG, "Restored in-progress trip with " + currentTripPath.size() + " points");
+              }
           } catch (Exception e) {
-              Log.e(TAG, "Error calculating driving time, using total time", e);
-              return System.currentTimeMillis() - currentTripStartTime;
+              Log.e(TAG, "Error restoring checkpointed trip: " + e.getMessage(), e);
           }
       }
 
-      private void updateTripStatus(double speed, long timestamp) {
+      // Calculate actual driving time by excluding pause periods
+      private long calculateActualDrivingTime() {
           try {
-              String statusText;
-              if (isCurrentlyTracking) {
-                  if (currentTripPaused) {
-                      long pauseDuration = timestamp - tripPauseStartTime;
-                      long remainingTime = (8 * 60 * 1000) - pauseDuration; // 8 minutes timeout
-                      long remainingMinutes = remainingTime / (60 * 1000);
-                      statusText = String.format("Trip paused (ends in %dm)", remainingMinutes);
-                  } else {
-                      long tripDuration = timestamp - currentTripStartTime;
-                      long minutes = tripDuration / (60 * 1000);
-                      statusText = String.format("Tracking trip - %dm, %.1f mph", minutes, speed);
-                  }
-              } else {
-                  statusText = String.format("Monitoring - %.1f mph", speed);
-              }
+              long now = System.currentTimeMillis();
+              long totalTime = now - currentTripStartTime;
 
-              if (speedText != null) {
-                  speedText.setText(statusText);
-              }
+              // Stationary periods (<= 1 mph) are tallied by the path buffer as points arrive
+              long pauseTime = currentTripPath.pausedMs(now);
+
+              long drivingTime = totalTime - pauseTime;
+              Log.d(TAG, "Calculated driving time: " + (drivingTime / 60000) + " minutes (excluded " + (pauseTime / 60000) + " minutes of stops)");
+
+              return Math.max(drivingTime, 60000); // Minimum 1 minute driving time
 
           } catch (Exception e) {
-              Log.e(TAG, "Error updating trip status", e);
+              Log.e(TAG, "Error calculating driving time, using total time", e);
+              return System.currentTimeMillis() - currentTripStartTime;
           }
       }
 
-      // Helper classes
-      private static class LocationPoint {
-          double latitude;
-          double longitude;
-          double speed;
-          long timestamp;
-
-          LocationPoint(double lat, double lon, double spd, long time) {
-              latitude = lat;
-              longitude = lon;
-              speed = spd;
-              timestamp = time;
+      // Snapshot of the tracking state after a fix, for the UI
+      private TripStatus buildTripStatus(double speed, long timestamp) {
+          if (!autoDetectionEnabled) {
+              return new TripStatus(TripStatus.STATE_MANUAL, speed, 0, 0, 0, realTimeDistance);
+          }
+          if (!isCurrentlyTracking) {
+              return new TripStatus(TripStatus.STATE_IDLE, speed, 0, 0, 0, realTimeDistance);
+          }
+          double tripMiles = currentTripPath.distanceMiles();
+          if (currentTripPaused) {
+              long pauseDuration = timestamp - tripDetector.pauseStartTime();
+              long remaining = tripDetector.profile().pauseTimeoutMs - pauseDuration;
+              return new TripStatus(TripStatus.STATE_PAUSED, speed, timestamp - currentTripStartTime, remaining,
+                  tripMiles, realTimeDistance);
           }
+          return new TripStatus(TripStatus.STATE_DRIVING, speed, timestamp - currentTripStartTime, 0,
+              tripMiles, realTimeDistance);
       }
 
+      // Helper classes
       private interface AddressCallback {
           void onAddressReceived(String address);
       }
@@ -4726,11 +4900,14 @@
       private void batchUpdateAddresses() {
           new Thread(() -> {
               try {
-                  List<Trip> allTrips = tripStorage.getAllTrips();
+                  // Only trips with coordinates but an incomplete address
+                  List<Trip> incompleteTrips = getTripIndex().getTrips(Long.MIN_VALUE, Long.MAX_VALUE, trip ->
+                      (isAddressIncomplete(trip.getStartAddress()) && trip.getStartLatitude() != 0 && trip.getStartLongitude() != 0)
+                      || (isAddressIncomplete(trip.getEndAddress()) && trip.getEndLatitude() != 0 && trip.getEndLongitude() != 0));
                   int updatedCount = 0;
 
-                  for (Trip trip : allTrips) {
-                      // Check if trip needs address update (has coordinates but incomplete address)
+                  for (Trip trip : incompleteTrips) {
+                      // Check which end needs an address update
                       boolean needsStartUpdate = isAddressIncomplete(trip.getStartAddress()) && 
                                                 trip.getStartLatitude() != 0 && trip.getStartLongitude() != 0;
                       boolean needsEndUpdate = isAddressIncomplete(trip.getEndAddress()) && 
@@ -4761,7 +4938,7 @@
                               }
                           }
 
-                          tripStorage.saveTrip(currentTrip);
+                          saveTripIndexed(currentTrip);
                           updatedCount++;
 
                           // Small delay to avoid overwhelming the geocoding service
@@ -4912,8 +5089,10 @@
       }
 
       private void resetRealTimeDistance() {
-          realTimeDistance = 0.0;
-          lastDistanceLocation = null;
+          runOnLocationPipeline(() -> {
+              realTimeDistance = 0.0;
+              lastDistanceLocation = null;
+          });
           if (realTimeDistanceText != null) {
               realTimeDistanceText.setText("Distance: 0.0 miles");
           }
@@ -4934,6 +5113,7 @@
                           statusText.setText(String.format("Recording: %.2f miles", distance));
                       } else if ("completed".equals(status)) {
                           statusText.setText("Manual trip completed");
+                          tripIndex.invalidate(); // Saved by ManualTripService's own TripStorage
                           updateStats();
                           if ("home".equals(currentTab)) {
                               updateRecentTrips();
@@ -5062,31 +5242,15 @@
 
       private void updateVehicleRegistrationCount() {
           try {
-              SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String vehiclesJson = prefs.getString("vehicle_registry", "{}");
-
+              int count = getVehicleRegistry().size();
 
-              if (vehiclesJson.equals("{}")) {
+              if (count > 0) {
+                  String displayText = count + " vehicle" + (count > 1 ? "s" : "") + " registered - Ready for auto-detection";
+                  connectedVehicleText.setText(displayText);
+                  connectedVehicleText.setTextColor(0xFF28A745);
+              } else {
                   connectedVehicleText.setText("No vehicles registered");
                   connectedVehicleText.setTextColor(0xFF6C757D);
-              } else {
-                  // Parse JSON to count vehicles
-                  try {
-                      org.json.JSONObject vehiclesObject = new org.json.JSONObject(vehiclesJson);
-                      int count = vehiclesObject.length();
-
-                      if (count > 0) {
-                          String displayText = count + " vehicle" + (count > 1 ? "s" : "") + " registered - Ready for auto-detection";
-                          connectedVehicleText.setText(displayText);
-                          connectedVehicleText.setTextColor(0xFF28A745);
-                      } else {
-                          connectedVehicleText.setText("No vehicles registered - Bluetooth won't detect trips");
-                          connectedVehicleText.setTextColor(0xFFDC3545);
-                      }
-                  } catch (Exception e) {
-                      connectedVehicleText.setText("Vehicle registry error");
-                      connectedVehicleText.setTextColor(0xFFDC3545);
-                  }
               }
           } catch (Exception e) {
               connectedVehicleText.setText("Vehicle status unknown");
@@ -5130,26 +5294,14 @@
 
               // Check registered vehicles
               SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String vehiclesJson = prefs.getString("vehicle_registry", "{}");
+              List<VehicleRegistry.Vehicle> vehicles = getVehicleRegistry().getAll();
+              diagnostics.append("Registered vehicles: ").append(vehicles.size()).append("\n");
 
-              try {
-                  org.json.JSONObject vehiclesObject = new org.json.JSONObject(vehiclesJson);
-                  int count = vehiclesObject.length();
-                  diagnostics.append("Registered vehicles: ").append(count).append("\n");
-
-                  if (count > 0) {
-                      diagnostics.append("\nVehicles:\n");
-                      java.util.Iterator<String> keys = vehiclesObject.keys();
-                      while (keys.hasNext()) {
-                          String macAddress = keys.next();
-                          org.json.JSONObject vehicle = vehiclesObject.getJSONObject(macAddress);
-                          String name = vehicle.optString("deviceName", "Unknown");
-                          String type = vehicle.optString("vehicleType", "Unknown");
-                          diagnostics.append("• ").append(name).append(" (").append(type).append(")\n");
-                      }
+              if (!vehicles.isEmpty()) {
+                  diagnostics.append("\nVehicles:\n");
+                  for (VehicleRegistry.Vehicle vehicle : vehicles) {
+                      diagnostics.append("• ").append(vehicle.deviceName).append(" (").append(vehicle.vehicleType).append(")\n");
                   }
-              } catch (Exception e) {
-                  diagnostics.append("Vehicle registry error: ").append(e.getMessage()).append("\n");
               }
 
               // Check auto detection status
@@ -5307,27 +5459,9 @@
 
       private void saveVehicleRegistration(String deviceName, String deviceAddress, String vehicleType) {
           try {
-              SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String vehiclesJson = prefs.getString("vehicle_registry", "{}");
-
-              org.json.JSONObject vehiclesObject;
-              if (vehiclesJson.equals("{}")) {
-                  vehiclesObject = new org.json.JSONObject();
-              } else {
-                  vehiclesObject = new org.json.JSONObject(vehiclesJson);
-              }
-
-              // Create vehicle entry
-              org.json.JSONObject vehicleEntry = new org.json.JSONObject();
-              vehicleEntry.put("deviceName", deviceName);
-              vehicleEntry.put("vehicleType", vehicleType);
-              vehicleEntry.put("registeredAt", System.currentTimeMillis());
-
-              // Use device address as key
-              vehiclesObject.put(deviceAddress, vehicleEntry);
-
-              // Save to preferences
-              prefs.edit().putString("vehicle_registry", vehiclesObject.toString()).apply();
+              // Keyed by device address; written back to app_prefs by the registry
+              getVehicleRegistry().put(new VehicleRegistry.Vehicle(
+                  deviceAddress, deviceName, vehicleType, System.currentTimeMillis(), 0, null));
 
               Log.d(TAG, "Vehicle registered successfully: " + deviceName + " (" + vehicleType + ") at " + deviceAddress);
 
@@ -5339,25 +5473,18 @@
 
       private void updateVehicleRegistrationUI() {
           try {
-              SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String vehiclesJson = prefs.getString("vehicle_registry", "{}");
-              org.json.JSONObject vehiclesObject = new org.json.JSONObject(vehiclesJson);
-              int count = vehiclesObject.length();
+              List<VehicleRegistry.Vehicle> vehicles = getVehicleRegistry().getAll();
 
-              if (count == 0) {
+              if (vehicles.isEmpty()) {
                   connectedVehicleText.setText("No vehicles registered. Tap 'Register Vehicle' to add one.");
                   connectedVehicleText.setTextColor(COLOR_TEXT_SECONDARY);
                   connectedVehicleText.setVisibility(View.VISIBLE);
               } else {
                   // Build a comma-separated list of vehicle names
                   StringBuilder names = new StringBuilder();
-                  java.util.Iterator<String> keys = vehiclesObject.keys();
-                  while (keys.hasNext()) {
-                      org.json.JSONObject entry = vehiclesObject.optJSONObject(keys.next());
-                      if (entry != null) {
-                          if (names.length() > 0) names.append(", ");
-                          names.append(entry.optString("deviceName", "Unknown"));
-                      }
+                  for (VehicleRegistry.Vehicle vehicle : vehicles) {
+                      if (names.length() > 0) names.append(", ");
+                      names.append(vehicle.deviceName);
                   }
                   connectedVehicleText.setText("Registered: " + names + " — tap Manage Vehicles to edit");
                   connectedVehicleText.setTextColor(0xFF28A745);
@@ -5373,9 +5500,7 @@
 
       private void showManageVehiclesDialog() {
           try {
-              SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String vehiclesJson = prefs.getString("vehicle_registry", "{}");
-              org.json.JSONObject vehiclesObject = new org.json.JSONObject(vehiclesJson);
+              List<VehicleRegistry.Vehicle> vehicles = getVehicleRegistry().getAll();
 
               AlertDialog.Builder builder = new AlertDialog.Builder(this);
               builder.setTitle("Registered Vehicles");
@@ -5384,7 +5509,7 @@
               layout.setOrientation(LinearLayout.VERTICAL);
               layout.setPadding(40, 20, 40, 10);
 
-              if (vehiclesObject.length() == 0) {
+              if (vehicles.isEmpty()) {
                   TextView empty = new TextView(this);
                   empty.setText("No vehicles registered yet.\n\nTap 'Register Vehicle' to add your car's Bluetooth connection.");
                   empty.setTextSize(14);
@@ -5399,14 +5524,10 @@
                   hint.setPadding(0, 0, 0, 16);
                   layout.addView(hint);
 
-                  java.util.Iterator<String> keys = vehiclesObject.keys();
-                  while (keys.hasNext()) {
-                      String macAddress = keys.next();
-                      org.json.JSONObject vehicleEntry = vehiclesObject.optJSONObject(macAddress);
-                      if (vehicleEntry == null) continue;
-
-                      String dName = vehicleEntry.optString("deviceName", "Unknown Device");
-                      String vType = vehicleEntry.optString("vehicleType", "");
+                  for (VehicleRegistry.Vehicle vehicleEntry : vehicles) {
+                      String macAddress = vehicleEntry.macAddress;
+                      String dName = vehicleEntry.deviceName;
+                      String vType = vehicleEntry.vehicleType;
 
                       LinearLayout row = new LinearLayout(this);
                       row.setOrientation(LinearLayout.HORIZONTAL);
@@ -5434,10 +5555,7 @@
                       final String macToRemove = macAddress;
                       removeBtn.setOnClickListener(v -> {
                           try {
-                              SharedPreferences p = getSharedPreferences("app_prefs", MODE_PRIVATE);
-                              org.json.JSONObject obj = new org.json.JSONObject(p.getString("vehicle_registry", "{}"));
-                              obj.remove(macToRemove);
-                              p.edit().putString("vehicle_registry", obj.toString()).apply();
+                              getVehicleRegistry().remove(macToRemove);
                               Toast.makeText(this, dName + " removed", Toast.LENGTH_SHORT).show();
                               updateVehicleRegistrationUI();
                           } catch (Exception ex) {
@@ -5669,37 +5787,9 @@
 
       private void registerVehicleLocally(String deviceName, String macAddress, String vehicleType) {
           try {
-              // PHASE 1 DEBUG: Use Toast notifications instead of logcat
-
-              SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String vehiclesJson = prefs.getString("vehicle_registry", "{}");
-
-
-              org.json.JSONObject vehiclesObject = new org.json.JSONObject(vehiclesJson);
-
-              // Create vehicle info JSON object
-              org.json.JSONObject vehicleInfo = new org.json.JSONObject();
-              vehicleInfo.put("macAddress", macAddress);
-              vehicleInfo.put("deviceName", deviceName);
-              vehicleInfo.put("vehicleType", vehicleType);
-              vehicleInfo.put("registrationTime", System.currentTimeMillis());
-
-              // Add to registry
-              vehiclesObject.put(macAddress, vehicleInfo);
-
-              // Save back to preferences
-              SharedPreferences.Editor editor = prefs.edit();
-              editor.putString("vehicle_registry", vehiclesObject.toString());
-              boolean saveSuccess = editor.commit(); // Use commit() instead of apply() for immediate verification
-
-
-              // Verify the save worked
-              String verifyJson = prefs.getString("vehicle_registry", "{}");
-              org.json.JSONObject verifyObject = new org.json.JSONObject(verifyJson);
-              int vehicleCount = verifyObject.length();
-
-
-              // Send debug notification
+              VehicleRegistry registry = getVehicleRegistry();
+              registry.register(new VehicleRegistry.Vehicle(
+                  macAddress, deviceName, vehicleType, System.currentTimeMillis(), 0, null));
 
           } catch (Exception e) {
           }
@@ -7161,22 +7251,8 @@
 
       @Override
       public void onLocationChanged(Location location) {
-          // GPS Signal Quality Validation for location listener
-          if (location != null && isLocationAccurateEnough(location)) {
-              // Process high-quality location updates for trip detection
-              if (autoDetectionEnabled) {
-                  float speed = location.getSpeed() * 2.237f; // Convert m/s to mph
-                  processEnhancedAutoDetection(
-                      (double) speed,
-                      location.getLatitude(),
-                      location.getLongitude(),
-                      location.getTime()
-                  );
-              }
-          } else if (location != null) {
-              Log.d(TAG, "LocationListener: Rejecting poor quality GPS reading - Accuracy: " + 
-                  (location.hasAccuracy() ? location.getAccuracy() + "m" : "unknown"));
-          }
+          // Quality filter and trip detection run on the location pipeline thread
+          locationPipeline.submit(location);
       }
 
       @Override
@@ -7191,9 +7267,11 @@
       @Override
       protected void onDestroy() {
           super.onDestroy();
-          if (speedHandler != null && speedRunnable != null) {
-              speedHandler.removeCallbacks(speedRunnable);
+          if (vehicleRegistry != null) {
+              vehicleRegistry.removeListener(vehicleRegistryListener);
           }
+          stopLiveLocationUpdates();
+          locationPipeline.stop();
           if (bluetoothUpdateReceiver != null) {
               try {
                   unregisterReceiver(bluetoothUpdateReceiver);
@@ -7246,7 +7324,7 @@
           // Only show if guest user hasn't seen this version's announcement yet
           // and they have prior activity (not a brand new install)
           boolean isExistingGuest = prefs.contains("guest_mode") ||
-              tripStorage != null && tripStorage.getAllTrips().size() > 0;
+              tripStorage != null && getTripIndex().size() > 0;
 
           if (lastSeenVersion < WHATS_NEW_VERSION && isExistingGuest) {
               showWhatsNewDialog();
@@ -7540,52 +7618,49 @@
           refreshButton.setBackground(createRoundedBackground(0xFF5A6268, 14)); // Darker gray when pressed
 
 
+          // Download latest trips from API if sync enabled
+          if (!tripStorage.isApiSyncEnabled()) {
+              tripIndex.invalidate(); // An explicit refresh always rebuilds from storage
+              finishRefreshWithFeedback(refreshButton, true);
+              return;
+          }
+
           new Thread(() -> {
               try {
-                  // Download latest trips from API if sync enabled
-                  if (tripStorage.isApiSyncEnabled()) {
-                      try {
-                          CloudBackupService cloudService = new CloudBackupService(MainActivity.this);
-                          cloudService.downloadAllUserTrips();
-                          cloudService.syncCustomCategoriesWithAPI();
-                      } catch (Exception e) {
-                          Log.e(TAG, "API download failed: " + e.getMessage());
-                      }
-                  }
-
-                  // Update UI on main thread
-                  runOnUiThread(() -> {
-                      // Reset button to original gray color
-                      refreshButton.setText("REFRESH");
-                      refreshButton.setEnabled(true);
-                      refreshButton.setBackground(createRoundedBackground(COLOR_TEXT_SECONDARY, 14));
-
-                      // Update displays
-                      if ("home".equals(currentTab)) {
-                          updateRecentTrips();
-                      } else {
-                          updateAllTrips();
-                      }
-                      updateStats();
-
-                      // Show success feedback
-                      Toast.makeText(MainActivity.this, "✓ Trips refreshed", Toast.LENGTH_SHORT).show();
-                  });
-
+                  new CloudBackupService(MainActivity.this).syncCustomCategoriesWithAPI();
               } catch (Exception e) {
-                  Log.e(TAG, "Error during refresh: " + e.getMessage(), e);
+                  Log.e(TAG, "Category sync failed: " + e.getMessage());
+              }
+          }).start();
 
-                  runOnUiThread(() -> {
-                      // Reset button to original state
-                      refreshButton.setText("REFRESH");
-                      refreshButton.setEnabled(true);
-                      refreshButton.setBackground(createRoundedBackground(COLOR_TEXT_SECONDARY, 14));
+          syncUserTrips(changedIds -> {
+              // An explicit refresh always rebuilds from storage, whatever the diff found
+              tripIndex.invalidate();
+              finishRefreshWithFeedback(refreshButton, changedIds != null);
+          });
+      }
 
-                      // Show error feedback
-                      Toast.makeText(MainActivity.this, "Refresh failed - using local data", Toast.LENGTH_SHORT).show();
-                  });
+      private void finishRefreshWithFeedback(Button refreshButton, boolean downloaded) {
+          try {
+              // Reset button to original gray color
+              refreshButton.setText("REFRESH");
+              refreshButton.setEnabled(true);
+              refreshButton.setBackground(createRoundedBackground(COLOR_TEXT_SECONDARY, 14));
+
+              // Update displays
+              if ("home".equals(currentTab)) {
+                  updateRecentTrips();
+              } else {
+                  updateAllTrips();
               }
-          }).start();
+              updateStats();
+
+              // Show success or error feedback
+              Toast.makeText(MainActivity.this, downloaded ? "✓ Trips refreshed" : "Refresh failed - using local data",
+                  Toast.LENGTH_SHORT).show();
+          } catch (Exception e) {
+              Log.e(TAG, "Error during refresh: " + e.getMessage(), e);
+          }
       }
 
       // ENHANCED: Complete edit dialog for all trip fields
@@ -7909,7 +7984,7 @@
                   trip.setEndTime(updatedDate.getTimeInMillis() + trip.getDuration());
 
                   // Save trip and sync to API
-                  tripStorage.saveTrip(trip);
+                  saveTripIndexed(trip);
                   if (tripStorage.isApiSyncEnabled()) {
                       try {
                           CloudBackupService cloudService = new CloudBackupService(MainActivity.this);
@@ -8035,7 +8110,7 @@
           deleteButton.setOnClickListener(v -> {
               try {
                   // Delete trip using TripStorage's delete method
-                  tripStorage.deleteTrip(trip.getId());
+                  deleteTripIndexed(trip.getId());
 
                   // Refresh display
                   updateRecentTrips();
@@ -8506,7 +8581,7 @@
               long daysSince = (System.currentTimeMillis() - lastRequest) / (1000L * 60 * 60 * 24);
               if (lastRequest > 0 && daysSince < 30) return;
 
-              int tripCount = tripStorage != null ? tripStorage.getAllTrips().size() : 0;
+              int tripCount = tripStorage != null ? getTripIndex().size() : 0;
               if (tripCount < 5) return;
 
               trackEvent("in_app_review_requested", "trips_" + tripCount,
@@ -8590,20 +8665,8 @@
       }
 
       private List<Trip> getTripsInDateRange(Date startDate, Date endDate, String category) {
-          List<Trip> allTrips = tripStorage.getAllTrips();
-          List<Trip> filteredTrips = new ArrayList<>();
-
-          for (Trip trip : allTrips) {
-              Date tripDate = new Date(trip.getStartTime());
-              if (!tripDate.before(startDate) && !tripDate.after(endDate)) {
-                  // Apply category filter
-                  if (category.equals("All Categories") || trip.getCategory().equals(category)) {
-                      filteredTrips.add(trip);
-                  }
-              }
-          }
-
-          return filteredTrips;
+          String categoryFilter = category.equals("All Categories") ? null : category;
+          return getTripIndex().getTrips(startDate.getTime(), endDate.getTime(), categoryFilter);
       }
 
       private String generateCSV(List<Trip> trips, Date startDate, Date endDate, String category) {
@@ -9197,9 +9260,9 @@
                   secondTrip.setNotes("Split from original trip - Second part");
 
                   // Delete original trip and save new ones
-                  tripStorage.deleteTrip(trip.getId());
-                  tripStorage.saveTrip(firstTrip);
-                  tripStorage.saveTrip(secondTrip);
+                  deleteTripIndexed(trip.getId());
+                  saveTripIndexed(firstTrip);
+                  saveTripIndexed(secondTrip);
 
                   // Backup to API if enabled
                   if (tripStorage.isApiSyncEnabled()) {
@@ -9317,7 +9380,7 @@
                               // Update trip category
                               String oldCategory = trip.getCategory();
                               trip.setCategory(newCategory);
-                              tripStorage.saveTrip(trip);
+                              saveTripIndexed(trip);
                               EventTracker.trackTripCategorized(MainActivity.this, newCategory);
                               Log.d(TAG, "Trip category updated from " + oldCategory + " to " + newCategory);
 
@@ -9398,22 +9461,26 @@
       // LEARNING SYSTEM: Auto-classify similar uncategorized trips after user establishes patterns
       private void performLocationBasedLearning(Trip trip, String category) {
           try {
-              // Get all uncategorized trips to check for similar locations
-              List<Trip> uncategorizedTrips = tripStorage.getAllTrips();
+              // Both endpoints vote for this category in their geohash cell
+              locationClassifications.recordVisit(trip.getStartLatitude(), trip.getStartLongitude(), category);
+              locationClassifications.recordVisit(trip.getEndLatitude(), trip.getEndLongitude(), category);
+
+              // Uncategorized trips in the geohash cells around this trip's endpoints
+              double radius = LocationClassificationStore.DEFAULT_RADIUS_METERS;
+              List<Trip> nearbyTrips = getTripIndex().getUncategorizedNear(
+                  trip.getStartLatitude(), trip.getStartLongitude(),
+                  trip.getEndLatitude(), trip.getEndLongitude(), radius);
               List<Trip> similarTrips = new ArrayList<>();
 
-              String startLocationKey = normalizeLocationForClassification(trip.getStartAddress());
-              String endLocationKey = normalizeLocationForClassification(trip.getEndAddress());
-
-              for (Trip uncategorizedTrip : uncategorizedTrips) {
+              for (Trip uncategorizedTrip : nearbyTrips) {
                   if (uncategorizedTrip.getId() == trip.getId()) continue; // Skip current trip
                   if (!"Uncategorized".equals(uncategorizedTrip.getCategory())) continue; // Only process uncategorized trips
 
-                  String uncategorizedStartKey = normalizeLocationForClassification(uncategorizedTrip.getStartAddress());
-                  String uncategorizedEndKey = normalizeLocationForClassification(uncategorizedTrip.getEndAddress());
-
-                  // Check if this uncategorized trip matches the location pattern
-                  if (startLocationKey.equals(uncategorizedStartKey) || endLocationKey.equals(uncategorizedEndKey)) {
+                  // Same place by coordinates, whatever the geocoder called it
+                  if (LocationClassificationStore.isNearby(trip.getStartLatitude(), trip.getStartLongitude(),
+                          uncategorizedTrip.getStartLatitude(), uncategorizedTrip.getStartLongitude(), radius)
+                      || LocationClassificationStore.isNearby(trip.getEndLatitude(), trip.getEndLongitude(),
+                          uncategorizedTrip.getEndLatitude(), uncategorizedTrip.getEndLongitude(), radius)) {
                       similarTrips.add(uncategorizedTrip);
                   }
               }
@@ -9422,7 +9489,7 @@
               if (!similarTrips.isEmpty()) {
                   for (Trip similarTrip : similarTrips) {
                       similarTrip.setCategory(category);
-                      tripStorage.saveTrip(similarTrip);
+                      saveTripIndexed(similarTrip);
                   }
 
                   // Notify user about auto-classifications
@@ -9452,75 +9519,17 @@
           }
       }
 
-      // Normalize location strings for consistent matching
-      private String normalizeLocationForClassification(String location) {
-          if (location == null || location.trim().isEmpty()) return "";
-
-          // Normalize location string for consistent matching
-          String normalized = location.toLowerCase().trim();
-
-          // Remove common prefixes/suffixes that vary
-          normalized = normalized.replaceAll("^\\d+\\s*", ""); // Remove leading numbers
-          normalized = normalized.replaceAll("\\s*,.*$", ""); // Remove everything after first comma
-          normalized = normalized.replaceAll("\\s+", " "); // Normalize whitespace
-
-          // Handle common location patterns
-          if (normalized.contains("home") || normalized.contains("house") || normalized.contains("residence")) {
-              return "home";
-          }
-
-          // Business location keywords
-          if (normalized.contains("office") || normalized.contains("corp") || normalized.contains("company") || 
-              normalized.contains("business") || normalized.contains("workplace") || normalized.contains("work")) {
-              return "business_location";
-          }
-
-          // Medical location keywords
-          if (normalized.contains("hospital") || normalized.contains("clinic") || normalized.contains("medical") || 
-              normalized.contains("doctor") || normalized.contains("dentist") || normalized.contains("pharmacy")) {
-              return "medical_location";
-          }
-
-          // Return first meaningful part of address for matching
-          String[] parts = normalized.split(" ");
-          return parts.length > 0 ? parts[0] : normalized;
-      }
-
-      // Simplify address for classification matching
-      private String simplifyAddress(String address) {
-          if (address == null) return "";
-
-          // Extract key location identifiers
-          String simplified = address.toLowerCase()
-              .replaceAll("\\d+", "") // Remove numbers
-              .replaceAll("[^a-z\\s]", "") // Remove special characters
-              .replaceAll("\\s+", " ") // Normalize spaces
-              .trim();
-
-          // Take first 3 words for location matching
-          String[] words = simplified.split("\\s+");
-          StringBuilder result = new StringBuilder();
-          for (int i = 0; i < Math.min(3, words.length); i++) {
-              if (i > 0) result.append(" ");
-              result.append(words[i]);
-          }
-
-          return result.toString();
-      }
-
       // Get auto-classification suggestion for a location
-      private String getAutoClassificationSuggestion(String address) {
+      private String getAutoClassificationSuggestion(double latitude, double longitude, String address) {
           try {
-              if (address == null || address.isEmpty()) return null;
-
-              String key = "location_" + simplifyAddress(address);
-              int count = locationPrefs.getInt(key + "_count", 0);
-
-              // Only suggest if location has been visited 2+ times
-              if (count >= 2) {
-                  return locationPrefs.getString(key + "_category", null);
+              // Learned categories near these coordinates (needs 2+ filed visits)
+              if (locationClassifications != null) {
+                  String learned = locationClassifications.suggest(latitude, longitude);
+                  if (learned != null) return learned;
               }
 
+              if (address == null || address.isEmpty()) return null;
+
               // Check for common business indicators
               String lowerAddress = address.toLowerCase();
               if (lowerAddress.contains("office") || lowerAddress.contains("corp") ||
@@ -9546,26 +9555,23 @@
       // Reset all trips to Uncategorized
       private void resetAllTripsToUncategorized() {
           try {
-              List<Trip> allTrips = tripStorage.getAllTrips();
-              int resetCount = 0;
+              List<Trip> resetTrips = getTripIndex().getTrips(Long.MIN_VALUE, Long.MAX_VALUE,
+                  trip -> !"Uncategorized".equals(trip.getCategory()));
 
-              for (Trip trip : allTrips) {
-                  if (!"Uncategorized".equals(trip.getCategory())) {
-                      trip.setCategory("Uncategorized");
-                      tripStorage.saveTrip(trip);
-                      resetCount++;
-                  }
+              for (Trip trip : resetTrips) {
+                  trip.setCategory("Uncategorized");
+                  saveTripIndexed(trip);
               }
 
-              // Sync to API if enabled
+              // Sync to API if enabled - trips already uncategorized are unchanged
               if (tripStorage.isApiSyncEnabled()) {
                   CloudBackupService cloudService = new CloudBackupService(this);
-                  for (Trip trip : allTrips) {
+                  for (Trip trip : resetTrips) {
                       cloudService.backupTrip(trip);
                   }
               }
 
-              Log.d(TAG, "Reset " + resetCount + " trips to Uncategorized");
+              Log.d(TAG, "Reset " + resetTrips.size() + " trips to Uncategorized");
 
               // Refresh display
               updateAllTrips();
@@ -9635,17 +9641,17 @@
                  lowerName.contains("tesla") || lowerName.contains("porsche");
       }
 
+      private VehicleRegistry getVehicleRegistry() {
+          if (vehicleRegistry == null) {
+              vehicleRegistry = VehicleRegistry.getInstance(this);
+              vehicleRegistry.addListener(vehicleRegistryListener);
+          }
+          return vehicleRegistry;
+      }
+
       private boolean isVehicleAlreadyRegistered(String deviceAddress) {
           try {
-              SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String vehiclesJson = prefs.getString("vehicle_registry", "{}");
-
-              if (vehiclesJson.equals("{}")) {
-                  return false;
-              }
-
-              org.json.JSONObject vehiclesObject = new org.json.JSONObject(vehiclesJson);
-              return vehiclesObject.has(deviceAddress);
+              return getVehicleRegistry().contains(deviceAddress);
 
           } catch (Exception e) {
               return false;
@@ -9755,6 +9761,7 @@
           Set<BluetoothDevice> bondedDevices = bluetoothAdapter.getBondedDevices();
           Log.d(TAG, "Found " + bondedDevices.size() + " bonded devices");
 
+          VehicleRegistry registry = getVehicleRegistry();
           for (BluetoothDevice device : bondedDevices) {
               String deviceName = device.getName();
               String macAddress = device.getAddress();
@@ -9766,20 +9773,17 @@
                   Log.d(TAG, "UCONNECT DEVICE FOUND: " + deviceName + " (" + macAddress + ")");
               }
 
-              SharedPreferences prefs = getSharedPreferences("app_prefs", MODE_PRIVATE);
-              String registryJson = prefs.getString("vehicle_registry", "{}");
-
               try {
-                  org.json.JSONObject registry = new org.json.JSONObject(registryJson);
+                  VehicleRegistry.Vehicle registered = registry.get(macAddress);
 
-                  if (registry.has(macAddress)) {
+                  if (registered != null) {
                       // Handle registered vehicles
                       try {
                           boolean isConnected = (boolean) device.getClass().getMethod("isConnected").invoke(device);
                           Log.d(TAG, "Registered vehicle " + deviceName + " connected: " + isConnected);
 
                           if (isConnected) {
-                              handleVehicleConnected(device, registry.getJSONObject(macAddress));
+                              handleVehicleConnected(device, registered);
                           }
                       } catch (Exception e) {
                           Log.d(TAG, "Could not check connection status for registered vehicle");
@@ -9813,10 +9817,10 @@
       }
 
       // Vehicle connection handler
-      private void handleVehicleConnected(BluetoothDevice device, org.json.JSONObject vehicleInfo) {
+      private void handleVehicleConnected(BluetoothDevice device, VehicleRegistry.Vehicle vehicleInfo) {
           try {
-              String deviceName = vehicleInfo.getString("deviceName");
-              String vehicleType = vehicleInfo.getString("vehicleType");
+              String deviceName = vehicleInfo.deviceName;
+              String vehicleType = vehicleInfo.vehicleType;
 
               Log.d(TAG, "Vehicle connected: " + deviceName + " (" + vehicleType + ")");
 
@@ -10137,6 +10141,8 @@
 
           // Initialize the app in guest mode (local storage only)
           tripStorage = new TripStorage(this);
+          tripMigrations = new TripMigrationJob(this);
+          tripIndex.invalidate();
 
           // CRITICAL: Explicitly disable API sync for guest mode
           tripStorage.setApiSyncEnabled(false);
@@ -10144,7 +10150,7 @@
           // Initialize feedback manager for guest users too
           initializeFeedbackManager();
 
-          locationPrefs = getSharedPreferences("location_classification", MODE_PRIVATE);
+          locationClassifications = new LocationClassificationStore(this);
           initializeGestureDetector();
           createCleanLayout();
           initializeGPS();
@@ -10188,10 +10194,7 @@
                   // Pull actual miles tracked for personalized message
                   double guestMiles = 0;
                   try {
-                      List<Trip> guestTrips = tripStorage.getAllTrips();
-                      for (Trip t : guestTrips) {
-                          guestMiles += t.getDistance();
-                      }
+                      guestMiles = getTripIndex().getRollups().getTotals(null).miles;
                   } catch (Exception ignored) {}
                   double irsRate = getIrsBusinessRate();
                   double deductions = guestMiles * irsRate;
@@ -10798,7 +10801,7 @@
           if (onboardingDialog != null && onboardingDialog.isShowing()) return;
           if (batteryPromptedThisSession) return;
           try {
-              int totalTrips = tripStorage.getAllTrips().size();
+              int totalTrips = getTripIndex().size();
               if (feedbackManager.shouldShowFeedbackPrompt(totalTrips)) {
                   // Extra delay so feedback never appears immediately after other dialogs
                   new Handler().postDelayed(() -> {
@@ -10830,7 +10833,7 @@
       private void checkAndSendFeedbackNotification() {
           if (feedbackManager == null) return;
           try {
-              int totalTrips = tripStorage.getAllTrips().size();
+              int totalTrips = getTripIndex().size();
               feedbackManager.checkAndSendNotificationAfterTrip(totalTrips, MainActivity.class);
           } catch (Exception e) {
               Log.e(TAG, "Error checking feedback notification", e);
@@ -10997,7 +11000,7 @@
               }
 
               String dayWord = daysRemaining == 1 ? "day" : "days";
-              int tripCount = tripStorage != null ? tripStorage.getAllTrips().size() : 0;
+              int tripCount = tripStorage != null ? getTripIndex().size() : 0;
               String msg = "You've tracked " + tripCount + " trip" + (tripCount == 1 ? "" : "s") +
                            " — upgrade to keep all premium features.";
 
@@ -11101,14 +11104,9 @@
               // Premium/admin/enterprise users don't need milestone nudges
               if (tripStorage.isPremiumUser()) return;
 
-              List<Trip> allTrips = tripStorage.getAllTrips();
-              double totalMiles = 0;
-              double businessMiles = 0;
-              for (Trip t : allTrips) {
-                  double d = t.getDistance();
-                  totalMiles += d;
-                  if ("Business".equals(t.getCategory())) businessMiles += d;
-              }
+              TripRollups rollups = getTripIndex().getRollups();
+              double totalMiles = rollups.getTotals(null).miles;
+              double businessMiles = rollups.getTotals("Business").miles;
 
               int[] milestones = {50, 100, 500, 1000};
               SharedPreferences milestonePrefs = getSharedPreferences("MilestoneNotifs", MODE_PRIVATE);
@@ -12149,9 +12147,7 @@
           boolean isPremiumForBanner = (billingManager != null && billingManager.isPremium()) || tripStorage.isPremiumUser();
           if (!isPremiumForBanner) {
               try {
-                  List<Trip> allTripsForValue = tripStorage.getAllTrips();
-                  double totalMilesForValue = 0;
-                  for (Trip t : allTripsForValue) { totalMilesForValue += t.getDistance(); }
+                  double totalMilesForValue = getTripIndex().getRollups().getTotals(null).miles;
                   double irsRate = getIrsBusinessRate();
                   double deductionValue = totalMilesForValue * irsRate;
 
@@ -14020,8 +14016,9 @@
           thumb.setLayoutParams(ip);
           thumb.setScaleType(android.widget.ImageView.ScaleType.CENTER_CROP);
           thumb.setBackground(createRoundedBackground(0xFF2A2A2A, 10));
-          android.graphics.Bitmap bmp = android.graphics.BitmapFactory.decodeFile(path);
-          if (bmp != null) thumb.setImageBitmap(bmp);
+          // Decoded off the UI thread at roughly thumbnail size (two thumbs share the row)
+          int thumbWidth = getResources().getDisplayMetrics().widthPixels / (hasSibling ? 2 : 1);
+          PhotoLoader.getInstance(this).load(thumb, path, thumbWidth, dpToPx(130), true);
 
           final String fp = path;
           thumb.setOnClickListener(v -> {
@@ -14030,8 +14027,8 @@
                       android.R.style.Theme_Black_NoTitleBar_Fullscreen);
                   android.widget.ImageView fullImg = new android.widget.ImageView(this);
                   fullImg.setScaleType(android.widget.ImageView.ScaleType.FIT_CENTER);
-                  android.graphics.Bitmap full = android.graphics.BitmapFactory.decodeFile(fp);
-                  if (full != null) fullImg.setImageBitmap(full);
+                  android.util.DisplayMetrics metrics = getResources().getDisplayMetrics();
+                  PhotoLoader.getInstance(this).load(fullImg, fp, metrics.widthPixels, metrics.heightPixels, false);
                   fullImg.setBackgroundColor(0xFF000000);
                   fullImg.setOnClickListener(x -> imgDialog.dismiss());
                   imgDialog.setContentView(fullImg);
@@ -0,0 +1,221 @@
+package com.miletrackerpro.app.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads expense receipts and insurance card photos into ImageViews.
+ *
+ * Decoding happens on a background thread, with inSampleSize picked so the
+ * decoded bitmap is no larger than needed for the target view - covering it
+ * for a center-crop view, fitting inside it otherwise - and then scaled down
+ * the rest of the way, so a full-screen photo is never bigger than the
+ * screen. Results are
+ * kept in a byte-bounded LRU memory cache, and small renditions (thumbnails)
+ * are also written to a disk cache keyed by path + file modification time,
+ * so reopening the Glove Box reads a few KB instead of a 12 MP camera file.
+ */
+public class PhotoLoader {
+    private static final String TAG = "PhotoLoader";
+    private static final String DISK_CACHE_DIR = "photo_thumbs";
+
+    // Renditions at or below this size (px, both sides) go to the disk cache
+    private static final int MAX_DISK_THUMB_SIZE = 768;
+    private static final int MAX_MEMORY_CACHE_BYTES = 24 * 1024 * 1024;
+    private static final long MAX_DISK_CACHE_BYTES = 20 * 1024 * 1024;
+
+    private static PhotoLoader instance;
+
+    private final File diskCacheDir;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static synchronized PhotoLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new PhotoLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PhotoLoader(Context context) {
+        diskCacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
+
+        int cacheBytes = (int) Math.min(MAX_MEMORY_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 8);
+        memoryCache = new LruCache<String, Bitmap>(cacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+
+        executor.execute(this::trimDiskCache);
+    }
+
+    /**
+     * Show the photo at path in view, decoded for a target of about
+     * targetWidth x targetHeight pixels. With crop the decoded bitmap covers
+     * the target (CENTER_CROP views); without it, it fits inside the target
+     * (FIT_CENTER views). Safe to call from the UI thread; a view that was
+     * rebound to another photo meanwhile is left alone.
+     */
+    public void load(final ImageView view, final String path,
+                     final int targetWidth, final int targetHeight, final boolean crop) {
+        if (view == null || path == null || path.isEmpty()) return;
+
+        final File file = new File(path);
+        final String key = cacheKey(file, targetWidth, targetHeight, crop);
+        view.setTag(key);
+
+        Bitmap cached = memoryCache.get(key);
+        if (cached != null) {
+            view.setImageBitmap(cached);
+            return;
+        }
+
+        executor.execute(() -> {
+            Bitmap bitmap = decode(file, key, targetWidth, targetHeight, crop);
+            if (bitmap == null) return;
+            memoryCache.put(key, bitmap);
+
+            mainHandler.post(() -> {
+                if (key.equals(view.getTag())) {
+                    view.setImageBitmap(bitmap);
+                }
+            });
+        });
+    }
+
+    /**
+     * Drop cached renditions of a photo (e.g. after it is retaken or deleted)
+     */
+    public void evict(String path) {
+        if (path == null) return;
+        String prefix = path + "|";
+        for (String key : memoryCache.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                memoryCache.remove(key);
+            }
+        }
+    }
+
+    private static String cacheKey(File file, int width, int height, boolean crop) {
+        return file.getAbsolutePath() + "|" + file.lastModified() + "|" + width + "x" + height
+            + (crop ? "|crop" : "|fit");
+    }
+
+    private Bitmap decode(File file, String key, int targetWidth, int targetHeight, boolean crop) {
+        boolean diskCacheable = targetWidth <= MAX_DISK_THUMB_SIZE && targetHeight <= MAX_DISK_THUMB_SIZE;
+        File thumbFile = new File(diskCacheDir, Integer.toHexString(key.hashCode()) + "_" + key.length() + ".jpg");
+
+        if (diskCacheable && thumbFile.exists()) {
+            Bitmap thumb = BitmapFactory.decodeFile(thumbFile.getAbsolutePath());
+            if (thumb != null) return thumb;
+        }
+
+        if (!file.exists()) return null;
+
+        try {
+            // Read dimensions only, then decode at the smallest power-of-two
+            // reduction that still covers (crop) or fills (fit) the target
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(file.getAbsolutePath(), bounds);
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight,
+                targetWidth, targetHeight, crop);
+            options.inPreferredConfig = Bitmap.Config.RGB_565; // Photos have no alpha - half the memory
+            Bitmap bitmap = BitmapFactory.decodeFile(file.getAbsolutePath(), options);
+            if (bitmap == null) return null;
+
+            // Sampling stops at up to 2x the target; finish the job before
+            // caching, so a full-screen decode ends up no bigger than the screen
+            if (targetWidth > 0 && targetHeight > 0) {
+                float widthScale = (float) targetWidth / bitmap.getWidth();
+                float heightScale = (float) targetHeight / bitmap.getHeight();
+                float scale = crop ? Math.max(widthScale, heightScale) : Math.min(widthScale, heightScale);
+                if (scale < 1f) {
+                    Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                        Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                        Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+                    if (scaled != bitmap) bitmap.recycle();
+                    bitmap = scaled;
+                }
+            }
+            if (diskCacheable) {
+                writeThumb(thumbFile, bitmap);
+            }
+            return bitmap;
+
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "Out of memory decoding " + file.getName());
+            memoryCache.evictAll();
+            return null;
+        }
+    }
+
+    // Crop keeps both sides at or above the target (the smaller ratio
+    // decides); fit only needs one side there (the larger ratio decides), as
+    // the other is letterboxed anyway. A 4032x3024 photo for a 1080x2400
+    // screen decodes at full size under crop, but at 2016x1512 under fit,
+    // then scaled to 1080x810.
+    static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight, boolean crop) {
+        int sampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) return sampleSize;
+        while (true) {
+            boolean widthCovered = width / (sampleSize * 2) >= targetWidth;
+            boolean heightCovered = height / (sampleSize * 2) >= targetHeight;
+            if (crop ? !(widthCovered && heightCovered) : !(widthCovered || heightCovered)) break;
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Thumbnails of replaced photos are never read again; drop the oldest
+    // files once the cache passes its size limit
+    private void trimDiskCache() {
+        File[] files = diskCacheDir.listFiles();
+        if (files == null) return;
+
+        long totalBytes = 0;
+        for (File f : files) totalBytes += f.length();
+        if (totalBytes <= MAX_DISK_CACHE_BYTES) return;
+
+        java.util.Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (totalBytes <= MAX_DISK_CACHE_BYTES) break;
+            totalBytes -= f.length();
+            f.delete();
+        }
+    }
+
+    private void writeThumb(File thumbFile, Bitmap bitmap) {
+        if (!diskCacheDir.exists() && !diskCacheDir.mkdirs()) return;
+
+        File tmp = new File(diskCacheDir, thumbFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write thumbnail cache: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(thumbFile)) {
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.miletrackerpro.app.storage;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold tier for trips from before the current tax year.
+ *
+ * Each past year is sealed into one immutable, gzip-compressed segment
+ * file (trips sorted by start time) under filesDir/trip_archive. A segment
+ * header carries a fingerprint of its trips' content hashes, so re-sealing
+ * an unchanged year is a header read and no write. Segments are only
+ * decoded when a query range reaches back into their year, and at most
+ * MAX_LOADED_YEARS decoded years are kept in memory.
+ */
+public class TripArchive {
+    private static final String TAG = "TripArchive";
+    private static final String DIR_NAME = "trip_archive";
+
+    private static final int MAGIC = 0x4D545041; // "MTPA"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_LOADED_YEARS = 2;
+
+    private final File dir;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    // Years handed to seal() but not yet on disk
+    private final Map<Integer, List<Trip>> pending = new HashMap<>();
+    private final Map<Integer, Long> fingerprints = new HashMap<>();
+    private final LinkedHashMap<Integer, List<Trip>> loaded = new LinkedHashMap<Integer, List<Trip>>(4, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Trip>> eldest) {
+            return size() > MAX_LOADED_YEARS;
+        }
+    };
+
+    public TripArchive(Context context) {
+        dir = new File(context.getFilesDir(), DIR_NAME);
+    }
+
+    /**
+     * Start of the current tax year (January 1, local time). Trips that
+     * start before this belong in the archive.
+     */
+    public static long currentTaxYearStart() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(cal.get(Calendar.YEAR), Calendar.JANUARY, 1, 0, 0, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * Start of the next tax year, when the current year's trips turn cold
+     */
+    public static long nextTaxYearStart() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(cal.get(Calendar.YEAR) + 1, Calendar.JANUARY, 1, 0, 0, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTimeInMillis();
+    }
+
+    public static int yearOf(long timeMs) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(timeMs);
+        return cal.get(Calendar.YEAR);
+    }
+
+    /**
+     * Make the segment for year hold exactly these trips (sorted by start
+     * time). The write happens in the background; queries see the new
+     * contents immediately.
+     */
+    public synchronized void seal(final int year, List<Trip> trips) {
+        final long fingerprint = fingerprint(trips);
+        Long current = fingerprints.get(year);
+        if (current == null) {
+            current = readFingerprint(year);
+            if (current != null) fingerprints.put(year, current);
+        }
+        if (current != null && current == fingerprint) return;
+
+        final List<Trip> copy = new ArrayList<>(trips);
+        fingerprints.put(year, fingerprint);
+        pending.put(year, copy);
+        loaded.remove(year);
+
+        writer.execute(() -> {
+            try {
+                write(year, fingerprint, copy);
+                Log.d(TAG, "Sealed " + copy.size() + " trips into the " + year + " archive");
+            } catch (IOException e) {
+                Log.e(TAG, "Error writing " + year + " archive: " + e.getMessage());
+                synchronized (TripArchive.this) {
+                    fingerprints.remove(year); // Retry on the next seal
+                }
+            }
+            synchronized (TripArchive.this) {
+                if (pending.get(year) == copy) pending.remove(year);
+            }
+        });
+    }
+
+    /**
+     * Drop segments for years that no longer have any trips
+     */
+    public synchronized void retainYears(Set<Integer> years) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            int year = yearOfFile(file);
+            if (year != 0 && !years.contains(year)) {
+                pending.remove(year);
+                fingerprints.remove(year);
+                loaded.remove(year);
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Snapshots of archived trips with fromMs <= startTime <= toMs that match
+     * filter, oldest first (see yearTrips()). A null filter matches every trip.
+     */
+    public synchronized List<Trip> getTrips(long fromMs, long toMs, TripTimeIndex.Filter filter) {
+        List<Trip> result = new ArrayList<>();
+        if (fromMs > toMs) return result;
+
+        int firstYear = yearOf(Math.max(fromMs, 0));
+        int lastYear = yearOf(Math.min(toMs, currentTaxYearStart() - 1));
+        for (int year = firstYear; year <= lastYear; year++) {
+            for (Trip trip : yearTrips(year)) {
+                long start = trip.getStartTime();
+                if (start < fromMs || start > toMs) continue;
+                if (filter == null || filter.matches(trip)) {
+                    result.add(trip);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Trips of one archived year, oldest first (empty if none). These are
+     * partial snapshots - only the fields queries filter and sort on - so
+     * they locate trips but are not full trips: TripTimeIndex resolves them
+     * by id to the indexed trips before anything is shown, exported or edited.
+     */
+    public synchronized List<Trip> yearTrips(int year) {
+        List<Trip> trips = pending.get(year);
+        if (trips != null) return trips;
+
+        trips = loaded.get(year);
+        if (trips != null) return trips;
+
+        File file = segmentFile(year);
+        if (!file.exists()) return Collections.emptyList();
+        try {
+            trips = read(file);
+            loaded.put(year, trips);
+            Log.d(TAG, "Loaded " + trips.size() + " archived trips for " + year);
+            return trips;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading " + year + " archive: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Forget decoded segments (e.g. when the app is trimmed)
+     */
+    public synchronized void releaseLoaded() {
+        loaded.clear();
+    }
+
+    private File segmentFile(int year) {
+        return new File(dir, "trips-" + year + ".seg");
+    }
+
+    private static int yearOfFile(File file) {
+        String name = file.getName();
+        if (!name.startsWith("trips-") || !name.endsWith(".seg")) return 0;
+        try {
+            return Integer.parseInt(name.substring(6, name.length() - 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long fingerprint(List<Trip> trips) {
+        long h = trips.size();
+        for (Trip trip : trips) {
+            h = h * 31 + TripContentIndex.contentHash(trip);
+        }
+        return h;
+    }
+
+    private Long readFingerprint(int year) {
+        File file = segmentFile(year);
+        if (!file.exists()) return null;
+        try (DataInputStream in = openSegment(file)) {
+            return in.readLong();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private DataInputStream openSegment(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new GZIPInputStream(new FileInputStream(file), 8192)));
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            in.close();
+            throw new IOException("Unrecognized archive segment " + file.getName());
+        }
+        return in;
+    }
+
+    private void write(int year, long fingerprint, List<Trip> trips) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+
+        File tmp = new File(dir, segmentFile(year).getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(tmp), 8192)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(trips.size());
+            for (Trip trip : trips) {
+                out.writeLong(trip.getId());
+                out.writeLong(trip.getStartTime());
+                out.writeLong(trip.getEndTime());
+                out.writeDouble(trip.getDistance());
+                out.writeLong(trip.getDuration());
+                out.writeDouble(trip.getStartLatitude());
+                out.writeDouble(trip.getStartLongitude());
+                out.writeDouble(trip.getEndLatitude());
+                out.writeDouble(trip.getEndLongitude());
+                out.writeBoolean(trip.isAutoDetected());
+                writeString(out, trip.getStartAddress());
+                writeString(out, trip.getEndAddress());
+                writeString(out, trip.getCategory());
+                writeString(out, trip.getClientName());
+                writeString(out, trip.getNotes());
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(segmentFile(year))) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + year + " archive");
+        }
+    }
+
+    private List<Trip> read(File file) throws IOException {
+        try (DataInputStream in = openSegment(file)) {
+            in.readLong(); // fingerprint
+            int count = in.readInt();
+            List<Trip> trips = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Trip trip = new Trip();
+                trip.setId(in.readLong());
+                trip.setStartTime(in.readLong());
+                trip.setEndTime(in.readLong());
+                trip.setDistance(in.readDouble());
+                trip.setDuration(in.readLong());
+                trip.setStartLatitude(in.readDouble());
+                trip.setStartLongitude(in.readDouble());
+                trip.setEndLatitude(in.readDouble());
+                trip.setEndLongitude(in.readDouble());
+                trip.setAutoDetected(in.readBoolean());
+                trip.setStartAddress(readString(in));
+                trip.setEndAddress(readString(in));
+                trip.setCategory(readString(in));
+                trip.setClientName(readString(in));
+                trip.setNotes(readString(in));
+                trips.add(trip);
+            }
+            return Collections.unmodifiableList(trips);
+        }
+    }
+
+    // Length-prefixed UTF-8; -1 for null. (writeUTF caps notes at 64 KB.)
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,221 @@
+package com.miletrackerpro.app.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content hashes of the stored trips, keyed by local trip id, with the
+ * local id of each trip by unique trip id and by start time.
+ *
+ * Primed once from the store and kept current by local saves and deletes,
+ * so a cloud download can upsert idempotently: a downloaded trip that
+ * matches what we already hold is not written at all, an edited one
+ * updates the stored trip in place instead of being duplicated, and the UI
+ * learns exactly which trips changed instead of rebuilding everything.
+ *
+ * Downloads are matched by unique trip id when the server sends one, and
+ * otherwise by start time, which survives the upload and download exactly.
+ */
+public class TripContentIndex {
+
+    private final Map<Long, Long> hashes = new HashMap<>();
+    private final Map<String, Long> localIdsByUniqueId = new HashMap<>();
+    private final Map<Long, Long> localIdsByStartTime = new HashMap<>();
+    private boolean primed = false;
+
+    /**
+     * Trips a download added or edited
+     */
+    public static class Changes {
+        public final List<Trip> changed = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return changed.isEmpty();
+        }
+
+        public List<Long> changedIds() {
+            List<Long> ids = new ArrayList<>(changed.size());
+            for (Trip trip : changed) ids.add(trip.getId());
+            return ids;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * A sync finished; changedIds lists trips added or edited (empty if
+         * nothing changed, null if the sync failed)
+         */
+        void onTripsSynced(List<Long> changedIds);
+    }
+
+    public synchronized boolean isPrimed() {
+        return primed;
+    }
+
+    /**
+     * Record the current store contents as the baseline, if not done yet
+     */
+    public synchronized void ensurePrimed(List<Trip> storedTrips) {
+        if (primed) return;
+        clearLocked();
+        for (Trip trip : storedTrips) {
+            recordLocked(trip);
+        }
+        primed = true;
+    }
+
+    public synchronized void invalidate() {
+        primed = false;
+        clearLocked();
+    }
+
+    /**
+     * Note a trip that was just saved locally
+     */
+    public synchronized void record(Trip trip) {
+        if (primed && trip != null) recordLocked(trip);
+    }
+
+    /**
+     * Note a trip that was just deleted locally
+     */
+    public synchronized void forget(long tripId) {
+        hashes.remove(tripId);
+        localIdsByUniqueId.values().remove(tripId);
+        localIdsByStartTime.values().remove(tripId);
+    }
+
+    /**
+     * Save each downloaded trip unless an identical copy is already stored.
+     * uniqueTripIds holds the server's unique id for each trip, or null. A
+     * trip we already hold gets the downloaded fields copied onto the stored
+     * trip, so local-only fields like its unique id survive; a new one is
+     * saved as is, under the id it comes with. Storage is read at most once,
+     * and only if a stored trip was edited elsewhere.
+     */
+    public synchronized Changes upsertAll(TripStorage storage, List<Trip> downloaded, List<String> uniqueTripIds) {
+        if (!primed) throw new IllegalStateException("ensurePrimed() before upsertAll()");
+
+        Changes changes = new Changes();
+        Map<Long, Trip> storedById = null;
+        for (int i = 0; i < downloaded.size(); i++) {
+            Trip incoming = downloaded.get(i);
+            String uniqueTripId = uniqueTripIds.get(i);
+
+            Long localId = null;
+            if (uniqueTripId != null && !uniqueTripId.isEmpty()) {
+                localId = localIdsByUniqueId.get(uniqueTripId);
+            }
+            if (localId == null) {
+                localId = localIdsByStartTime.get(incoming.getStartTime());
+            }
+
+            Trip target = incoming;
+            if (localId != null) {
+                Long existing = hashes.get(localId);
+                if (existing != null && existing == contentHash(incoming)) continue;
+
+                if (storedById == null) {
+                    storedById = new HashMap<>();
+                    for (Trip trip : storage.getAllTrips()) {
+                        storedById.put(trip.getId(), trip);
+                    }
+                }
+                Trip stored = storedById.get(localId);
+                if (stored != null) {
+                    copyContent(incoming, stored);
+                    target = stored;
+                } else {
+                    incoming.setId(localId);
+                }
+            }
+
+            storage.saveTrip(target);
+            recordLocked(target);
+            changes.changed.add(target);
+        }
+        return changes;
+    }
+
+    private void clearLocked() {
+        hashes.clear();
+        localIdsByUniqueId.clear();
+        localIdsByStartTime.clear();
+    }
+
+    private void recordLocked(Trip trip) {
+        hashes.put(trip.getId(), contentHash(trip));
+        localIdsByStartTime.put(trip.getStartTime(), trip.getId());
+        String uniqueId = trip.getUniqueTripId();
+        if (uniqueId != null && !uniqueId.isEmpty()) {
+            localIdsByUniqueId.put(uniqueId, trip.getId());
+        }
+    }
+
+    // The fields contentHash() covers
+    private static void copyContent(Trip from, Trip to) {
+        to.setStartTime(from.getStartTime());
+        to.setEndTime(from.getEndTime());
+        to.setDistance(from.getDistance());
+        to.setDuration(from.getDuration());
+        to.setStartLatitude(from.getStartLatitude());
+        to.setStartLongitude(from.getStartLongitude());
+        to.setEndLatitude(from.getEndLatitude());
+        to.setEndLongitude(from.getEndLongitude());
+        to.setAutoDetected(from.isAutoDetected());
+        to.setStartAddress(from.getStartAddress());
+        to.setEndAddress(from.getEndAddress());
+        to.setCategory(from.getCategory());
+        to.setClientName(from.getClientName());
+        to.setNotes(from.getNotes());
+    }
+
+    // 64-bit FNV-1a over the user-visible fields of a trip (the ones the
+    // cloud carries, so a downloaded copy hashes like the stored trip)
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    public static long contentHash(Trip trip) {
+        long h = FNV_OFFSET;
+        h = mix(h, trip.getStartTime());
+        h = mix(h, trip.getEndTime());
+        h = mix(h, Double.doubleToLongBits(trip.getDistance()));
+        h = mix(h, trip.getDuration());
+        h = mix(h, Double.doubleToLongBits(trip.getStartLatitude()));
+        h = mix(h, Double.doubleToLongBits(trip.getStartLongitude()));
+        h = mix(h, Double.doubleToLongBits(trip.getEndLatitude()));
+        h = mix(h, Double.doubleToLongBits(trip.getEndLongitude()));
+        h = mix(h, trip.isAutoDetected() ? 1 : 0);
+        h = mix(h, trip.getStartAddress());
+        h = mix(h, trip.getEndAddress());
+        h = mix(h, trip.getCategory());
+        h = mix(h, trip.getClientName());
+        h = mix(h, trip.getNotes());
+        return h;
+    }
+
+    private static long mix(long h, long value) {
+        for (int shift = 0; shift < 64; shift += 8) {
+            h ^= (value >>> shift) & 0xFF;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    private static long mix(long h, String value) {
+        if (value == null) {
+            return mix(h, -1L);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            h ^= c & 0xFF;
+            h *= FNV_PRIME;
+            h ^= c >>> 8;
+            h *= FNV_PRIME;
+        }
+        // Length terminator keeps ("ab", "c") distinct from ("a", "bc")
+        return mix(h, (long) value.length());
+    }
+}
@@ -0,0 +1,249 @@
+package com.miletrackerpro.app.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Versioned, resumable trip store migrations, run off the main thread.
+ *
+ * The store's schema version is recorded in preferences, so a store that is
+ * already current costs one preference read at startup. Otherwise each
+ * pending version walks the trips in id order, CHUNK_SIZE at a time, and
+ * persists the last processed id after every chunk; a migration cut short by
+ * a process kill resumes from that cursor on the next launch. A step that
+ * has to rewrite the whole store at once (v1 - TripStorage only offers
+ * migrateExistingTrips()) cannot resume partway and simply reruns.
+ *
+ * Steps that write the store hold STORE_LOCK, as must every other store
+ * write in the process, so a save made during a migration is neither lost
+ * to the rewrite nor overwritten by it.
+ *
+ * Once v1 is recorded, trips saved later can still lack a unique id (a
+ * trip edited or entered by hand, a download). Store writes report such
+ * saves through noteSaved() / noteStoreRewritten(), which set a pending flag
+ * in preferences; a launch that finds the flag scans the store once and
+ * assigns the missing ids, and one without it reads no trips at all. The
+ * flag is keyed on saves, not start times, so a back-dated trip is checked
+ * like any other.
+ */
+public class TripMigrationJob {
+    private static final String TAG = "TripMigrationJob";
+    private static final String PREFS_NAME = "trip_migrations";
+    private static final String KEY_SCHEMA_VERSION = "schema_version";
+    private static final String KEY_CURSOR = "cursor_trip_id";
+    private static final String KEY_IDS_PENDING = "unique_ids_pending";
+
+    // Bump when adding a case to migrateChunk()
+    public static final int SCHEMA_VERSION = 1;
+    private static final int CHUNK_SIZE = 200;
+
+    /**
+     * Held around every TripStorage write that can race a migration
+     */
+    public static final Object STORE_LOCK = new Object();
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static volatile boolean running = false;
+    private static volatile int processed = 0;
+    private static volatile int total = 0;
+
+    private final SharedPreferences prefs;
+
+    public interface ProgressListener {
+        void onProgress(int processed, int total);
+
+        /**
+         * Called on the worker thread; changed is true if any trip was rewritten
+         */
+        void onComplete(boolean changed);
+    }
+
+    public TripMigrationJob(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public boolean isCurrent() {
+        return prefs.getInt(KEY_SCHEMA_VERSION, 0) >= SCHEMA_VERSION;
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Trips processed so far by the running migration, out of getTotal()
+     */
+    public static int getProcessed() {
+        return processed;
+    }
+
+    public static int getTotal() {
+        return total;
+    }
+
+    /**
+     * Record a trip just written to the store; one without a unique id gets
+     * it on the next launch. Call after the save, outside STORE_LOCK.
+     */
+    public void noteSaved(Trip trip) {
+        if (trip != null && lacksUniqueId(trip)) {
+            prefs.edit().putBoolean(KEY_IDS_PENDING, true).apply();
+        }
+    }
+
+    /**
+     * Record a write that may have stored trips without a unique id and
+     * that the caller cannot inspect (e.g. mergeUserTrips())
+     */
+    public void noteStoreRewritten() {
+        prefs.edit().putBoolean(KEY_IDS_PENDING, true).apply();
+    }
+
+    /**
+     * Run any pending migrations in the background, or, on a current store,
+     * the unique id check if saves since the last launch asked for one.
+     * Returns true if pending migrations were started.
+     */
+    public boolean start(final TripStorage storage, final ProgressListener listener) {
+        if (running || storage == null) return false;
+        final boolean current = isCurrent();
+        if (current && !prefs.getBoolean(KEY_IDS_PENDING, false)) return false;
+        running = true;
+
+        executor.execute(() -> {
+            boolean changed = false;
+            try {
+                changed = current ? assignMissingUniqueIds(storage) : runPending(storage, listener);
+            } catch (Exception e) {
+                // Cursor and version are persisted per chunk - the next launch picks up from here
+                Log.e(TAG, "Trip migration interrupted: " + e.getMessage(), e);
+            } finally {
+                running = false;
+            }
+            if (listener != null) {
+                listener.onComplete(changed);
+            }
+        });
+        return !current;
+    }
+
+    private boolean runPending(TripStorage storage, ProgressListener listener) {
+        List<Trip> trips = new ArrayList<>(storage.getAllTrips());
+        Collections.sort(trips, (t1, t2) -> Long.compare(t1.getId(), t2.getId()));
+
+        boolean changed = false;
+        int version = prefs.getInt(KEY_SCHEMA_VERSION, 0);
+
+        while (version < SCHEMA_VERSION) {
+            int target = version + 1;
+            long cursor = prefs.getLong(KEY_CURSOR, Long.MIN_VALUE);
+
+            int start = 0;
+            while (start < trips.size() && trips.get(start).getId() <= cursor) start++;
+
+            total = trips.size();
+            processed = start;
+            Log.d(TAG, "Migrating trips to schema v" + target + " from trip " + start + " of " + total);
+
+            boolean stepDone = false;
+            while (!stepDone && start < trips.size()) {
+                int end = Math.min(trips.size(), start + CHUNK_SIZE);
+                List<Trip> chunk = trips.subList(start, end);
+
+                MigrationResult result = migrateChunk(target, storage, chunk);
+                changed |= result.changed;
+                stepDone = result.stepComplete;
+
+                prefs.edit().putLong(KEY_CURSOR, chunk.get(chunk.size() - 1).getId()).apply();
+                processed = end;
+                start = end;
+                if (listener != null) {
+                    listener.onProgress(processed, total);
+                }
+            }
+
+            version = target;
+            prefs.edit()
+                .putInt(KEY_SCHEMA_VERSION, version)
+                .remove(KEY_CURSOR)
+                .apply();
+            Log.d(TAG, "Trip store now at schema v" + version);
+        }
+
+        // v1 just covered every trip in the store
+        prefs.edit().remove(KEY_IDS_PENDING).apply();
+        return changed;
+    }
+
+    // Only runs when a save since the last launch flagged a missing id.
+    // The flag is cleared before the scan, so a save made during it sets it
+    // again rather than being forgotten.
+    private boolean assignMissingUniqueIds(TripStorage storage) {
+        prefs.edit().remove(KEY_IDS_PENDING).apply();
+
+        boolean missing = false;
+        synchronized (STORE_LOCK) {
+            for (Trip trip : storage.getAllTrips()) {
+                if (lacksUniqueId(trip)) {
+                    missing = true;
+                    break;
+                }
+            }
+            if (missing) {
+                storage.migrateExistingTrips();
+            }
+        }
+        if (missing) {
+            Log.d(TAG, "Assigned unique ids to trips saved since the last launch");
+        }
+        return missing;
+    }
+
+    private static boolean lacksUniqueId(Trip trip) {
+        String uniqueId = trip.getUniqueTripId();
+        return uniqueId == null || uniqueId.isEmpty();
+    }
+
+    private static final class MigrationResult {
+        final boolean changed;
+        final boolean stepComplete; // true if the rest of the trips need no visit
+
+        MigrationResult(boolean changed, boolean stepComplete) {
+            this.changed = changed;
+            this.stepComplete = stepComplete;
+        }
+    }
+
+    private static final MigrationResult UNCHANGED = new MigrationResult(false, false);
+
+    /**
+     * Apply one schema step to a chunk of trips
+     */
+    private MigrationResult migrateChunk(int version, TripStorage storage, List<Trip> chunk) {
+        switch (version) {
+            case 1:
+                // Unique IDs for offline sync. TripStorage's routine rewrites the
+                // whole store at once, so run it only if some trip actually lacks
+                // an id, and then skip the remaining chunks.
+                for (Trip trip : chunk) {
+                    if (lacksUniqueId(trip)) {
+                        synchronized (STORE_LOCK) {
+                            storage.migrateExistingTrips();
+                        }
+                        return new MigrationResult(true, true);
+                    }
+                }
+                return UNCHANGED;
+
+            default:
+                return UNCHANGED;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.miletrackerpro.app;
+
+import java.util.Arrays;
+
+/**
+ * Growable path buffer for the trip being recorded by MainActivity.
+ *
+ * Points live in parallel primitive arrays (amortized doubling), and the
+ * trip's distance and pause time are accumulated as points arrive, so
+ * ending a multi-hour trip reads two fields instead of walking the path.
+ * Distance comes from a TripDistanceFilter, the same Kalman stage the
+ * background service uses, so outliers and stationary jitter don't count.
+ *
+ * Only geometry-significant points are stored: every fix feeds distance
+ * and pause time, then goes through a PathSimplifier, and add() reports
+ * whether a point was committed to the arrays. The caller feeds every fix
+ * of the trip, slow ones included, or stops never register.
+ */
+public class TripPathBuffer implements PathSimplifier.Sink {
+    // Speeds at or below this (mph) count as stopped for driving-time purposes
+    private static final double STOPPED_SPEED_MPH = 1.0;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] speeds;
+    private long[] timestamps;
+    private int size = 0;
+
+    private final TripDistanceFilter distance = new TripDistanceFilter();
+    private final PathSimplifier simplifier = new PathSimplifier(this);
+    private boolean committed;
+    private long completedPauseMs = 0;
+    private boolean inPause = false;
+    private long pauseStartTime = 0;
+
+    public TripPathBuffer() {
+        this(256);
+    }
+
+    public TripPathBuffer(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        speeds = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    public boolean add(double latitude, double longitude, double speedMph, long timestamp) {
+        return add(latitude, longitude, speedMph, 0f, timestamp);
+    }
+
+    /**
+     * Feed a fix; accuracyMeters <= 0 if the fix didn't report one.
+     * Returns true if a point was committed - it is then the last one
+     * (size() - 1), and may be an earlier fix than this one.
+     */
+    public boolean add(double latitude, double longitude, double speedMph, float accuracyMeters, long timestamp) {
+        boolean accepted = distance.add(latitude, longitude, accuracyMeters, speedMph, timestamp);
+        trackPause(speedMph, timestamp);
+
+        // Outliers the filter rejected stay out of the stored path too
+        committed = false;
+        if (accepted) simplifier.add(latitude, longitude, speedMph, timestamp);
+        return committed;
+    }
+
+    /**
+     * Append a point that was already simplified (a restored checkpoint):
+     * it is stored as is, and the simplifier continues from it instead of
+     * simplifying it again. Distance and pause time come from
+     * restoreTotals(), not from these points.
+     */
+    public void restore(double latitude, double longitude, double speedMph, long timestamp) {
+        onPoint(latitude, longitude, speedMph, timestamp);
+        simplifier.resumeFrom(latitude, longitude);
+    }
+
+    /**
+     * Continue the checkpointed distance and stopped time (pauseStartTime 0
+     * if no stop was in progress) from the last restored point
+     */
+    public void restoreTotals(double distanceMeters, long completedPauseMs, long pauseStartTime) {
+        if (size > 0) {
+            distance.resumeAt(latitudes[size - 1], longitudes[size - 1], timestamps[size - 1], distanceMeters);
+        }
+        this.completedPauseMs = completedPauseMs;
+        inPause = pauseStartTime > 0;
+        this.pauseStartTime = pauseStartTime;
+    }
+
+    /**
+     * Commit the last fix if it is still pending (end of trip). Returns
+     * true if a point was committed.
+     */
+    public boolean flush() {
+        committed = false;
+        simplifier.flush();
+        return committed;
+    }
+
+    @Override
+    public void onPoint(double latitude, double longitude, double speedMph, long timestamp) {
+        if (size == latitudes.length) {
+            int capacity = size * 2;
+            latitudes = Arrays.copyOf(latitudes, capacity);
+            longitudes = Arrays.copyOf(longitudes, capacity);
+            speeds = Arrays.copyOf(speeds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        speeds[size] = speedMph;
+        timestamps[size] = timestamp;
+        size++;
+        committed = true;
+    }
+
+    // Pause bookkeeping mirrors the old end-of-trip scan: a stop starts at
+    // the first slow point and ends at the next point above walking pace
+    private void trackPause(double speedMph, long timestamp) {
+        if (speedMph <= STOPPED_SPEED_MPH) {
+            if (!inPause) {
+                inPause = true;
+                pauseStartTime = timestamp;
+            }
+        } else if (inPause) {
+            completedPauseMs += timestamp - pauseStartTime;
+            inPause = false;
+        }
+    }
+
+    /**
+     * Points committed so far
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        size = 0;
+        distance.reset();
+        simplifier.clear();
+        completedPauseMs = 0;
+        inPause = false;
+        pauseStartTime = 0;
+    }
+
+    /**
+     * Filtered distance so far, in miles
+     */
+    public double distanceMiles() {
+        return distance.distanceMiles();
+    }
+
+    public double distanceMeters() {
+        return distance.distanceMeters();
+    }
+
+    /**
+     * Stopped time of the stops that have ended, for checkpointing
+     */
+    public long completedPauseMs() {
+        return completedPauseMs;
+    }
+
+    /**
+     * Start of the stop in progress, 0 if moving
+     */
+    public long pauseStartTime() {
+        return inPause ? pauseStartTime : 0;
+    }
+
+    /**
+     * Time spent stopped up to now, including a stop still in progress
+     */
+    public long pausedMs(long now) {
+        long paused = completedPauseMs;
+        if (inPause && pauseStartTime > 0) {
+            paused += now - pauseStartTime;
+        }
+        return paused;
+    }
+
+    public double latitudeAt(int index) {
+        return latitudes[index];
+    }
+
+    public double longitudeAt(int index) {
+        return longitudes[index];
+    }
+
+    public double speedAt(int index) {
+        return speeds[index];
+    }
+
+    public long timestampAt(int index) {
+        return timestamps[index];
+    }
+}
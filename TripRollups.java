@@ -0,0 +1,170 @@
+package com.miletrackerpro.app.storage;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Mileage rollups keyed by (year, month, category).
+ *
+ * Each bucket holds trip count, miles and duration, and is adjusted by
+ * add()/subtract() as trips are saved or deleted, so dashboard totals cost
+ * O(#months) instead of a pass over every trip. Maintained by TripTimeIndex;
+ * verify() rebuilds the table from scratch to check for drift.
+ */
+public class TripRollups {
+    private static final String TAG = "TripRollups";
+
+    /**
+     * Totals for one bucket or for a range of buckets
+     */
+    public static class Totals {
+        public int count;
+        public double miles;
+        public long durationMs;
+
+        void add(Totals other) {
+            count += other.count;
+            miles += other.miles;
+            durationMs += other.durationMs;
+        }
+    }
+
+    // monthKey (year * 12 + month) -> category -> totals
+    private final TreeMap<Integer, Map<String, Totals>> months = new TreeMap<>();
+    private final Calendar calendar = Calendar.getInstance();
+
+    /**
+     * Month key for a timestamp in the device timezone
+     */
+    public static int monthKey(int year, int month) {
+        return year * 12 + month;
+    }
+
+    public synchronized int monthKeyOf(long timeMs) {
+        calendar.setTimeInMillis(timeMs);
+        return monthKey(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH));
+    }
+
+    public synchronized void clear() {
+        months.clear();
+    }
+
+    public synchronized void add(long startTime, String category, double miles, long durationMs) {
+        Totals totals = bucket(monthKeyOf(startTime), category);
+        totals.count++;
+        totals.miles += miles;
+        totals.durationMs += durationMs;
+    }
+
+    public synchronized void subtract(long startTime, String category, double miles, long durationMs) {
+        int key = monthKeyOf(startTime);
+        Totals totals = bucket(key, category);
+        totals.count--;
+        totals.miles -= miles;
+        totals.durationMs -= durationMs;
+
+        if (totals.count <= 0) {
+            Map<String, Totals> categories = months.get(key);
+            categories.remove(normalize(category));
+            if (categories.isEmpty()) {
+                months.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Totals for months fromKey..toKey inclusive. A null category sums all.
+     */
+    public synchronized Totals getTotals(int fromKey, int toKey, String category) {
+        Totals result = new Totals();
+        if (fromKey > toKey) return result;
+
+        for (Map<String, Totals> categories : months.subMap(fromKey, true, toKey, true).values()) {
+            if (category == null) {
+                for (Totals totals : categories.values()) {
+                    result.add(totals);
+                }
+            } else {
+                Totals totals = categories.get(category);
+                if (totals != null) {
+                    result.add(totals);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * All-time totals, optionally for one category
+     */
+    public Totals getTotals(String category) {
+        return getTotals(Integer.MIN_VALUE, Integer.MAX_VALUE, category);
+    }
+
+    /**
+     * Recompute the table from the given trips and compare with the
+     * incrementally maintained one. Mismatches are logged and the table is
+     * replaced with the rebuilt one. Returns true if nothing drifted.
+     */
+    public synchronized boolean verify(List<Trip> allTrips) {
+        TripRollups rebuilt = new TripRollups();
+        for (Trip trip : allTrips) {
+            rebuilt.add(trip.getStartTime(), trip.getCategory(), trip.getDistance(), trip.getDuration());
+        }
+
+        List<String> mismatches = new ArrayList<>();
+        TreeMap<Integer, Map<String, Totals>> union = new TreeMap<>(months);
+        union.putAll(rebuilt.months);
+        for (Integer key : union.keySet()) {
+            Map<String, Totals> expected = rebuilt.months.containsKey(key) ? rebuilt.months.get(key) : new HashMap<>();
+            Map<String, Totals> actual = months.containsKey(key) ? months.get(key) : new HashMap<>();
+            Map<String, Totals> categories = new HashMap<>(actual);
+            categories.putAll(expected);
+            for (String category : categories.keySet()) {
+                Totals e = expected.get(category);
+                Totals a = actual.get(category);
+                boolean same = e != null && a != null
+                    && e.count == a.count
+                    && Math.abs(e.miles - a.miles) < 0.001
+                    && e.durationMs == a.durationMs;
+                if (!same) {
+                    mismatches.add((key / 12) + "-" + (key % 12 + 1) + " " + category);
+                }
+            }
+        }
+
+        if (!mismatches.isEmpty()) {
+            Log.w(TAG, "Rollup drift in " + mismatches.size() + " buckets: " + mismatches);
+            months.clear();
+            months.putAll(rebuilt.months);
+            return false;
+        }
+        Log.d(TAG, "Rollups verified against " + allTrips.size() + " trips");
+        return true;
+    }
+
+    private Totals bucket(int key, String category) {
+        Map<String, Totals> categories = months.get(key);
+        if (categories == null) {
+            categories = new HashMap<>();
+            months.put(key, categories);
+        }
+        String name = normalize(category);
+        Totals totals = categories.get(name);
+        if (totals == null) {
+            totals = new Totals();
+            categories.put(name, totals);
+        }
+        return totals;
+    }
+
+    private static String normalize(String category) {
+        return category != null ? category : "Uncategorized";
+    }
+}
@@ -0,0 +1,68 @@
+package com.miletrackerpro.app;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of live tracking state, built on the location
+ * pipeline thread and handed to the UI. Nothing in it refers back to
+ * mutable trip state, so the UI can hold on to it freely.
+ */
+public final class TripStatus {
+    public static final int STATE_IDLE = 0;        // auto-detection on, no trip
+    public static final int STATE_DRIVING = 1;
+    public static final int STATE_PAUSED = 2;
+    public static final int STATE_MANUAL = 3;      // auto-detection off, speed only
+    public static final int STATE_WEAK_SIGNAL = 4; // last fix failed the quality filter
+
+    public final int state;
+    public final double speedMph;
+    public final long tripElapsedMs;
+    public final long pauseRemainingMs;
+    public final double tripMiles;
+    public final double realTimeMiles; // odometer since the dashboard distance was reset
+
+    public TripStatus(int state, double speedMph, long tripElapsedMs, long pauseRemainingMs,
+                      double tripMiles, double realTimeMiles) {
+        this.state = state;
+        this.speedMph = speedMph;
+        this.tripElapsedMs = tripElapsedMs;
+        this.pauseRemainingMs = pauseRemainingMs;
+        this.tripMiles = tripMiles;
+        this.realTimeMiles = realTimeMiles;
+    }
+
+    /**
+     * Same state and the same numbers at the precision the dashboard shows
+     */
+    public boolean isSameAs(TripStatus other) {
+        return other != null
+            && state == other.state
+            && Math.round(speedMph * 10) == Math.round(other.speedMph * 10)
+            && tripElapsedMs / (60 * 1000) == other.tripElapsedMs / (60 * 1000)
+            && pauseRemainingMs / (60 * 1000) == other.pauseRemainingMs / (60 * 1000)
+            && Math.round(tripMiles * 100) == Math.round(other.tripMiles * 100)
+            && Math.round(realTimeMiles * 10) == Math.round(other.realTimeMiles * 10);
+    }
+
+    /**
+     * One-line status for the dashboard speed text
+     */
+    public String statusText() {
+        switch (state) {
+            case STATE_DRIVING:
+                return String.format(Locale.US, "Tracking trip - %dm, %.1f mph", tripElapsedMs / (60 * 1000), speedMph);
+            case STATE_PAUSED:
+                return String.format(Locale.US, "Trip paused (ends in %dm)", pauseRemainingMs / (60 * 1000));
+            case STATE_MANUAL:
+                return String.format(Locale.US, "Speed: %.1f mph", speedMph);
+            case STATE_WEAK_SIGNAL:
+                return "Speed: GPS signal weak";
+            default:
+                return String.format(Locale.US, "Monitoring - %.1f mph", speedMph);
+        }
+    }
+
+    public String distanceText() {
+        return String.format(Locale.US, "Distance: %.1f miles", realTimeMiles);
+    }
+}
@@ -0,0 +1,524 @@
+package com.miletrackerpro.app.storage;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sorted start-time index over the trips in TripStorage.
+ *
+ * Trips are held in parallel arrays ordered by start time, so range queries
+ * are a binary search plus a walk over the k matching trips instead of a
+ * full getAllTrips() scan. The index is built lazily from TripStorage once,
+ * then kept current through put()/remove(); call invalidate() after bulk
+ * changes made outside this process (cloud download, merge, services).
+ *
+ * The index also feeds TripRollups. Distance, duration and category are
+ * snapshotted at put() time so a later edit-in-place of the same Trip object
+ * still subtracts the values that were originally added.
+ *
+ * With a TripArchive attached, only trips from the current tax year (the hot
+ * set) are kept in the sorted arrays. Older trips are sealed into the
+ * archive's yearly segments at build time, so counts and rollups still cover
+ * every year; queries that reach before the tax year filter the segments
+ * they touch, then resolve the hits by id to the Trip objects the build was
+ * handed (segments hold only the fields queries filter on, so their copies
+ * are never handed out, and TripStorage has no keyed lookup to re-read them
+ * from). Editing or deleting a cold trip drops the index so the next build
+ * re-seals that year.
+ *
+ * Trips filed as "Uncategorized" are also keyed by the geohash cells of
+ * their start and end points (LocationClassificationStore's grid), so
+ * finding the ones near a place is a lookup of the few cells around it.
+ */
+public class TripTimeIndex {
+    private static final String TAG = "TripTimeIndex";
+
+    /**
+     * Trip predicate for getTrips(). It also runs on archive snapshots, so
+     * it may only read the fields TripArchive keeps (times, distance,
+     * duration, coordinates, addresses, category, client name, notes).
+     */
+    public interface Filter {
+        boolean matches(Trip trip);
+    }
+
+    private long[] startTimes = new long[0];
+    private long[] tripIds = new long[0];
+    private Trip[] trips = new Trip[0];
+    private double[] miles = new double[0];
+    private long[] durations = new long[0];
+    private String[] categories = new String[0];
+    private int size = 0;
+    private boolean loaded = false;
+
+    // Cold tier (trips before coldBoundary), sorted by start time
+    private TripArchive archive;
+    private long coldBoundary = Long.MIN_VALUE;
+    private long nextColdBoundary = Long.MAX_VALUE;
+    private long[] coldStartTimes = new long[0];
+    private final Map<Long, Trip> coldTrips = new HashMap<>();
+
+    private final TripRollups rollups = new TripRollups();
+
+    // Uncategorized trip ids by the cell of their start / end point, and the
+    // cells each was filed under (trips are edited in place, so removal
+    // cannot rely on the trip's current coordinates)
+    private static final long NO_CELL = -1;
+    private final Map<Long, Set<Long>> uncategorizedByStartCell = new HashMap<>();
+    private final Map<Long, Set<Long>> uncategorizedByEndCell = new HashMap<>();
+    private final Map<Long, long[]> uncategorizedCells = new HashMap<>();
+
+    /**
+     * Build the index from storage if it is not loaded yet
+     */
+    public synchronized void ensureLoaded(TripStorage storage) {
+        if (loaded && System.currentTimeMillis() >= nextColdBoundary) {
+            invalidate(); // New tax year - last year's trips move to the archive
+        }
+        if (loaded || storage == null) return;
+        rebuild(storage.getAllTrips());
+    }
+
+    /**
+     * Keep trips from before the current tax year in archive instead of memory
+     */
+    public synchronized void setArchive(TripArchive archive) {
+        if (this.archive == archive) return;
+        this.archive = archive;
+        invalidate();
+    }
+
+    /**
+     * Replace the index contents with the given trips
+     */
+    public synchronized void rebuild(List<Trip> allTrips) {
+        List<Trip> sorted = allTrips != null ? new ArrayList<>(allTrips) : new ArrayList<>();
+        Collections.sort(sorted, (t1, t2) -> Long.compare(t1.getStartTime(), t2.getStartTime()));
+        rollups.clear();
+        uncategorizedByStartCell.clear();
+        uncategorizedByEndCell.clear();
+        uncategorizedCells.clear();
+
+        if (archive != null) {
+            coldBoundary = TripArchive.currentTaxYearStart();
+            nextColdBoundary = TripArchive.nextTaxYearStart();
+            int coldCount = 0;
+            while (coldCount < sorted.size() && sorted.get(coldCount).getStartTime() < coldBoundary) coldCount++;
+            sealCold(sorted.subList(0, coldCount));
+            sorted = sorted.subList(coldCount, sorted.size());
+        } else {
+            coldBoundary = Long.MIN_VALUE;
+            nextColdBoundary = Long.MAX_VALUE;
+            coldStartTimes = new long[0];
+            coldTrips.clear();
+        }
+
+        int capacity = Math.max(16, sorted.size() + sorted.size() / 4);
+        startTimes = new long[capacity];
+        tripIds = new long[capacity];
+        trips = new Trip[capacity];
+        miles = new double[capacity];
+        durations = new long[capacity];
+        categories = new String[capacity];
+        size = 0;
+        for (Trip trip : sorted) {
+            setAt(size, trip);
+            size++;
+        }
+        loaded = true;
+        Log.d(TAG, "Indexed " + size + " trips by start time (" + coldStartTimes.length + " archived)");
+    }
+
+    // Seal each past year into the archive; keep start times, ids, rollups
+    // and the trips by id for resolving archive hits
+    private void sealCold(List<Trip> cold) {
+        coldStartTimes = new long[cold.size()];
+        coldTrips.clear();
+        Set<Integer> years = new HashSet<>();
+
+        int yearStart = 0;
+        for (int i = 0; i < cold.size(); i++) {
+            Trip trip = cold.get(i);
+            coldStartTimes[i] = trip.getStartTime();
+            coldTrips.put(trip.getId(), trip);
+            rollups.add(trip.getStartTime(), trip.getCategory(), trip.getDistance(), trip.getDuration());
+            addUncategorized(trip);
+
+            int year = TripArchive.yearOf(trip.getStartTime());
+            boolean lastOfYear = i == cold.size() - 1
+                || TripArchive.yearOf(cold.get(i + 1).getStartTime()) != year;
+            if (lastOfYear) {
+                archive.seal(year, cold.subList(yearStart, i + 1));
+                years.add(year);
+                yearStart = i + 1;
+            }
+        }
+        archive.retainYears(years);
+    }
+
+    /**
+     * Drop the index; the next ensureLoaded() rebuilds it from storage
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+        startTimes = new long[0];
+        tripIds = new long[0];
+        trips = new Trip[0];
+        miles = new double[0];
+        durations = new long[0];
+        categories = new String[0];
+        size = 0;
+        coldStartTimes = new long[0];
+        coldTrips.clear();
+        rollups.clear();
+        uncategorizedByStartCell.clear();
+        uncategorizedByEndCell.clear();
+        uncategorizedCells.clear();
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized int size() {
+        return size + coldStartTimes.length;
+    }
+
+    /**
+     * Insert or replace a trip (matched by id). Its current start time
+     * decides the new position, so edits that move a trip are handled.
+     */
+    public synchronized void put(Trip trip) {
+        if (!loaded || trip == null) return;
+        if (trip.getStartTime() < coldBoundary || isColdId(trip.getId())) {
+            invalidate(); // Archive segments are immutable - rebuild and re-seal
+            return;
+        }
+        removeAt(indexOfId(trip.getId()));
+
+        if (size == startTimes.length) {
+            int capacity = Math.max(16, size * 2);
+            startTimes = Arrays.copyOf(startTimes, capacity);
+            tripIds = Arrays.copyOf(tripIds, capacity);
+            trips = Arrays.copyOf(trips, capacity);
+            miles = Arrays.copyOf(miles, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+        }
+
+        // Insert after any trips with the same start time; new trips are
+        // usually the latest, so this is an append in the common case
+        int pos = upperBound(trip.getStartTime());
+        System.arraycopy(startTimes, pos, startTimes, pos + 1, size - pos);
+        System.arraycopy(tripIds, pos, tripIds, pos + 1, size - pos);
+        System.arraycopy(trips, pos, trips, pos + 1, size - pos);
+        System.arraycopy(miles, pos, miles, pos + 1, size - pos);
+        System.arraycopy(durations, pos, durations, pos + 1, size - pos);
+        System.arraycopy(categories, pos, categories, pos + 1, size - pos);
+        setAt(pos, trip);
+        size++;
+    }
+
+    /**
+     * Remove a trip by id. Returns false if it was not indexed.
+     */
+    public synchronized boolean remove(long tripId) {
+        if (!loaded) return false;
+        if (removeAt(indexOfId(tripId))) return true;
+        if (isColdId(tripId)) {
+            invalidate();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Trips with fromMs <= startTime <= toMs, oldest first. A null category
+     * matches every trip.
+     */
+    public List<Trip> getTrips(long fromMs, long toMs, String category) {
+        return getTrips(fromMs, toMs, category == null ? null : trip -> category.equals(trip.getCategory()));
+    }
+
+    /**
+     * Trips with fromMs <= startTime <= toMs that match filter (null matches
+     * every trip), oldest first. Archived trips are filtered on their
+     * segment snapshots, then only the matches are resolved by id.
+     */
+    public synchronized List<Trip> getTrips(long fromMs, long toMs, Filter filter) {
+        List<Trip> result = new ArrayList<>();
+        if (fromMs > toMs) return result;
+
+        if (fromMs < coldBoundary && archive != null) {
+            result.addAll(resolve(archive.getTrips(fromMs, Math.min(toMs, coldBoundary - 1), filter)));
+        }
+
+        int end = upperBound(toMs);
+        for (int i = lowerBound(fromMs); i < end; i++) {
+            if (filter == null || filter.matches(trips[i])) {
+                result.add(trips[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Distinct non-blank client names (trimmed) across all trips, in order of
+     * first use. Client names are kept in archive snapshots, so this never
+     * reads storage.
+     */
+    public synchronized List<String> getClientNames() {
+        Set<String> names = new LinkedHashSet<>();
+        if (coldStartTimes.length > 0 && archive != null) {
+            for (Trip trip : archive.getTrips(Long.MIN_VALUE, coldBoundary - 1, null)) {
+                addClientName(names, trip);
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            addClientName(names, trips[i]);
+        }
+        return new ArrayList<>(names);
+    }
+
+    private static void addClientName(Set<String> names, Trip trip) {
+        String clientName = trip.getClientName();
+        if (clientName != null && !clientName.trim().isEmpty()) {
+            names.add(clientName.trim());
+        }
+    }
+
+    /**
+     * Number of trips with fromMs <= startTime <= toMs, without touching them
+     */
+    public synchronized int count(long fromMs, long toMs) {
+        if (fromMs > toMs) return 0;
+        int cold = 0;
+        if (fromMs < coldBoundary) {
+            cold = Math.max(0, upperBound(coldStartTimes, coldStartTimes.length, toMs)
+                - lowerBound(coldStartTimes, coldStartTimes.length, fromMs));
+        }
+        return cold + Math.max(0, upperBound(toMs) - lowerBound(fromMs));
+    }
+
+    /**
+     * The most recent trips by start time, newest first
+     */
+    public synchronized List<Trip> getLatest(int limit) {
+        List<Trip> result = new ArrayList<>();
+        for (int i = size - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(trips[i]);
+        }
+        if (result.size() < limit && coldStartTimes.length > 0 && archive != null) {
+            List<Trip> cold = new ArrayList<>();
+            int firstYear = TripArchive.yearOf(coldStartTimes[0]);
+            for (int year = TripArchive.yearOf(coldBoundary - 1); year >= firstYear && result.size() + cold.size() < limit; year--) {
+                List<Trip> yearTrips = archive.yearTrips(year);
+                for (int i = yearTrips.size() - 1; i >= 0 && result.size() + cold.size() < limit; i--) {
+                    cold.add(yearTrips.get(i));
+                }
+            }
+            result.addAll(resolve(cold));
+        }
+        return result;
+    }
+
+    /**
+     * Uncategorized trips whose start may be within radiusMeters of the
+     * start point, or whose end may be within it of the end point. This is a
+     * cell lookup, so callers still check exact distances.
+     */
+    public synchronized List<Trip> getUncategorizedNear(double startLat, double startLon,
+                                                        double endLat, double endLon, double radiusMeters) {
+        Set<Long> ids = new LinkedHashSet<>();
+        collectNear(uncategorizedByStartCell, startLat, startLon, radiusMeters, ids);
+        collectNear(uncategorizedByEndCell, endLat, endLon, radiusMeters, ids);
+
+        List<Trip> result = new ArrayList<>(ids.size());
+        List<Long> coldIds = new ArrayList<>();
+        for (Long id : ids) {
+            int index = indexOfId(id);
+            if (index >= 0) {
+                result.add(trips[index]);
+            } else {
+                coldIds.add(id);
+            }
+        }
+        result.addAll(resolveIds(coldIds));
+        return result;
+    }
+
+    private static void collectNear(Map<Long, Set<Long>> byCell, double latitude, double longitude,
+                                    double radiusMeters, Set<Long> ids) {
+        if (byCell.isEmpty() || !LocationClassificationStore.hasLocation(latitude, longitude)) return;
+        for (long cell : LocationClassificationStore.cellsWithin(latitude, longitude, radiusMeters)) {
+            Set<Long> cellIds = byCell.get(cell);
+            if (cellIds != null) ids.addAll(cellIds);
+        }
+    }
+
+    /**
+     * Mileage rollups for the indexed trips (empty until loaded)
+     */
+    public TripRollups getRollups() {
+        return rollups;
+    }
+
+    /**
+     * Rebuild the rollups from storage and compare with the incremental
+     * table. Returns true if they matched.
+     */
+    public boolean verifyRollups(TripStorage storage) {
+        List<Trip> allTrips = storage.getAllTrips();
+        synchronized (this) {
+            if (!loaded) return true;
+            return rollups.verify(allTrips);
+        }
+    }
+
+    // Swap archive snapshots for the trips with the same ids, one map lookup
+    // each; ids no longer indexed are dropped
+    private List<Trip> resolve(List<Trip> snapshots) {
+        List<Long> ids = new ArrayList<>(snapshots.size());
+        for (Trip snapshot : snapshots) {
+            ids.add(snapshot.getId());
+        }
+        return resolveIds(ids);
+    }
+
+    private List<Trip> resolveIds(List<Long> ids) {
+        List<Trip> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Trip trip = coldTrips.get(id);
+            if (trip != null) result.add(trip);
+        }
+        return result;
+    }
+
+    private void addUncategorized(Trip trip) {
+        if (!"Uncategorized".equals(trip.getCategory())) return;
+        long[] cells = {
+            cellOf(trip.getStartLatitude(), trip.getStartLongitude()),
+            cellOf(trip.getEndLatitude(), trip.getEndLongitude())
+        };
+        uncategorizedCells.put(trip.getId(), cells);
+        addToCell(uncategorizedByStartCell, cells[0], trip.getId());
+        addToCell(uncategorizedByEndCell, cells[1], trip.getId());
+    }
+
+    private void removeUncategorized(long tripId) {
+        long[] cells = uncategorizedCells.remove(tripId);
+        if (cells == null) return;
+        removeFromCell(uncategorizedByStartCell, cells[0], tripId);
+        removeFromCell(uncategorizedByEndCell, cells[1], tripId);
+    }
+
+    private static long cellOf(double latitude, double longitude) {
+        return LocationClassificationStore.hasLocation(latitude, longitude)
+            ? LocationClassificationStore.cellOf(latitude, longitude) : NO_CELL;
+    }
+
+    private static void addToCell(Map<Long, Set<Long>> byCell, long cell, long tripId) {
+        if (cell == NO_CELL) return;
+        Set<Long> ids = byCell.get(cell);
+        if (ids == null) {
+            ids = new HashSet<>(4);
+            byCell.put(cell, ids);
+        }
+        ids.add(tripId);
+    }
+
+    private static void removeFromCell(Map<Long, Set<Long>> byCell, long cell, long tripId) {
+        Set<Long> ids = byCell.get(cell);
+        if (ids != null && ids.remove(tripId) && ids.isEmpty()) {
+            byCell.remove(cell);
+        }
+    }
+
+    private void setAt(int index, Trip trip) {
+        startTimes[index] = trip.getStartTime();
+        tripIds[index] = trip.getId();
+        trips[index] = trip;
+        miles[index] = trip.getDistance();
+        durations[index] = trip.getDuration();
+        categories[index] = trip.getCategory();
+        rollups.add(startTimes[index], categories[index], miles[index], durations[index]);
+        addUncategorized(trip);
+    }
+
+    // First position with startTime >= time
+    private int lowerBound(long time) {
+        return lowerBound(startTimes, size, time);
+    }
+
+    private static int lowerBound(long[] startTimes, int size, long time) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (startTimes[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // First position with startTime > time
+    private int upperBound(long time) {
+        return upperBound(startTimes, size, time);
+    }
+
+    private static int upperBound(long[] startTimes, int size, long time) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (startTimes[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int indexOfId(long tripId) {
+        // Edits and deletes mostly touch recent trips, so scan from the end
+        for (int i = size - 1; i >= 0; i--) {
+            if (tripIds[i] == tripId) return i;
+        }
+        return -1;
+    }
+
+    private boolean isColdId(long tripId) {
+        return coldTrips.containsKey(tripId);
+    }
+
+    private boolean removeAt(int index) {
+        if (index < 0) return false;
+        rollups.subtract(startTimes[index], categories[index], miles[index], durations[index]);
+        removeUncategorized(tripIds[index]);
+
+        int tail = size - index - 1;
+        System.arraycopy(startTimes, index + 1, startTimes, index, tail);
+        System.arraycopy(tripIds, index + 1, tripIds, index, tail);
+        System.arraycopy(trips, index + 1, trips, index, tail);
+        System.arraycopy(miles, index + 1, miles, index, tail);
+        System.arraycopy(durations, index + 1, durations, index, tail);
+        System.arraycopy(categories, index + 1, categories, index, tail);
+        size--;
+        trips[size] = null;
+        categories[size] = null;
+        return true;
+    }
+}
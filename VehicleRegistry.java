@@ -0,0 +1,274 @@
+package com.miletrackerpro.app.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared, in-memory view of the registered Bluetooth vehicles.
+ *
+ * The "vehicle_registry" JSON in app_prefs is parsed once per process into a
+ * concurrent map keyed by MAC address. Lookups from the Bluetooth polling
+ * loops (MainActivity and BluetoothVehicleService) are plain map reads.
+ * Changes are written back after a short debounce so a burst of edits costs
+ * one serialization, and listeners are notified on the main thread.
+ * Registrations skip the debounce and are committed before register()
+ * returns, so a process kill right after registering cannot lose one.
+ *
+ * BluetoothVehicleService used to keep its own registry under the same key
+ * in BluetoothVehiclePrefs. On first load those vehicles are merged in and
+ * the old key is removed once the merged registry has been committed.
+ */
+public final class VehicleRegistry {
+    private static final String TAG = "VehicleRegistry";
+    public static final String PREFS_NAME = "app_prefs";
+    public static final String REGISTRY_KEY = "vehicle_registry";
+    private static final String LEGACY_PREFS_NAME = "BluetoothVehiclePrefs";
+
+    private static final long WRITE_DEBOUNCE_MS = 500;
+
+    private static VehicleRegistry instance;
+
+    private final SharedPreferences prefs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ConcurrentHashMap<String, Vehicle> vehicles = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Runnable writeRunnable = this::flush;
+    private final Runnable notifyRunnable = () -> {
+        for (Listener listener : listeners) {
+            listener.onVehicleRegistryChanged(this);
+        }
+    };
+
+    public interface Listener {
+        void onVehicleRegistryChanged(VehicleRegistry registry);
+    }
+
+    /**
+     * Immutable registry entry
+     */
+    public static final class Vehicle {
+        public final String macAddress;
+        public final String deviceName;
+        public final String vehicleType;
+        public final long registrationTime;
+        public final long expirationTime; // 0 if the vehicle never expires
+        public final String suggestedCategory; // null if not set
+
+        public Vehicle(String macAddress, String deviceName, String vehicleType,
+                       long registrationTime, long expirationTime, String suggestedCategory) {
+            this.macAddress = macAddress;
+            this.deviceName = deviceName != null ? deviceName : "Unknown";
+            this.vehicleType = vehicleType != null ? vehicleType : "Personal";
+            this.registrationTime = registrationTime;
+            this.expirationTime = expirationTime;
+            this.suggestedCategory = suggestedCategory;
+        }
+
+        public boolean isExpired(long now) {
+            return expirationTime > 0 && now > expirationTime;
+        }
+
+        static Vehicle fromJson(String macAddress, JSONObject json) {
+            // Older builds wrote the registration time under two different keys
+            long registered = json.optLong("registrationTime", json.optLong("registeredAt", 0));
+            return new Vehicle(
+                macAddress,
+                json.optString("deviceName", "Unknown"),
+                json.optString("vehicleType", "Personal"),
+                registered,
+                json.optLong("expirationTime", 0),
+                json.has("suggestedCategory") ? json.optString("suggestedCategory") : null
+            );
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("macAddress", macAddress);
+            json.put("deviceName", deviceName);
+            json.put("vehicleType", vehicleType);
+            json.put("registrationTime", registrationTime);
+            if (expirationTime > 0) json.put("expirationTime", expirationTime);
+            if (suggestedCategory != null) json.put("suggestedCategory", suggestedCategory);
+            return json;
+        }
+    }
+
+    public static synchronized VehicleRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new VehicleRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private VehicleRegistry(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        load();
+        mergeLegacyRegistry(context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    private void load() {
+        String registryJson = prefs.getString(REGISTRY_KEY, "{}");
+        try {
+            JSONObject registry = new JSONObject(registryJson);
+            Iterator<String> keys = registry.keys();
+            while (keys.hasNext()) {
+                String macAddress = keys.next();
+                JSONObject entry = registry.optJSONObject(macAddress);
+                if (entry != null) {
+                    vehicles.put(macAddress, Vehicle.fromJson(macAddress, entry));
+                }
+            }
+            Log.d(TAG, "Loaded " + vehicles.size() + " registered vehicles");
+        } catch (JSONException e) {
+            Log.e(TAG, "Error parsing vehicle registry: " + e.getMessage());
+        }
+    }
+
+    // Entries already in the shared registry win; the service's copy only
+    // fills in the expiry and suggested category it alone tracked
+    private void mergeLegacyRegistry(SharedPreferences legacyPrefs) {
+        String legacyJson = legacyPrefs.getString(REGISTRY_KEY, null);
+        if (legacyJson == null) return;
+
+        int merged = 0;
+        try {
+            JSONObject legacy = new JSONObject(legacyJson);
+            Iterator<String> keys = legacy.keys();
+            while (keys.hasNext()) {
+                String macAddress = keys.next();
+                JSONObject entry = legacy.optJSONObject(macAddress);
+                if (entry == null) continue;
+
+                Vehicle old = Vehicle.fromJson(macAddress, entry);
+                Vehicle current = vehicles.get(macAddress);
+                if (current == null) {
+                    vehicles.put(macAddress, old);
+                } else if ((current.expirationTime == 0 && old.expirationTime > 0)
+                        || (current.suggestedCategory == null && old.suggestedCategory != null)) {
+                    vehicles.put(macAddress, new Vehicle(macAddress, current.deviceName, current.vehicleType,
+                        current.registrationTime,
+                        current.expirationTime > 0 ? current.expirationTime : old.expirationTime,
+                        current.suggestedCategory != null ? current.suggestedCategory : old.suggestedCategory));
+                } else {
+                    continue;
+                }
+                merged++;
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Error parsing legacy vehicle registry: " + e.getMessage());
+            return; // Leave it in place rather than lose vehicles
+        }
+
+        if (merged > 0 && !commit()) {
+            Log.w(TAG, "Vehicle registry merge not saved - keeping legacy registry for next time");
+            return;
+        }
+        legacyPrefs.edit().remove(REGISTRY_KEY).commit();
+        Log.d(TAG, "Merged " + merged + " vehicles from the legacy registry");
+    }
+
+    public boolean contains(String macAddress) {
+        return macAddress != null && vehicles.containsKey(macAddress);
+    }
+
+    /**
+     * Vehicle registered under this MAC address, or null
+     */
+    public Vehicle get(String macAddress) {
+        return macAddress != null ? vehicles.get(macAddress) : null;
+    }
+
+    public int size() {
+        return vehicles.size();
+    }
+
+    /**
+     * Snapshot of all registered vehicles
+     */
+    public List<Vehicle> getAll() {
+        return new ArrayList<>(vehicles.values());
+    }
+
+    public void put(Vehicle vehicle) {
+        vehicles.put(vehicle.macAddress, vehicle);
+        onChanged();
+    }
+
+    /**
+     * Add or replace a vehicle and commit the registry before returning.
+     * Returns false if the write failed (the vehicle is still registered in
+     * memory and goes out with the next write).
+     */
+    public boolean register(Vehicle vehicle) {
+        vehicles.put(vehicle.macAddress, vehicle);
+        mainHandler.removeCallbacks(writeRunnable);
+        boolean saved = commit();
+        mainHandler.removeCallbacks(notifyRunnable);
+        mainHandler.post(notifyRunnable);
+        return saved;
+    }
+
+    public boolean remove(String macAddress) {
+        if (macAddress == null || vehicles.remove(macAddress) == null) return false;
+        onChanged();
+        return true;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Write pending changes to SharedPreferences now
+     */
+    public void flush() {
+        mainHandler.removeCallbacks(writeRunnable);
+        String registryJson = serialize();
+        if (registryJson == null) return;
+        prefs.edit().putString(REGISTRY_KEY, registryJson).apply();
+        Log.d(TAG, "Vehicle registry saved: " + vehicles.size() + " vehicles");
+    }
+
+    // Synchronous write; true once the registry is on disk
+    private boolean commit() {
+        String registryJson = serialize();
+        return registryJson != null && prefs.edit().putString(REGISTRY_KEY, registryJson).commit();
+    }
+
+    private String serialize() {
+        try {
+            JSONObject registry = new JSONObject();
+            for (Vehicle vehicle : vehicles.values()) {
+                registry.put(vehicle.macAddress, vehicle.toJson());
+            }
+            return registry.toString();
+        } catch (JSONException e) {
+            Log.e(TAG, "Error saving vehicle registry: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void onChanged() {
+        mainHandler.removeCallbacks(writeRunnable);
+        mainHandler.postDelayed(writeRunnable, WRITE_DEBOUNCE_MS);
+        mainHandler.removeCallbacks(notifyRunnable);
+        mainHandler.post(notifyRunnable);
+    }
+}
@@ -8,27 +8,21 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.location.Location;
-import android.location.LocationListener;
-import android.location.LocationManager;
 import android.os.Build;
-import android.os.Bundle;
 import android.os.IBinder;
 import android.os.PowerManager;
+import android.util.Base64;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
-import com.facebook.react.ReactApplication;
-import com.facebook.react.ReactInstanceManager;
-import com.facebook.react.bridge.ReactApplicationContext;
-
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.json.JSONException;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
-public class BackgroundLocationService extends Service implements LocationListener {
+public class BackgroundLocationService extends Service implements LocationSource.Listener {
     
     public static final String ACTION_START_TRACKING = "START_TRACKING";
     public static final String ACTION_STOP_TRACKING = "STOP_TRACKING";
@@ -36,50 +30,53 @@ public class BackgroundLocationService extends Service implements LocationListen
     private static final String CHANNEL_ID = "MileTrackerGPS";
     private static final int NOTIFICATION_ID = 1001;
     
-    private LocationManager locationManager;
-    private PowerManager.WakeLock wakeLock;
+    private LocationSource locationSource;
+    private WakeLockManager wakeLocks;
     private SharedPreferences prefs;
+    private TripJournal tripJournal;
+    private TripCheckpoint tripCheckpoint;
+    private BridgeEventDispatcher bridgeEvents;
     
     // Trip detection variables
-    private List<LocationReading> speedReadings = new ArrayList<>();
+    private final TripDetectionEngine tripDetector = new TripDetectionEngine(TripDetectionEngine.SERVICE_PROFILE);
+    private final LocationSamplingScheduler samplingScheduler = new LocationSamplingScheduler();
+    private double lastFixLatitude = Double.NaN;
+    private double lastFixLongitude;
+    private long lastFixTime;
+    private float lastFixAccuracy;
     private JSONObject currentTrip = null;
+    private long currentTripStartTime = 0;
+    private final PathCodec.Writer currentPath = new PathCodec.Writer();
+    private final PathCodec.Reader pathReader = new PathCodec.Reader(new byte[0]);
+    private final TripDistanceFilter tripDistance = new TripDistanceFilter();
+    private final PathSimplifier pathSimplifier = new PathSimplifier(this::appendPathPoint);
     private boolean isTracking = false;
-    private int stationaryCount = 0;
-    private int movingCount = 0;
     
-    private static final double TRIP_START_SPEED_MPH = 8.0;
-    private static final double TRIP_END_SPEED_MPH = 3.0;
-    private static final int MIN_READINGS_FOR_START = 3;
-    private static final int MIN_READINGS_FOR_END = 4;
-    private static final double MIN_TRIP_DISTANCE_MILES = 0.5;
-    private static final long MAX_TRIP_DURATION_MS = 10 * 60 * 1000; // 10 minutes
+    // In-progress trip checkpoint cadence - whichever comes first
+    private static final int CHECKPOINT_EVERY_FIXES = 10;
+    private static final long CHECKPOINT_INTERVAL_MS = 60 * 1000;
     
-    private class LocationReading {
-        double latitude;
-        double longitude;
-        double speedMph;
-        long timestamp;
-        float accuracy;
-        
-        LocationReading(double lat, double lon, double speed, long time, float acc) {
-            this.latitude = lat;
-            this.longitude = lon;
-            this.speedMph = Math.max(0, speed * 2.237); // m/s to mph
-            this.timestamp = time;
-            this.accuracy = acc;
-        }
-    }
+    // Wake lock holds: a trip is re-armed by every fix, so it lapses if fixes
+    // stop; a fix batch is released as soon as it has been processed
+    private static final long TRIP_WAKE_LOCK_MS = 10 * 60 * 1000;
+    private static final long FIX_BATCH_WAKE_LOCK_MS = 30 * 1000;
     
     @Override
     public void onCreate() {
         super.onCreate();
         prefs = getSharedPreferences("MileTrackerGPS", Context.MODE_PRIVATE);
+        tripJournal = TripJournal.getInstance(this);
+        new Thread(tripJournal::open, "trip-journal-open").start(); // Index and migrate off the main thread
+        bridgeEvents = BridgeEventDispatcher.getInstance(this);
+        tripCheckpoint = new TripCheckpoint(
+            new File(new File(getFilesDir(), "journal"), "active_trip.ckpt"),
+            CHECKPOINT_EVERY_FIXES, CHECKPOINT_INTERVAL_MS);
         createNotificationChannel();
         
-        // Acquire wake lock to prevent system from sleeping
+        // Wake lock is held only during trips and fix processing, see WakeLockManager
         PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
-        wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, 
-                                          "MileTracker::BackgroundGPS");
+        wakeLocks = new WakeLockManager(
+            powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "MileTracker::BackgroundGPS"), prefs);
     }
     
     @Override
@@ -92,6 +89,9 @@ public class BackgroundLocationService extends Service implements LocationListen
             } else if (ACTION_STOP_TRACKING.equals(action)) {
                 stopTracking();
             }
+        } else if (prefs.getBoolean("isTracking", false)) {
+            // Restarted by the system after being killed (START_STICKY) - resume where we left off
+            startTracking();
         }
         
         return START_STICKY; // Restart service if killed by system
@@ -108,41 +108,27 @@ public class BackgroundLocationService extends Service implements LocationListen
                 return;
             }
             
-            locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
+            if (locationSource == null) {
+                locationSource = LocationSource.Factory.create(this);
+            }
             
             // Start foreground service with notification
             Notification notification = createNotification("Background GPS Active", 
                                                           "Monitoring for trips automatically");
             startForeground(NOTIFICATION_ID, notification);
             
-            // Acquire wake lock
-            if (!wakeLock.isHeld()) {
-                wakeLock.acquire(60 * 60 * 1000L); // 1 hour max
-            }
-            
-            // Request location updates - optimized for battery
-            if (locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)) {
-                locationManager.requestLocationUpdates(
-                    LocationManager.GPS_PROVIDER,
-                    15000, // 15 seconds minimum time
-                    20,    // 20 meters minimum distance
-                    this
-                );
-            }
-            
-            if (locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)) {
-                locationManager.requestLocationUpdates(
-                    LocationManager.NETWORK_PROVIDER,
-                    30000, // 30 seconds for network
-                    50,    // 50 meters minimum distance
-                    this
-                );
-            }
-            
             isTracking = true;
             prefs.edit().putBoolean("isTracking", true).apply();
             sendStatusUpdate("Background GPS tracking started");
             
+            restoreCheckpointedTrip();
+            
+            // Request location updates - rate follows detection state, see LocationSamplingScheduler
+            int mode = currentTrip != null
+                ? LocationSamplingScheduler.MODE_DRIVING : LocationSamplingScheduler.MODE_IDLE;
+            samplingScheduler.reset(mode, System.currentTimeMillis());
+            applySamplingMode(mode);
+            
         } catch (SecurityException e) {
             sendStatusUpdate("Location permission denied - Check phone settings");
         } catch (Exception e) {
@@ -154,8 +140,8 @@ public class BackgroundLocationService extends Service implements LocationListen
         if (!isTracking) return;
         
         try {
-            if (locationManager != null) {
-                locationManager.removeUpdates(this);
+            if (locationSource != null) {
+                locationSource.stop();
             }
             
             // End current trip if active
@@ -163,10 +149,10 @@ public class BackgroundLocationService extends Service implements LocationListen
                 forceEndCurrentTrip();
             }
             
-            // Release wake lock
-            if (wakeLock.isHeld()) {
-                wakeLock.release();
-            }
+            wakeLocks.releaseAll();
+            
+            tripJournal.sync();
+            bridgeEvents.flush();
             
             isTracking = false;
             prefs.edit().putBoolean("isTracking", false).apply();
@@ -181,148 +167,148 @@ public class BackgroundLocationService extends Service implements LocationListen
     }
     
     @Override
-    public void onLocationChanged(Location location) {
+    public void onLocations(List<Location> locations) {
         if (!isTracking) return;
         
+        wakeLocks.acquire(WakeLockManager.REASON_FIX_BATCH, FIX_BATCH_WAKE_LOCK_MS);
         try {
-            double latitude = location.getLatitude();
-            double longitude = location.getLongitude();
-            double speed = location.hasSpeed() ? location.getSpeed() : 0.0;
-            float accuracy = location.getAccuracy();
-            long timestamp = System.currentTimeMillis();
-            
-            // Send location update to React Native
-            sendLocationUpdate(latitude, longitude, speed, accuracy);
-            
-            // Add to speed readings for trip detection
-            LocationReading reading = new LocationReading(latitude, longitude, speed, timestamp, accuracy);
-            speedReadings.add(reading);
-            
-            // Keep only last 15 readings for analysis
-            if (speedReadings.size() > 15) {
-                speedReadings.remove(0);
+            // A batch can hold minutes of fixes; detection runs over all of
+            // them, and the bridge dispatcher coalesces them for React Native
+            Location latest = null;
+            double latestSpeed = 0;
+            for (Location location : locations) {
+                double speed = processFix(location);
+                if (speed >= 0) {
+                    latest = location;
+                    latestSpeed = speed;
+                    bridgeEvents.location(location.getLatitude(), location.getLongitude(), speed,
+                                          location.getAccuracy(), lastFixTime);
+                }
             }
+            if (latest == null) return;
             
-            // Process for automatic trip detection
-            processLocationForTripDetection(reading);
+            int mode = samplingScheduler.onFix(tripDetector.state(), tripDetector.isPossibleStart(),
+                                               latestSpeed * 2.237, lastFixTime);
+            if (mode >= 0) {
+                applySamplingMode(mode);
+            }
             
         } catch (Exception e) {
             sendStatusUpdate("Location processing error: " + e.getMessage());
+        } finally {
+            wakeLocks.release(WakeLockManager.REASON_FIX_BATCH);
         }
     }
     
-    private void processLocationForTripDetection(LocationReading currentReading) {
-        if (speedReadings.size() < 3) return;
-        
-        // Calculate average speed from recent readings
-        double avgSpeed = 0;
-        int validReadings = 0;
+    // Run one fix through trip detection; returns its speed in m/s, or -1 if
+    // it was a duplicate or out of order
+    private double processFix(Location location) {
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        float accuracy = location.getAccuracy();
+        long timestamp = location.getTime() > 0 ? location.getTime() : System.currentTimeMillis();
+        if (timestamp <= lastFixTime) return -1; // Passive provider repeats fixes we already have
         
-        for (int i = Math.max(0, speedReadings.size() - 5); i < speedReadings.size(); i++) {
-            LocationReading reading = speedReadings.get(i);
-            if (reading.accuracy < 100) { // Only use accurate readings
-                avgSpeed += reading.speedMph;
-                validReadings++;
-            }
+        // Network and passive fixes usually carry no speed - estimate it from
+        // the previous fix, counting only movement beyond both fixes' accuracy
+        // so position jitter doesn't read as driving
+        double speed = 0.0;
+        if (location.hasSpeed()) {
+            speed = location.getSpeed();
+        } else if (!Double.isNaN(lastFixLatitude)) {
+            double moved = GeoMath.distanceMeters(lastFixLatitude, lastFixLongitude, latitude, longitude)
+                    - accuracy - lastFixAccuracy;
+            speed = Math.max(0, moved) / ((timestamp - lastFixTime) / 1000.0);
         }
+        lastFixLatitude = latitude;
+        lastFixLongitude = longitude;
+        lastFixTime = timestamp;
+        lastFixAccuracy = accuracy;
         
-        if (validReadings == 0) return;
-        avgSpeed /= validReadings;
+        double speedMph = Math.max(0, speed * 2.237); // m/s to mph
+        processLocationForTripDetection(latitude, longitude, speedMph, accuracy, timestamp);
+        return speed;
+    }
+    
+    /**
+     * Re-register location updates for a sampling mode
+     */
+    private void applySamplingMode(int mode) {
+        if (locationSource == null) return;
         
-        // Trip start detection
-        if (currentTrip == null && avgSpeed > TRIP_START_SPEED_MPH && speedReadings.size() >= MIN_READINGS_FOR_START) {
-            boolean recentHighSpeed = true;
-            int highSpeedCount = 0;
-            
-            for (int i = Math.max(0, speedReadings.size() - MIN_READINGS_FOR_START); i < speedReadings.size(); i++) {
-                if (speedReadings.get(i).speedMph > TRIP_START_SPEED_MPH) {
-                    highSpeedCount++;
-                }
-            }
-            
-            if (highSpeedCount >= 2) { // At least 2 of last 3 readings > threshold
-                startTrip(currentReading);
-            }
+        try {
+            locationSource.request(
+                LocationSamplingScheduler.intervalMs(mode),
+                LocationSamplingScheduler.minDistanceMeters(mode),
+                true, // GPS in every mode, see LocationSamplingScheduler
+                LocationSamplingScheduler.maxDelayMs(mode),
+                this);
+        } catch (SecurityException e) {
+            sendStatusUpdate("Location permission denied - Check phone settings");
         }
+    }
+    
+    private void processLocationForTripDetection(double latitude, double longitude,
+                                                 double speedMph, float accuracy, long timestamp) {
+        int event = tripDetector.onFix(latitude, longitude, speedMph, accuracy, timestamp);
         
-        // Trip end detection
-        if (currentTrip != null) {
-            // Add location to current trip path
-            try {
-                JSONArray path = currentTrip.getJSONArray("path");
-                JSONObject locationPoint = new JSONObject();
-                locationPoint.put("latitude", currentReading.latitude);
-                locationPoint.put("longitude", currentReading.longitude);
-                locationPoint.put("speed", currentReading.speedMph);
-                locationPoint.put("timestamp", currentReading.timestamp);
-                path.put(locationPoint);
+        switch (event) {
+            case TripDetectionEngine.EVENT_TRIP_STARTED:
+                startTrip(latitude, longitude, speedMph, accuracy, timestamp);
+                break;
                 
-            } catch (JSONException e) {
-                // Handle JSON error
-            }
-            
-            // Check for trip end conditions
-            if (avgSpeed < TRIP_END_SPEED_MPH && speedReadings.size() >= MIN_READINGS_FOR_END) {
-                boolean recentLowSpeed = true;
-                int lowSpeedCount = 0;
+            case TripDetectionEngine.EVENT_TRIP_SPLIT:
+                endTrip(tripDetector.endLatitude(), tripDetector.endLongitude(), tripDetector.endTime());
+                startTrip(latitude, longitude, speedMph, accuracy, timestamp);
+                break;
                 
-                for (int i = Math.max(0, speedReadings.size() - MIN_READINGS_FOR_END); i < speedReadings.size(); i++) {
-                    if (speedReadings.get(i).speedMph < TRIP_END_SPEED_MPH) {
-                        lowSpeedCount++;
-                    }
-                }
+            default:
+                if (currentTrip == null) break;
+                wakeLocks.acquire(WakeLockManager.REASON_TRIP, TRIP_WAKE_LOCK_MS); // Re-arm
                 
-                if (lowSpeedCount >= 3) { // At least 3 of last 4 readings < threshold
-                    stationaryCount++;
-                    if (stationaryCount >= 2) { // 2 confirmations of being stationary
-                        endTrip(currentReading);
-                    }
-                } else {
-                    stationaryCount = 0; // Reset if moving again
+                // Every fix counts toward distance; the stored path keeps the
+                // geometry-significant ones, minus rejected outliers
+                if (tripDistance.add(latitude, longitude, accuracy, speedMph, timestamp)) {
+                    tripCheckpoint.setTotals(tripDistance.distanceMeters(), 0, 0); // No pause tally here
+                    pathSimplifier.add(latitude, longitude, speedMph, timestamp);
                 }
-            } else {
-                stationaryCount = 0;
-            }
-            
-            // Force end trip after maximum duration
-            try {
-                long startTime = currentTrip.getLong("startTime");
-                if (currentReading.timestamp - startTime > MAX_TRIP_DURATION_MS) {
-                    forceEndCurrentTrip();
+                
+                if (event == TripDetectionEngine.EVENT_TRIP_ENDED) {
+                    endTrip(tripDetector.endLatitude(), tripDetector.endLongitude(), tripDetector.endTime());
                 }
-            } catch (JSONException e) {
-                // Handle JSON error
-            }
+                break;
         }
     }
     
-    private void startTrip(LocationReading startReading) {
+    private void startTrip(double latitude, double longitude, double speedMph, float accuracy, long timestamp) {
         try {
             currentTrip = new JSONObject();
             currentTrip.put("id", System.currentTimeMillis());
-            currentTrip.put("startTime", startReading.timestamp);
-            currentTrip.put("startLatitude", startReading.latitude);
-            currentTrip.put("startLongitude", startReading.longitude);
+            currentTrip.put("startTime", timestamp);
+            currentTrip.put("startLatitude", latitude);
+            currentTrip.put("startLongitude", longitude);
             currentTrip.put("method", "GPS_AUTO_BACKGROUND");
             currentTrip.put("category", "Business");
+            currentTripStartTime = timestamp;
             
-            JSONArray path = new JSONArray();
-            JSONObject startPoint = new JSONObject();
-            startPoint.put("latitude", startReading.latitude);
-            startPoint.put("longitude", startReading.longitude);
-            startPoint.put("speed", startReading.speedMph);
-            startPoint.put("timestamp", startReading.timestamp);
-            path.put(startPoint);
-            currentTrip.put("path", path);
+            currentPath.clear();
+            pathSimplifier.clear();
+            tripDistance.reset();
+            tripDistance.add(latitude, longitude, accuracy, speedMph, timestamp);
             
-            movingCount = 0;
-            stationaryCount = 0;
+            try {
+                tripCheckpoint.begin(currentTrip.getLong("id"), currentTrip);
+            } catch (IOException e) {
+                sendStatusUpdate("Trip checkpoint unavailable: " + e.getMessage());
+            }
+            pathSimplifier.add(latitude, longitude, speedMph, timestamp); // First point is always kept
             
             prefs.edit().putBoolean("hasActiveTrip", true).apply();
+            wakeLocks.acquire(WakeLockManager.REASON_TRIP, TRIP_WAKE_LOCK_MS);
             
-            sendTripEvent("TRIP_STARTED", currentTrip.toString());
+            bridgeEvents.tripEvent("TRIP_STARTED", currentTrip);
             sendStatusUpdate("🚗 Trip started automatically - Speed: " + 
-                           String.format("%.1f", startReading.speedMph) + " mph");
+                           String.format("%.1f", speedMph) + " mph");
             
             // Update notification
             Notification notification = createNotification("Trip in Progress", 
@@ -334,26 +320,31 @@ public class BackgroundLocationService extends Service implements LocationListen
         }
     }
     
-    private void endTrip(LocationReading endReading) {
+    private void endTrip(double latitude, double longitude, long timestamp) {
         if (currentTrip == null) return;
         
         try {
-            currentTrip.put("endTime", endReading.timestamp);
-            currentTrip.put("endLatitude", endReading.latitude);
-            currentTrip.put("endLongitude", endReading.longitude);
+            pathSimplifier.flush();
+            currentTrip.put("endTime", timestamp);
+            currentTrip.put("endLatitude", latitude);
+            currentTrip.put("endLongitude", longitude);
             
-            // Calculate trip distance
-            double distance = calculateTripDistance();
+            // Kalman-filtered distance, accumulated as fixes arrived
+            double distance = tripDistance.distanceMiles();
             currentTrip.put("distance", distance);
             
-            long startTime = currentTrip.getLong("startTime");
-            long duration = endReading.timestamp - startTime;
+            long duration = timestamp - currentTripStartTime;
             currentTrip.put("duration", duration);
             
+            // Path travels as compact delta-encoded bytes rather than a JSON array
+            currentTrip.put("path", Base64.encodeToString(currentPath.toByteArray(), Base64.NO_WRAP));
+            currentTrip.put("pathFormat", PathCodec.FORMAT_NAME);
+            currentTrip.put("pathPoints", currentPath.pointCount());
+            
             // Only save trips over minimum distance
-            if (distance >= MIN_TRIP_DISTANCE_MILES) {
+            if (distance >= tripDetector.profile().minTripMiles) {
                 saveCompletedTrip();
-                sendTripEvent("TRIP_COMPLETED", currentTrip.toString());
+                bridgeEvents.tripEvent("TRIP_COMPLETED", currentTrip);
                 sendStatusUpdate("✅ Trip completed automatically - " + 
                                String.format("%.1f", distance) + " miles");
             } else {
@@ -362,11 +353,13 @@ public class BackgroundLocationService extends Service implements LocationListen
             }
             
             currentTrip = null;
-            movingCount = 0;
-            stationaryCount = 0;
-            speedReadings.clear();
+            currentPath.clear();
+            pathSimplifier.clear();
+            tripDistance.reset();
+            tripCheckpoint.clear();
             
             prefs.edit().putBoolean("hasActiveTrip", false).apply();
+            wakeLocks.release(WakeLockManager.REASON_TRIP);
             
             // Update notification back to monitoring
             Notification notification = createNotification("Background GPS Active", 
@@ -378,72 +371,85 @@ public class BackgroundLocationService extends Service implements LocationListen
         }
     }
     
-    private void forceEndCurrentTrip() {
-        if (currentTrip != null && speedReadings.size() > 0) {
-            LocationReading lastReading = speedReadings.get(speedReadings.size() - 1);
-            endTrip(lastReading);
+    // PathSimplifier sink: a kept point goes to the encoded path and the checkpoint
+    private void appendPathPoint(double latitude, double longitude, double speedMph, long timestamp) {
+        currentPath.add(latitude, longitude, speedMph, timestamp);
+        checkpointPoint(latitude, longitude, speedMph, timestamp);
+    }
+    
+    private void checkpointPoint(double latitude, double longitude, double speedMph, long timestamp) {
+        try {
+            tripCheckpoint.addPoint(latitude, longitude, speedMph, timestamp);
+        } catch (IOException e) {
+            sendStatusUpdate("Trip checkpoint failed: " + e.getMessage());
         }
     }
     
-    private double calculateTripDistance() {
-        if (currentTrip == null) return 0;
+    /**
+     * Pick up a trip that was in progress when the process died
+     */
+    private void restoreCheckpointedTrip() {
+        if (currentTrip != null) return;
         
-        try {
-            JSONArray path = currentTrip.getJSONArray("path");
-            if (path.length() < 2) return 0;
-            
-            double totalDistance = 0;
-            
-            for (int i = 1; i < path.length(); i++) {
-                JSONObject prev = path.getJSONObject(i - 1);
-                JSONObject curr = path.getJSONObject(i);
-                
-                double lat1 = prev.getDouble("latitude");
-                double lon1 = prev.getDouble("longitude");
-                double lat2 = curr.getDouble("latitude");
-                double lon2 = curr.getDouble("longitude");
-                
-                double segmentDistance = calculateDistance(lat1, lon1, lat2, lon2);
-                
-                // Filter out GPS noise
-                if (segmentDistance > 1 && segmentDistance < 1000) { // 1m to 1km segments
-                    totalDistance += segmentDistance;
-                }
-            }
-            
-            return totalDistance * 0.000621371; // meters to miles
-            
-        } catch (JSONException e) {
-            return 0;
+        TripCheckpoint.Restored restored = tripCheckpoint.restore();
+        if (restored == null) return;
+        
+        currentTrip = restored.header;
+        currentTripStartTime = currentTrip.optLong("startTime", System.currentTimeMillis());
+        currentPath.clear();
+        
+        double lastLat = currentTrip.optDouble("startLatitude", 0);
+        double lastLon = currentTrip.optDouble("startLongitude", 0);
+        long lastTime = currentTripStartTime;
+        pathReader.reset(restored.path.buffer(), restored.path.byteLength());
+        while (pathReader.next()) {
+            lastLat = pathReader.latitude();
+            lastLon = pathReader.longitude();
+            lastTime = pathReader.timestamp();
+            currentPath.add(lastLat, lastLon, pathReader.speedMph(), lastTime);
+        }
+        pathSimplifier.resumeFrom(lastLat, lastLon);
+        // The filtered distance as checkpointed, not re-measured from the simplified path
+        tripDistance.resumeAt(lastLat, lastLon, lastTime, restored.distanceMeters);
+        
+        prefs.edit().putBoolean("hasActiveTrip", true).apply();
+        
+        if (System.currentTimeMillis() - lastTime > tripDetector.profile().maxTripMs) {
+            // Too stale to continue - close it out at the last known point
+            endTrip(lastLat, lastLon, lastTime);
+            return;
         }
+        tripDetector.resumeTrip(currentTripStartTime);
+        wakeLocks.acquire(WakeLockManager.REASON_TRIP, TRIP_WAKE_LOCK_MS);
+        
+        sendStatusUpdate("🚗 Trip restored after restart - " + currentPath.pointCount() + " points");
+        Notification notification = createNotification("Trip in Progress", 
+                                                      "Recording your journey automatically");
+        startForeground(NOTIFICATION_ID, notification);
     }
     
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double R = 6371000; // Earth's radius in meters
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(dLat/2) * Math.sin(dLat/2) +
-                  Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                  Math.sin(dLon/2) * Math.sin(dLon/2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-        return R * c;
+    private void forceEndCurrentTrip() {
+        if (currentTrip == null) return;
+        if (tripDetector.bufferedFixes() > 0) {
+            endTrip(tripDetector.latestLatitude(), tripDetector.latestLongitude(),
+                    tripDetector.latestTimestamp());
+        } else if (currentPath.pointCount() > 0) {
+            // Restored trip with no fresh fixes yet - end at the last recorded point
+            pathReader.reset(currentPath.buffer(), currentPath.byteLength());
+            while (pathReader.next()) { }
+            endTrip(pathReader.latitude(), pathReader.longitude(), pathReader.timestamp());
+        }
+        tripDetector.reset();
     }
     
     private void saveCompletedTrip() {
         if (currentTrip == null) return;
         
         try {
-            // Get existing trips from SharedPreferences
-            String existingTrips = prefs.getString("completedTrips", "[]");
-            JSONArray tripsArray = new JSONArray(existingTrips);
-            
-            // Add current trip
-            tripsArray.put(currentTrip);
+            // Append to the trip journal - one record write, no rewrite of older trips
+            tripJournal.append(currentTrip);
             
-            // Save back to SharedPreferences
-            prefs.edit().putString("completedTrips", tripsArray.toString()).apply();
-            
-        } catch (JSONException e) {
+        } catch (IOException e) {
             sendStatusUpdate("Error saving trip: " + e.getMessage());
         }
     }
@@ -476,59 +482,15 @@ public class BackgroundLocationService extends Service implements LocationListen
             .build();
     }
     
-    private void sendLocationUpdate(double latitude, double longitude, double speed, float accuracy) {
-        try {
-            ReactApplication app = (ReactApplication) getApplication();
-            ReactInstanceManager reactInstanceManager = app.getReactNativeHost().getReactInstanceManager();
-            ReactApplicationContext reactContext = (ReactApplicationContext) reactInstanceManager.getCurrentReactContext();
-            
-            if (reactContext != null) {
-                MileTrackerGPSModule.sendLocationUpdate(reactContext, latitude, longitude, speed, accuracy);
-            }
-        } catch (Exception e) {
-            // React context not available - app may be closed
-        }
-    }
-    
-    private void sendTripEvent(String eventType, String tripData) {
-        try {
-            ReactApplication app = (ReactApplication) getApplication();
-            ReactInstanceManager reactInstanceManager = app.getReactNativeHost().getReactInstanceManager();
-            ReactApplicationContext reactContext = (ReactApplicationContext) reactInstanceManager.getCurrentReactContext();
-            
-            if (reactContext != null) {
-                MileTrackerGPSModule.sendTripEvent(reactContext, eventType, tripData);
-            }
-        } catch (Exception e) {
-            // React context not available - app may be closed
-        }
-    }
-    
     private void sendStatusUpdate(String status) {
-        try {
-            ReactApplication app = (ReactApplication) getApplication();
-            ReactInstanceManager reactInstanceManager = app.getReactNativeHost().getReactInstanceManager();
-            ReactApplicationContext reactContext = (ReactApplicationContext) reactInstanceManager.getCurrentReactContext();
-            
-            if (reactContext != null) {
-                MileTrackerGPSModule.sendStatusUpdate(reactContext, status);
-            }
-        } catch (Exception e) {
-            // React context not available - app may be closed
-        }
+        bridgeEvents.status(status);
     }
     
-    @Override
-    public void onProviderEnabled(String provider) {}
-    
     @Override
     public void onProviderDisabled(String provider) {
         sendStatusUpdate("GPS provider disabled: " + provider);
     }
     
-    @Override
-    public void onStatusChanged(String provider, int status, Bundle extras) {}
-    
     @Override
     public IBinder onBind(Intent intent) {
         return null;
@@ -537,11 +499,19 @@ public class BackgroundLocationService extends Service implements LocationListen
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (wakeLock.isHeld()) {
-            wakeLock.release();
+        wakeLocks.releaseAll();
+        if (locationSource != null) {
+            locationSource.stop();
         }
-        if (locationManager != null) {
-            locationManager.removeUpdates(this);
+        if (tripJournal != null) {
+            tripJournal.sync();
+        }
+        if (tripCheckpoint != null && currentTrip != null) {
+            try {
+                tripCheckpoint.flush();
+            } catch (IOException e) {
+                // Best effort - at most one checkpoint interval of points is lost
+            }
         }
     }
 }
@@ -0,0 +1,416 @@
+package com.miletrackerpro.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * MileTracker Pro - Bridge Event Dispatcher
+ * Single path for events from BackgroundLocationService to React Native.
+ *
+ * - The React context is handed over by MileTrackerGPSModule when it is
+ *   created and dropped when it is invalidated, instead of being looked up
+ *   through the ReactInstanceManager for every event.
+ * - Location fixes are coalesced: at most one MileTrackerLocationUpdate
+ *   per interval, carrying every fix since the last one in "locations"
+ *   (plus the newest fix at the top level, as before). The batch is capped;
+ *   if JS falls behind the oldest fixes are dropped and counted.
+ * - Trip events carry only the fields that changed since the last event
+ *   for the same trip. The encoded path is never sent - completed trips
+ *   are read from the journal with getCompletedTrips().
+ * - While JS is not running, trip events are spooled to disk and replayed
+ *   once it starts listening again; location fixes are dropped (the trip
+ *   path is already checkpointed) and only the latest status is kept.
+ *
+ * All work happens on one background thread; the public methods only post.
+ */
+public class BridgeEventDispatcher {
+    private static final String TAG = "BridgeEventDispatcher";
+    private static final String PREFS_NAME = "MileTrackerGPS";
+    private static final String INTERVAL_KEY = "bridgeLocationIntervalMs";
+
+    public static final long DEFAULT_LOCATION_INTERVAL_MS = 3000;
+    private static final int MAX_BATCH_FIXES = 64;
+
+    private static final String SPOOL_NAME = "bridge_events.spool";
+    private static final byte RECORD_TRIP_EVENT = 1;
+    private static final long MAX_SPOOL_BYTES = 256 * 1024;
+
+    // Trip fields that never travel over the bridge
+    private static final String[] UNSENT_TRIP_FIELDS = { "path" };
+
+    private static BridgeEventDispatcher instance;
+
+    private final SharedPreferences prefs;
+    private final JournalFile spool;
+    private final Handler handler;
+
+    private volatile ReactContext reactContext;
+    private long locationIntervalMs;
+
+    // Pending location batch, oldest first - handler thread only
+    private final double[] batchLatitude = new double[MAX_BATCH_FIXES];
+    private final double[] batchLongitude = new double[MAX_BATCH_FIXES];
+    private final double[] batchSpeed = new double[MAX_BATCH_FIXES];
+    private final float[] batchAccuracy = new float[MAX_BATCH_FIXES];
+    private final long[] batchTime = new long[MAX_BATCH_FIXES];
+    private int batchStart = 0;
+    private int batchSize = 0;
+    private int droppedFixes = 0;
+    private boolean flushScheduled = false;
+    private long lastLocationEmit = 0;
+
+    // Last trip fields sent to JS, to diff the next event against
+    private long sentTripId = -1;
+    private JSONObject sentTrip = new JSONObject();
+
+    private String pendingStatus;
+    private long pendingStatusTime;
+    private boolean spoolOpen = false;
+
+    private final Runnable flushLocations = this::flushLocationsNow;
+
+    /**
+     * Shared instance - the service publishes, the React Native module
+     * attaches the context
+     */
+    public static synchronized BridgeEventDispatcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new BridgeEventDispatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BridgeEventDispatcher(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        locationIntervalMs = prefs.getLong(INTERVAL_KEY, DEFAULT_LOCATION_INTERVAL_MS);
+        spool = new JournalFile(new File(new File(context.getFilesDir(), "journal"), SPOOL_NAME), 1, 0);
+
+        HandlerThread thread = new HandlerThread("bridge-events", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Called by MileTrackerGPSModule once its React context exists
+     */
+    public void attach(ReactContext context) {
+        reactContext = context;
+    }
+
+    /**
+     * Called when the module is invalidated; events are held until the next attach
+     */
+    public void detach(ReactContext context) {
+        if (reactContext == context) {
+            reactContext = null;
+        }
+    }
+
+    /**
+     * JS has started listening: deliver whatever was held while it was not
+     */
+    public void replayPending() {
+        handler.post(this::replayNow);
+    }
+
+    /**
+     * Minimum time between location events; 0 sends each fix as it arrives
+     */
+    public void setLocationInterval(long intervalMs) {
+        final long interval = Math.max(0, intervalMs);
+        prefs.edit().putLong(INTERVAL_KEY, interval).apply();
+        handler.post(() -> {
+            locationIntervalMs = interval;
+            if (batchSize > 0) scheduleLocationFlush();
+        });
+    }
+
+    public void location(double latitude, double longitude, double speed, float accuracy, long timestamp) {
+        handler.post(() -> queueLocation(latitude, longitude, speed, accuracy, timestamp));
+    }
+
+    /**
+     * Trip started / completed. The trip is copied here, so the caller may
+     * keep modifying it.
+     */
+    public void tripEvent(String eventType, JSONObject trip) {
+        final JSONObject snapshot;
+        try {
+            snapshot = new JSONObject(trip.toString());
+        } catch (JSONException e) {
+            Log.w(TAG, "Unreadable trip for " + eventType + ": " + e.getMessage());
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        handler.post(() -> sendTripDelta(eventType, snapshot, now));
+    }
+
+    public void status(String status) {
+        final long now = System.currentTimeMillis();
+        handler.post(() -> sendStatus(status, now));
+    }
+
+    /**
+     * Send any batched fixes now (tracking stopped)
+     */
+    public void flush() {
+        handler.post(flushLocations);
+    }
+
+    // --- handler thread ---
+
+    private ReactContext activeContext() {
+        ReactContext context = reactContext;
+        return context != null && context.hasActiveCatalystInstance() ? context : null;
+    }
+
+    private void emit(ReactContext context, String eventName, WritableMap params) {
+        context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit(eventName, params);
+    }
+
+    private void queueLocation(double latitude, double longitude, double speed, float accuracy, long timestamp) {
+        if (activeContext() == null) {
+            batchSize = 0; // Nobody to show them to
+            return;
+        }
+        if (batchSize == MAX_BATCH_FIXES) {
+            batchStart = (batchStart + 1) % MAX_BATCH_FIXES;
+            batchSize--;
+            droppedFixes++;
+        }
+        int i = (batchStart + batchSize) % MAX_BATCH_FIXES;
+        batchLatitude[i] = latitude;
+        batchLongitude[i] = longitude;
+        batchSpeed[i] = speed;
+        batchAccuracy[i] = accuracy;
+        batchTime[i] = timestamp;
+        batchSize++;
+        scheduleLocationFlush();
+    }
+
+    private void scheduleLocationFlush() {
+        if (flushScheduled) return;
+        long wait = lastLocationEmit + locationIntervalMs - System.currentTimeMillis();
+        flushScheduled = true;
+        if (wait <= 0) {
+            handler.post(flushLocations);
+        } else {
+            handler.postDelayed(flushLocations, wait);
+        }
+    }
+
+    private void flushLocationsNow() {
+        handler.removeCallbacks(flushLocations);
+        flushScheduled = false;
+        if (batchSize == 0) return;
+
+        ReactContext context = activeContext();
+        if (context == null) {
+            batchSize = 0;
+            droppedFixes = 0;
+            return;
+        }
+
+        WritableArray locations = Arguments.createArray();
+        int last = 0;
+        for (int n = 0; n < batchSize; n++) {
+            last = (batchStart + n) % MAX_BATCH_FIXES;
+            locations.pushMap(locationMap(last));
+        }
+
+        WritableMap params = locationMap(last);
+        params.putArray("locations", locations);
+        params.putInt("dropped", droppedFixes);
+        emit(context, "MileTrackerLocationUpdate", params);
+
+        batchStart = 0;
+        batchSize = 0;
+        droppedFixes = 0;
+        lastLocationEmit = System.currentTimeMillis();
+    }
+
+    private WritableMap locationMap(int i) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("latitude", batchLatitude[i]);
+        map.putDouble("longitude", batchLongitude[i]);
+        map.putDouble("speed", batchSpeed[i]);
+        map.putDouble("accuracy", batchAccuracy[i]);
+        map.putDouble("timestamp", batchTime[i]);
+        return map;
+    }
+
+    private void sendTripDelta(String eventType, JSONObject trip, long timestamp) {
+        for (String field : UNSENT_TRIP_FIELDS) {
+            trip.remove(field);
+        }
+        long tripId = trip.optLong("id", -1);
+        if (tripId != sentTripId) {
+            sentTripId = tripId;
+            sentTrip = new JSONObject();
+        }
+
+        JSONObject delta = new JSONObject();
+        try {
+            delta.put("id", tripId);
+            Iterator<String> keys = trip.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                Object value = trip.get(key);
+                Object previous = sentTrip.opt(key);
+                if (previous == null || !previous.toString().equals(value.toString())) {
+                    delta.put(key, value);
+                    sentTrip.put(key, value);
+                }
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Error building " + eventType + " delta: " + e.getMessage());
+            return;
+        }
+
+        ReactContext context = activeContext();
+        if (context == null) {
+            spoolTripEvent(eventType, delta, timestamp);
+            return;
+        }
+        replayNow(); // Anything spooled goes first, so JS sees events in order
+        emitTripEvent(context, eventType, delta.toString(), timestamp);
+    }
+
+    private void emitTripEvent(ReactContext context, String eventType, String delta, long timestamp) {
+        WritableMap params = Arguments.createMap();
+        params.putString("eventType", eventType);
+        params.putDouble("tripId", sentTripId);
+        params.putString("tripData", delta);
+        params.putBoolean("delta", true);
+        params.putDouble("timestamp", timestamp);
+        emit(context, "MileTrackerTripEvent", params);
+    }
+
+    private void sendStatus(String status, long timestamp) {
+        ReactContext context = activeContext();
+        if (context == null) {
+            pendingStatus = status;
+            pendingStatusTime = timestamp;
+            return;
+        }
+        emitStatus(context, status, timestamp);
+    }
+
+    private void emitStatus(ReactContext context, String status, long timestamp) {
+        WritableMap params = Arguments.createMap();
+        params.putString("status", status);
+        params.putDouble("timestamp", timestamp);
+        emit(context, "MileTrackerStatusUpdate", params);
+    }
+
+    // --- spool ---
+
+    private boolean openSpool() {
+        if (spoolOpen) return true;
+        try {
+            spool.open(null);
+            spoolOpen = true;
+        } catch (IOException e) {
+            Log.w(TAG, "Event spool unavailable: " + e.getMessage());
+        }
+        return spoolOpen;
+    }
+
+    private boolean hasSpooled() {
+        return openSpool() && spool.length() > 0;
+    }
+
+    private void spoolTripEvent(String eventType, JSONObject delta, long timestamp) {
+        if (!openSpool()) return;
+        if (spool.length() > MAX_SPOOL_BYTES) {
+            Log.w(TAG, "Event spool full - dropping " + eventType);
+            return;
+        }
+        try {
+            JSONObject record = new JSONObject();
+            record.put("eventType", eventType);
+            record.put("tripId", sentTripId);
+            record.put("tripData", delta.toString());
+            spool.append(RECORD_TRIP_EVENT, timestamp, record.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (JSONException | IOException e) {
+            Log.w(TAG, "Failed to spool " + eventType + ": " + e.getMessage());
+        }
+    }
+
+    private void replayNow() {
+        ReactContext context = activeContext();
+        if (context == null) return;
+
+        if (hasSpooled()) {
+            final List<Long> offsets = new ArrayList<>();
+            final List<Long> timestamps = new ArrayList<>();
+            try {
+                spool.close();
+                spoolOpen = false;
+                spool.open((offset, type, key, payloadLength) -> {
+                    if (type == RECORD_TRIP_EVENT) {
+                        offsets.add(offset);
+                        timestamps.add(key);
+                    }
+                    return true;
+                });
+                spoolOpen = true;
+
+                try (RandomAccessFile raf = new RandomAccessFile(spool.getFile(), "r")) {
+                    for (int i = 0; i < offsets.size(); i++) {
+                        byte[] payload = spool.read(raf, offsets.get(i));
+                        if (payload == null) continue;
+                        JSONObject record = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+                        WritableMap params = Arguments.createMap();
+                        params.putString("eventType", record.getString("eventType"));
+                        params.putDouble("tripId", record.getLong("tripId"));
+                        params.putString("tripData", record.getString("tripData"));
+                        params.putBoolean("delta", true);
+                        params.putDouble("timestamp", timestamps.get(i));
+                        emit(context, "MileTrackerTripEvent", params);
+                    }
+                }
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Error replaying event spool: " + e.getMessage());
+            }
+
+            // Delivered (or unreadable) - start a fresh spool
+            spool.close();
+            spoolOpen = false;
+            if (!spool.getFile().delete()) {
+                try (RandomAccessFile raf = new RandomAccessFile(spool.getFile(), "rw")) {
+                    raf.setLength(0);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to clear event spool: " + e.getMessage());
+                }
+            }
+        }
+
+        if (pendingStatus != null) {
+            emitStatus(context, pendingStatus, pendingStatusTime);
+            pendingStatus = null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.miletrackerpro.app;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.Looper;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+import java.util.List;
+
+/**
+ * MileTracker Pro - Fused Location Source
+ * Play services fused provider. With a max update delay the chip keeps
+ * collecting fixes at the requested interval while the application
+ * processor sleeps, and the whole batch arrives in one callback.
+ */
+public class FusedLocationSource implements LocationSource {
+
+    private final FusedLocationProviderClient client;
+    private Listener listener;
+
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            Listener current = listener;
+            if (current == null || result == null) return;
+            List<Location> locations = result.getLocations();
+            if (locations != null && !locations.isEmpty()) {
+                current.onLocations(locations);
+            }
+        }
+    };
+
+    public FusedLocationSource(Context context) {
+        client = LocationServices.getFusedLocationProviderClient(context.getApplicationContext());
+    }
+
+    @Override
+    public void request(long intervalMs, float minDistanceMeters, boolean highAccuracy,
+                        long maxDelayMs, Listener listener) throws SecurityException {
+        this.listener = listener;
+        client.removeLocationUpdates(callback);
+
+        int priority = highAccuracy ? Priority.PRIORITY_HIGH_ACCURACY : Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+        LocationRequest request = new LocationRequest.Builder(priority, intervalMs)
+            .setMinUpdateDistanceMeters(minDistanceMeters)
+            .setMinUpdateIntervalMillis(intervalMs / 2) // accept fixes other apps trigger
+            .setMaxUpdateDelayMillis(Math.max(0, maxDelayMs))
+            .build();
+        client.requestLocationUpdates(request, callback, Looper.getMainLooper());
+    }
+
+    @Override
+    public void stop() {
+        listener = null;
+        client.removeLocationUpdates(callback);
+    }
+
+    @Override
+    public String name() {
+        return "fused";
+    }
+}
@@ -0,0 +1,102 @@
+package com.miletrackerpro.app;
+
+/**
+ * MileTracker Pro - Geo Math
+ * The one place great-circle distances are computed. Pure Java, static,
+ * allocation-free.
+ *
+ *   haversineMeters      - exact on the sphere at any distance
+ *   equirectangularMeters - flat-earth approximation, one cos and one sqrt;
+ *                          relative error below 1e-7 for segments up to
+ *                          SHORT_SEGMENT_DEGREES at latitudes up to 80°
+ *                          (GeoMathBenchmark checks the bound)
+ *   distanceMeters       - picks the fast path for short segments
+ *   pathLengthMeters     - sums a whole path from primitive arrays,
+ *                          computing cos(lat) once per point
+ *
+ * Callers that walk a path themselves can keep cos(lat) of the previous
+ * point and use the overloads that take it.
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_METERS = 6371000;
+    public static final double METERS_PER_MILE = 1609.344;
+
+    /**
+     * Segments with both latitude and longitude deltas under this (about
+     * 1.1 km of latitude) use the equirectangular path
+     */
+    public static final double SHORT_SEGMENT_DEGREES = 0.01;
+
+    private static final double RADIANS_PER_DEGREE = Math.PI / 180;
+
+    private GeoMath() {}
+
+    public static double cosLatitude(double latitude) {
+        return Math.cos(latitude * RADIANS_PER_DEGREE);
+    }
+
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        return haversineMeters(lat1, lon1, cosLatitude(lat1), lat2, lon2, cosLatitude(lat2));
+    }
+
+    public static double haversineMeters(double lat1, double lon1, double cosLat1,
+                                         double lat2, double lon2, double cosLat2) {
+        double sinDLat = Math.sin((lat2 - lat1) * RADIANS_PER_DEGREE / 2);
+        double sinDLon = Math.sin((lon2 - lon1) * RADIANS_PER_DEGREE / 2);
+        double a = sinDLat * sinDLat + cosLat1 * cosLat2 * sinDLon * sinDLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, a)));
+    }
+
+    public static double equirectangularMeters(double lat1, double lon1, double lat2, double lon2) {
+        return equirectangularMeters(lat1, lon1, cosLatitude(lat1), lat2, lon2, cosLatitude(lat2));
+    }
+
+    /**
+     * Flat-earth distance using the mean of the endpoints' cos(lat). Only
+     * meaningful for short segments - see SHORT_SEGMENT_DEGREES.
+     */
+    public static double equirectangularMeters(double lat1, double lon1, double cosLat1,
+                                               double lat2, double lon2, double cosLat2) {
+        double x = (lon2 - lon1) * (cosLat1 + cosLat2) / 2;
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * RADIANS_PER_DEGREE * EARTH_RADIUS_METERS;
+    }
+
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        return distanceMeters(lat1, lon1, cosLatitude(lat1), lat2, lon2, cosLatitude(lat2));
+    }
+
+    public static double distanceMeters(double lat1, double lon1, double cosLat1,
+                                        double lat2, double lon2, double cosLat2) {
+        if (Math.abs(lat2 - lat1) < SHORT_SEGMENT_DEGREES && Math.abs(lon2 - lon1) < SHORT_SEGMENT_DEGREES) {
+            return equirectangularMeters(lat1, lon1, cosLat1, lat2, lon2, cosLat2);
+        }
+        return haversineMeters(lat1, lon1, cosLat1, lat2, lon2, cosLat2);
+    }
+
+    public static double distanceMiles(double lat1, double lon1, double lat2, double lon2) {
+        return distanceMeters(lat1, lon1, lat2, lon2) / METERS_PER_MILE;
+    }
+
+    /**
+     * Length of the path through points [from, to) of the parallel arrays
+     */
+    public static double pathLengthMeters(double[] latitudes, double[] longitudes, int from, int to) {
+        if (to - from < 2) return 0;
+        double lat1 = latitudes[from];
+        double lon1 = longitudes[from];
+        double cos1 = cosLatitude(lat1);
+        double total = 0;
+        for (int i = from + 1; i < to; i++) {
+            double lat2 = latitudes[i];
+            double lon2 = longitudes[i];
+            double cos2 = cosLatitude(lat2);
+            total += distanceMeters(lat1, lon1, cos1, lat2, lon2, cos2);
+            lat1 = lat2;
+            lon1 = lon2;
+            cos1 = cos2;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,257 @@
+package com.miletrackerpro.app;
+
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * MileTracker Pro - Journal File
+ * Append-only file of length-prefixed, checksummed records.
+ *
+ * Record layout (big-endian):
+ *   int  payloadLength
+ *   byte type
+ *   long key
+ *   int  crc32(type, key, payload)
+ *   byte[payloadLength] payload
+ *
+ * Writes go straight to the OS (they survive a process kill); fsync is
+ * batched by record count and elapsed time so a burst of appends costs
+ * one disk flush instead of one per record.
+ */
+public class JournalFile {
+    private static final String TAG = "JournalFile";
+
+    public static final int HEADER_SIZE = 4 + 1 + 8 + 4;
+    private static final int MAX_PAYLOAD = 4 * 1024 * 1024; // 4 MB sanity limit
+
+    private final File file;
+    private final int syncEveryRecords;
+    private final long syncIntervalMs;
+
+    private FileOutputStream out;
+    private long length;
+    private int unsyncedRecords = 0;
+    private long lastSyncTime = 0;
+
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Callback for scan(); return false to stop early
+     */
+    public interface RecordVisitor {
+        boolean onRecord(long offset, byte type, long key, int payloadLength);
+    }
+
+    public JournalFile(File file, int syncEveryRecords, long syncIntervalMs) {
+        this.file = file;
+        this.syncEveryRecords = Math.max(1, syncEveryRecords);
+        this.syncIntervalMs = syncIntervalMs;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Length of the valid portion of the file
+     */
+    public synchronized long length() {
+        return length;
+    }
+
+    /**
+     * Open for appending. Walks the record headers once and truncates a
+     * torn tail left behind by a crash mid-write.
+     */
+    public synchronized void open(RecordVisitor visitor) throws IOException {
+        if (out != null) return;
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        long validLength = scan(visitor);
+        if (file.exists() && file.length() > validLength) {
+            Log.w(TAG, "Truncating torn tail of " + file.getName() + ": "
+                + (file.length() - validLength) + " bytes");
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            }
+        }
+
+        length = validLength;
+        out = new FileOutputStream(file, true);
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Walk record headers without reading payloads. Returns the length of
+     * the file up to the last complete record.
+     */
+    private long scan(RecordVisitor visitor) throws IOException {
+        if (!file.exists()) return 0;
+
+        long fileLength = file.length();
+        long offset = 0;
+        byte[] headerBytes = new byte[HEADER_SIZE];
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16 * 1024))) {
+            while (offset + HEADER_SIZE <= fileLength) {
+                in.readFully(headerBytes);
+                ByteBuffer buf = ByteBuffer.wrap(headerBytes);
+                int payloadLength = buf.getInt();
+                byte type = buf.get();
+                long key = buf.getLong();
+
+                if (payloadLength < 0 || payloadLength > MAX_PAYLOAD
+                        || offset + HEADER_SIZE + payloadLength > fileLength) {
+                    break; // Torn or corrupt record - everything after it is discarded
+                }
+
+                if (visitor != null && !visitor.onRecord(offset, type, key, payloadLength)) {
+                    return fileLength;
+                }
+
+                long toSkip = payloadLength;
+                while (toSkip > 0) {
+                    long skipped = in.skip(toSkip);
+                    if (skipped <= 0) throw new EOFException();
+                    toSkip -= skipped;
+                }
+                offset += HEADER_SIZE + payloadLength;
+            }
+        } catch (EOFException e) {
+            // Fall through with the last good offset
+        }
+
+        return offset;
+    }
+
+    /**
+     * Append one record. Returns the offset it was written at.
+     */
+    public synchronized long append(byte type, long key, byte[] payload) throws IOException {
+        if (out == null) throw new IOException("Journal not open: " + file.getName());
+        if (payload == null) payload = new byte[0];
+
+        crc.reset();
+        crc.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            crc.update((int) (key >>> shift) & 0xFF);
+        }
+        crc.update(payload, 0, payload.length);
+
+        header.clear();
+        header.putInt(payload.length);
+        header.put(type);
+        header.putLong(key);
+        header.putInt((int) crc.getValue());
+
+        long offset = length;
+        out.write(header.array(), 0, HEADER_SIZE);
+        out.write(payload);
+        length += HEADER_SIZE + payload.length;
+
+        unsyncedRecords++;
+        long now = System.currentTimeMillis();
+        if (unsyncedRecords >= syncEveryRecords || now - lastSyncTime >= syncIntervalMs) {
+            syncLocked(now);
+        }
+        return offset;
+    }
+
+    /**
+     * Force pending appends to disk
+     */
+    public synchronized void sync() {
+        syncLocked(System.currentTimeMillis());
+    }
+
+    private void syncLocked(long now) {
+        if (out == null || unsyncedRecords == 0) return;
+        try {
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.w(TAG, "fsync failed for " + file.getName() + ": " + e.getMessage());
+        }
+        unsyncedRecords = 0;
+        lastSyncTime = now;
+    }
+
+    /**
+     * Read and verify the payload of the record at offset. Returns null if
+     * the checksum does not match.
+     */
+    public byte[] read(long offset) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return read(raf, offset);
+        }
+    }
+
+    /**
+     * Read using a caller-held handle, for paging through several records
+     */
+    public byte[] read(RandomAccessFile raf, long offset) throws IOException {
+        raf.seek(offset);
+        int payloadLength = raf.readInt();
+        byte type = raf.readByte();
+        long key = raf.readLong();
+        int storedCrc = raf.readInt();
+
+        if (payloadLength < 0 || payloadLength > MAX_PAYLOAD) return null;
+        byte[] payload = new byte[payloadLength];
+        raf.readFully(payload);
+
+        CRC32 check = new CRC32();
+        check.update(type);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            check.update((int) (key >>> shift) & 0xFF);
+        }
+        check.update(payload, 0, payload.length);
+        if ((int) check.getValue() != storedCrc) {
+            Log.w(TAG, "Checksum mismatch at offset " + offset + " in " + file.getName());
+            return null;
+        }
+        return payload;
+    }
+
+    /**
+     * Atomically replace this journal with another one (used by compaction).
+     * The replacement must be closed; this journal is reopened afterwards.
+     */
+    public synchronized void replaceWith(File compacted, RecordVisitor visitor) throws IOException {
+        closeLocked();
+        if (!compacted.renameTo(file)) {
+            throw new IOException("Failed to swap compacted journal into place");
+        }
+        length = 0;
+        open(visitor);
+    }
+
+    public synchronized void close() {
+        closeLocked();
+    }
+
+    private void closeLocked() {
+        if (out == null) return;
+        syncLocked(System.currentTimeMillis());
+        try {
+            out.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing " + file.getName() + ": " + e.getMessage());
+        }
+        out = null;
+    }
+}
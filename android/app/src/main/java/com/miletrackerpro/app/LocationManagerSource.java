@@ -0,0 +1,83 @@
+package com.miletrackerpro.app;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.Bundle;
+
+import java.util.Collections;
+
+/**
+ * MileTracker Pro - LocationManager Source
+ * Fallback for devices without Play services. GPS when high accuracy is
+ * requested (network if GPS is off); otherwise network plus the passive
+ * provider, or GPS at the requested interval when network location is off
+ * (GPS-only devices), so a low-accuracy request still gets its own fixes.
+ * Every fix is delivered as it arrives.
+ */
+public class LocationManagerSource implements LocationSource, LocationListener {
+
+    private final LocationManager locationManager;
+    private Listener listener;
+
+    public LocationManagerSource(Context context) {
+        locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+    }
+
+    @Override
+    public void request(long intervalMs, float minDistanceMeters, boolean highAccuracy,
+                        long maxDelayMs, Listener listener) throws SecurityException {
+        this.listener = listener;
+        if (locationManager == null) return;
+        locationManager.removeUpdates(this);
+
+        if (highAccuracy && locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)) {
+            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, intervalMs, minDistanceMeters, this);
+            return;
+        }
+        if (locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER)) {
+            locationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, intervalMs, minDistanceMeters, this);
+        } else if (locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)) {
+            // No network location - passive alone would only ever see other apps' fixes
+            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, intervalMs, minDistanceMeters, this);
+        }
+        // Fixes other apps request anyway, at no extra power cost
+        locationManager.requestLocationUpdates(LocationManager.PASSIVE_PROVIDER, intervalMs, minDistanceMeters, this);
+    }
+
+    @Override
+    public void stop() {
+        listener = null;
+        if (locationManager != null) {
+            locationManager.removeUpdates(this);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "location-manager";
+    }
+
+    @Override
+    public void onLocationChanged(Location location) {
+        Listener current = listener;
+        if (current != null && location != null) {
+            current.onLocations(Collections.singletonList(location));
+        }
+    }
+
+    @Override
+    public void onProviderEnabled(String provider) {}
+
+    @Override
+    public void onProviderDisabled(String provider) {
+        Listener current = listener;
+        if (current != null) {
+            current.onProviderDisabled(provider);
+        }
+    }
+
+    @Override
+    public void onStatusChanged(String provider, int status, Bundle extras) {}
+}
@@ -0,0 +1,126 @@
+package com.miletrackerpro.app;
+
+/**
+ * MileTracker Pro - Location Sampling Scheduler
+ * Picks the location request (interval, minimum distance, batching) from
+ * the trip detection state, so the GPS only runs hard while it matters:
+ *
+ *   IDLE     - GPS 15 s, as before sampling modes existed
+ *   ACQUIRE  - possible trip start: GPS every 2 s until the detector decides
+ *   DRIVING  - GPS 5 s / 10 m, delivered in batches of up to 60 s
+ *   HIGHWAY  - steady fast driving, GPS 15 s / 50 m, batches of up to 2 min
+ *   PAUSED   - stopped mid-trip, GPS 10 s / 20 m, batches of up to 30 s
+ *
+ * Batching (where the location source supports it) lets the CPU sleep
+ * between deliveries once a trip is established; idle and acquire get
+ * every fix immediately so starts are not delayed.
+ *
+ * Moving to a faster mode takes effect at once so a trip start is never
+ * held back; moving to a slower one waits until DOWNGRADE_DEBOUNCE_MS has
+ * passed since the last change, so noisy speeds don't re-register the
+ * listener on every fix. Pure Java - the service applies the modes.
+ *
+ * Every mode uses GPS. Network fixes carry no speed, and a speed estimated
+ * from two of them a minute apart both delays a start and reads their
+ * jitter as driving, so idle keeps the GPS request it always had.
+ */
+public final class LocationSamplingScheduler {
+
+    public static final int MODE_IDLE = 0;
+    public static final int MODE_ACQUIRE = 1;
+    public static final int MODE_DRIVING = 2;
+    public static final int MODE_HIGHWAY = 3;
+    public static final int MODE_PAUSED = 4;
+
+    private static final String[] NAMES = { "idle", "acquire", "driving", "highway", "paused" };
+    private static final long[] INTERVAL_MS = { 15000, 2000, 5000, 15000, 10000 };
+    private static final float[] MIN_DISTANCE_METERS = { 0, 0, 10, 50, 20 };
+    private static final long[] MAX_DELAY_MS = { 0, 0, 60000, 120000, 30000 };
+
+    private static final double HIGHWAY_ENTER_MPH = 50;
+    private static final double HIGHWAY_EXIT_MPH = 40;
+    private static final int HIGHWAY_FIXES = 4; // fixes in a row above HIGHWAY_ENTER_MPH
+
+    // A possible start that doesn't become a trip in this time falls back to idle
+    private static final long ACQUIRE_TIMEOUT_MS = 2 * 60 * 1000;
+    private static final long DOWNGRADE_DEBOUNCE_MS = 30 * 1000;
+
+    private int mode = MODE_IDLE;
+    private long lastChangeTime = 0;
+    private long acquireSince = 0;
+    private int highwayFixes = 0;
+
+    public static long intervalMs(int mode) {
+        return INTERVAL_MS[mode];
+    }
+
+    public static float minDistanceMeters(int mode) {
+        return MIN_DISTANCE_METERS[mode];
+    }
+
+    /**
+     * How long fixes may be held back and delivered as one batch
+     */
+    public static long maxDelayMs(int mode) {
+        return MAX_DELAY_MS[mode];
+    }
+
+    public static String name(int mode) {
+        return NAMES[mode];
+    }
+
+    public int mode() {
+        return mode;
+    }
+
+    /**
+     * Start over in the given mode (e.g. DRIVING for a restored trip)
+     */
+    public void reset(int mode, long now) {
+        this.mode = mode;
+        lastChangeTime = now;
+        acquireSince = mode == MODE_ACQUIRE ? now : 0;
+        highwayFixes = 0;
+    }
+
+    /**
+     * Feed the detector state after each fix. Returns the mode to switch to,
+     * or -1 to keep the current registration.
+     */
+    public int onFix(int detectorState, boolean possibleStart, double speedMph, long now) {
+        int desired = desiredMode(detectorState, possibleStart, speedMph, now);
+        if (desired == mode) return -1;
+
+        boolean faster = INTERVAL_MS[desired] < INTERVAL_MS[mode];
+        if (!faster && now - lastChangeTime < DOWNGRADE_DEBOUNCE_MS) return -1;
+
+        if (desired == MODE_ACQUIRE) acquireSince = now;
+        mode = desired;
+        lastChangeTime = now;
+        return desired;
+    }
+
+    private int desiredMode(int detectorState, boolean possibleStart, double speedMph, long now) {
+        switch (detectorState) {
+            case TripDetectionEngine.STATE_DRIVING:
+                acquireSince = 0;
+                highwayFixes = speedMph >= HIGHWAY_ENTER_MPH ? highwayFixes + 1 : 0;
+                if (mode == MODE_HIGHWAY && speedMph >= HIGHWAY_EXIT_MPH) return MODE_HIGHWAY;
+                return highwayFixes >= HIGHWAY_FIXES ? MODE_HIGHWAY : MODE_DRIVING;
+
+            case TripDetectionEngine.STATE_PAUSED:
+                highwayFixes = 0;
+                return MODE_PAUSED;
+
+            default:
+                highwayFixes = 0;
+                if (possibleStart) {
+                    return MODE_ACQUIRE;
+                }
+                if (mode == MODE_ACQUIRE && now - acquireSince < ACQUIRE_TIMEOUT_MS) {
+                    return MODE_ACQUIRE; // Give the detector time to confirm
+                }
+                return MODE_IDLE;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.miletrackerpro.app;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.GoogleApiAvailability;
+
+import java.util.List;
+
+/**
+ * MileTracker Pro - Location Source
+ * Where BackgroundLocationService gets its fixes from. The fused provider
+ * can hold fixes back and deliver them in batches; the LocationManager
+ * fallback (devices without Play services) delivers one fix at a time.
+ */
+public interface LocationSource {
+
+    interface Listener {
+        /**
+         * One or more fixes, oldest first. Times come from the fixes
+         * themselves - a batch can span minutes.
+         */
+        void onLocations(List<Location> locations);
+
+        void onProviderDisabled(String provider);
+    }
+
+    /**
+     * Replace any current request. highAccuracy selects GPS; maxDelayMs > 0
+     * allows batched delivery.
+     */
+    void request(long intervalMs, float minDistanceMeters, boolean highAccuracy,
+                 long maxDelayMs, Listener listener) throws SecurityException;
+
+    void stop();
+
+    String name();
+
+    final class Factory {
+        private Factory() {}
+
+        public static LocationSource create(Context context) {
+            try {
+                GoogleApiAvailability availability = GoogleApiAvailability.getInstance();
+                if (availability.isGooglePlayServicesAvailable(context) == ConnectionResult.SUCCESS) {
+                    return new FusedLocationSource(context);
+                }
+            } catch (RuntimeException e) {
+                // Play services missing or broken - fall through
+            }
+            return new LocationManagerSource(context);
+        }
+    }
+}
@@ -10,20 +10,34 @@ import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 
 import org.json.JSONObject;
-import org.json.JSONException;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MileTrackerGPSModule extends ReactContextBaseJavaModule {
     private static final String MODULE_NAME = "MileTrackerGPS";
     private ReactApplicationContext reactContext;
     
+    // Journal reads and removes - keep them off the native modules thread
+    private final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+    
     public MileTrackerGPSModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
+        BridgeEventDispatcher.getInstance(reactContext).attach(reactContext);
+    }
+    
+    @Override
+    public void invalidate() {
+        BridgeEventDispatcher.getInstance(reactContext).detach(reactContext);
+        queryExecutor.shutdown();
+        super.invalidate();
     }
     
     @NonNull
@@ -104,47 +118,162 @@ public class MileTrackerGPSModule extends ReactContextBaseJavaModule {
         }
     }
     
-    // Send events to React Native
-    public static void sendLocationUpdate(ReactApplicationContext reactContext, 
-                                        double latitude, double longitude, 
-                                        double speed, float accuracy) {
-        if (reactContext != null && reactContext.hasActiveCatalystInstance()) {
-            WritableMap params = Arguments.createMap();
-            params.putDouble("latitude", latitude);
-            params.putDouble("longitude", longitude);
-            params.putDouble("speed", speed);
-            params.putDouble("accuracy", accuracy);
-            params.putDouble("timestamp", System.currentTimeMillis());
-            
-            reactContext
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit("MileTrackerLocationUpdate", params);
-        }
+    @ReactMethod
+    public void getCompletedTrips(double cursor, int limit, Promise promise) {
+        queryExecutor.execute(() -> {
+            try {
+                TripJournal journal = TripJournal.getInstance(getReactApplicationContext());
+                TripJournal.Page page = journal.readPage((long) cursor, limit);
+                
+                WritableArray trips = Arguments.createArray();
+                for (String tripData : page.trips) {
+                    trips.pushString(tripData);
+                }
+                
+                WritableMap result = Arguments.createMap();
+                result.putArray("trips", trips);
+                result.putDouble("nextCursor", page.nextCursor);
+                result.putBoolean("hasMore", page.hasMore);
+                
+                promise.resolve(result);
+            } catch (Exception e) {
+                promise.reject("GPS_ERROR", "Failed to read completed trips: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Trips started in [from, to) (0 = open-ended) in the given category
+     * (empty = any), newest first and without the encoded path. Pass
+     * cursor 0 for the first page, then the returned nextCursor.
+     */
+    @ReactMethod
+    public void queryTrips(double from, double to, String category, double cursor, int limit, Promise promise) {
+        queryExecutor.execute(() -> {
+            try {
+                TripJournal journal = TripJournal.getInstance(getReactApplicationContext());
+                TripJournal.Query query = new TripJournal.Query((long) from, (long) to,
+                    category == null || category.isEmpty() ? null : category);
+                TripJournal.Page page = journal.query(query, (long) cursor, limit);
+                
+                WritableArray trips = Arguments.createArray();
+                for (String tripData : page.trips) {
+                    trips.pushString(tripData);
+                }
+                
+                WritableMap result = Arguments.createMap();
+                result.putArray("trips", trips);
+                result.putDouble("nextCursor", page.nextCursor);
+                result.putBoolean("hasMore", page.hasMore);
+                
+                promise.resolve(result);
+            } catch (Exception e) {
+                promise.reject("GPS_ERROR", "Failed to query trips: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Totals per "category", "day", "week" or "month" over a stats period
+     * ("Month", "Quarter", "YTD"; anything else is all time)
+     */
+    @ReactMethod
+    public void aggregate(String groupBy, String period, Promise promise) {
+        queryExecutor.execute(() -> {
+            try {
+                TripJournal journal = TripJournal.getInstance(getReactApplicationContext());
+                long from = TripJournal.periodStart(period, System.currentTimeMillis());
+                List<TripJournal.Bucket> buckets = journal.aggregate(groupBy, new TripJournal.Query(from, 0, null));
+                
+                WritableArray result = Arguments.createArray();
+                for (TripJournal.Bucket bucket : buckets) {
+                    WritableMap row = Arguments.createMap();
+                    row.putString("key", bucket.key);
+                    row.putInt("trips", bucket.trips);
+                    row.putDouble("miles", bucket.miles);
+                    row.putDouble("durationMs", bucket.durationMs);
+                    result.pushMap(row);
+                }
+                
+                promise.resolve(result);
+            } catch (Exception e) {
+                promise.reject("GPS_ERROR", "Failed to aggregate trips: " + e.getMessage());
+            }
+        });
+    }
+    
+    @ReactMethod
+    public void getTrip(double tripId, Promise promise) {
+        queryExecutor.execute(() -> {
+            try {
+                TripJournal journal = TripJournal.getInstance(getReactApplicationContext());
+                JSONObject trip = journal.getTrip((long) tripId);
+                promise.resolve(trip != null ? trip.toString() : null);
+            } catch (Exception e) {
+                promise.reject("GPS_ERROR", "Failed to read trip: " + e.getMessage());
+            }
+        });
     }
     
-    public static void sendTripEvent(ReactApplicationContext reactContext, 
-                                   String eventType, String tripData) {
-        if (reactContext != null && reactContext.hasActiveCatalystInstance()) {
-            WritableMap params = Arguments.createMap();
-            params.putString("eventType", eventType);
-            params.putString("tripData", tripData);
-            params.putDouble("timestamp", System.currentTimeMillis());
+    @ReactMethod
+    public void removeCompletedTrip(double tripId, Promise promise) {
+        // Same executor as the queries, so a page read after the remove doesn't see the trip
+        queryExecutor.execute(() -> {
+            try {
+                TripJournal journal = TripJournal.getInstance(getReactApplicationContext());
+                promise.resolve(journal.remove((long) tripId));
+            } catch (Exception e) {
+                promise.reject("GPS_ERROR", "Failed to remove completed trip: " + e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Cumulative background wake lock hold time per reason ("trip",
+     * "fixBatch") and in total. Meant for a diagnostics screen; the JS app
+     * does not have one yet, so for now the same totals are in logcat
+     * (WakeLockManager) whenever tracking stops.
+     */
+    @ReactMethod
+    public void getWakeLockStats(Promise promise) {
+        try {
+            SharedPreferences prefs = getReactApplicationContext()
+                .getSharedPreferences("MileTrackerGPS", Context.MODE_PRIVATE);
             
-            reactContext
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit("MileTrackerTripEvent", params);
+            WritableMap result = Arguments.createMap();
+            for (WakeLockManager.Stats stats : WakeLockManager.readStats(prefs)) {
+                WritableMap row = Arguments.createMap();
+                row.putDouble("heldMs", stats.heldMs);
+                row.putDouble("acquisitions", stats.acquisitions);
+                result.putMap(stats.reason, row);
+            }
+            result.putDouble("since", WakeLockManager.statsSince(prefs));
+            
+            promise.resolve(result);
+        } catch (Exception e) {
+            promise.reject("GPS_ERROR", "Failed to get wake lock stats: " + e.getMessage());
         }
     }
     
-    public static void sendStatusUpdate(ReactApplicationContext reactContext, String status) {
-        if (reactContext != null && reactContext.hasActiveCatalystInstance()) {
-            WritableMap params = Arguments.createMap();
-            params.putString("status", status);
-            params.putDouble("timestamp", System.currentTimeMillis());
-            
-            reactContext
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit("MileTrackerStatusUpdate", params);
+    @ReactMethod
+    public void setLocationUpdateInterval(double intervalMs, Promise promise) {
+        try {
+            BridgeEventDispatcher.getInstance(getReactApplicationContext()).setLocationInterval((long) intervalMs);
+            promise.resolve("Location update interval updated");
+        } catch (Exception e) {
+            promise.reject("GPS_ERROR", "Failed to set location update interval: " + e.getMessage());
         }
     }
+    
+    // NativeEventEmitter calls these; the first subscription means JS is
+    // ready for events that were held while it was not running
+    @ReactMethod
+    public void addListener(String eventName) {
+        BridgeEventDispatcher.getInstance(getReactApplicationContext()).replayPending();
+    }
+    
+    @ReactMethod
+    public void removeListeners(double count) {
+        // Nothing to release - events are dropped or spooled by the dispatcher
+    }
 }
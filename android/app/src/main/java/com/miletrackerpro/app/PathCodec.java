@@ -0,0 +1,189 @@
+package com.miletrackerpro.app;
+
+import java.util.Arrays;
+
+/**
+ * MileTracker Pro - Path Codec
+ * Compact binary encoding for GPS trip paths.
+ *
+ * Each point is stored as deltas from the previous one:
+ *   latitude, longitude  - fixed point (1e-6 degrees, ~11 cm), zig-zag varint
+ *   speed                - quantized to 0.1 mph, unsigned varint
+ *   timestamp            - milliseconds, zig-zag varint
+ *
+ * A typical driving fix takes 6-9 bytes instead of a ~90 byte JSONObject.
+ * Writer appends in place and Reader walks the bytes without allocating,
+ * so distance recomputation over a long trip creates no garbage.
+ */
+public final class PathCodec {
+
+    public static final int FORMAT_VERSION = 1;
+    public static final String FORMAT_NAME = "mtp-delta-v1";
+
+    private static final double COORD_SCALE = 1e6;
+    private static final double SPEED_SCALE = 10.0;
+
+    private PathCodec() {}
+
+    /**
+     * Streaming encoder. Points are appended to a growable byte buffer.
+     */
+    public static final class Writer {
+        private byte[] buffer;
+        private int length = 0;
+        private int pointCount = 0;
+
+        private long lastLat = 0;
+        private long lastLon = 0;
+        private long lastTime = 0;
+
+        public Writer() {
+            this(256);
+        }
+
+        public Writer(int initialCapacity) {
+            buffer = new byte[Math.max(16, initialCapacity)];
+            buffer[length++] = (byte) FORMAT_VERSION;
+        }
+
+        public void add(double latitude, double longitude, double speedMph, long timestamp) {
+            long lat = Math.round(latitude * COORD_SCALE);
+            long lon = Math.round(longitude * COORD_SCALE);
+            long speed = Math.max(0, Math.round(speedMph * SPEED_SCALE));
+
+            ensureCapacity(4 * 10);
+            writeVarLong(zigZag(lat - lastLat));
+            writeVarLong(zigZag(lon - lastLon));
+            writeVarLong(speed);
+            writeVarLong(zigZag(timestamp - lastTime));
+
+            lastLat = lat;
+            lastLon = lon;
+            lastTime = timestamp;
+            pointCount++;
+        }
+
+        public int pointCount() {
+            return pointCount;
+        }
+
+        public int byteLength() {
+            return length;
+        }
+
+        /**
+         * Backing buffer; only the first byteLength() bytes are valid
+         */
+        public byte[] buffer() {
+            return buffer;
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        public void clear() {
+            length = 1;
+            pointCount = 0;
+            lastLat = 0;
+            lastLon = 0;
+            lastTime = 0;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+    }
+
+    /**
+     * Streaming decoder. Call next() and read the current point's fields;
+     * a Reader can be reset() and reused.
+     */
+    public static final class Reader {
+        private byte[] data;
+        private int length;
+        private int position;
+
+        private long lat;
+        private long lon;
+        private long speed;
+        private long time;
+
+        public Reader(byte[] data) {
+            this(data, data.length);
+        }
+
+        public Reader(byte[] data, int length) {
+            reset(data, length);
+        }
+
+        public void reset(byte[] data, int length) {
+            if (length > 0 && data[0] != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported path format version: " + data[0]);
+            }
+            this.data = data;
+            this.length = length;
+            this.position = length > 0 ? 1 : 0;
+            lat = 0;
+            lon = 0;
+            speed = 0;
+            time = 0;
+        }
+
+        public boolean next() {
+            if (position >= length) return false;
+            lat += unZigZag(readVarLong());
+            lon += unZigZag(readVarLong());
+            speed = readVarLong();
+            time += unZigZag(readVarLong());
+            return true;
+        }
+
+        public double latitude() {
+            return lat / COORD_SCALE;
+        }
+
+        public double longitude() {
+            return lon / COORD_SCALE;
+        }
+
+        public double speedMph() {
+            return speed / SPEED_SCALE;
+        }
+
+        public long timestamp() {
+            return time;
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            while (position < length) {
+                byte b = data[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+                shift += 7;
+                if (shift > 63) break;
+            }
+            throw new IllegalStateException("Truncated path data at byte " + position);
+        }
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,141 @@
+package com.miletrackerpro.app;
+
+/**
+ * MileTracker Pro - Path Simplifier
+ * Online line simplification for trip paths. Fixes since the last kept
+ * point (the anchor) wait in a window; when a new fix would leave any of
+ * them more than toleranceMeters off the straight line from the anchor,
+ * the previous fix is kept and becomes the new anchor. A straight highway
+ * stretch collapses to its two ends, a turn keeps its corner.
+ *
+ * The window is capped at maxWindow fixes, so each add() does bounded
+ * work and a kept point is never more than maxWindow fixes old. Kept
+ * points go to a Sink in order; flush() emits the pending last fix when
+ * the trip ends.
+ *
+ * Simplification only thins the stored geometry - trip distance comes
+ * from TripDistanceFilter, which sees every fix.
+ */
+public final class PathSimplifier {
+
+    public interface Sink {
+        void onPoint(double latitude, double longitude, double speedMph, long timestamp);
+    }
+
+    /** About GPS accuracy - tighter keeps mostly noise */
+    public static final double DEFAULT_TOLERANCE_METERS = 10;
+    /** 5 minutes of fixes at the driving sampling rate */
+    public static final int DEFAULT_MAX_WINDOW = 60;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+
+    private final double tolerance;
+    private final Sink sink;
+
+    private boolean hasAnchor = false;
+    private double anchorLatitude;
+    private double anchorLongitude;
+    private double metersPerDegreeLon;
+
+    // Fixes after the anchor, in meters east / north of it
+    private final double[] windowX;
+    private final double[] windowY;
+    private int windowSize = 0;
+
+    // Most recent fix, not yet emitted
+    private double lastLatitude;
+    private double lastLongitude;
+    private double lastSpeedMph;
+    private long lastTimestamp;
+
+    public PathSimplifier(Sink sink) {
+        this(DEFAULT_TOLERANCE_METERS, DEFAULT_MAX_WINDOW, sink);
+    }
+
+    public PathSimplifier(double toleranceMeters, int maxWindow, Sink sink) {
+        if (maxWindow < 1) throw new IllegalArgumentException("maxWindow must be at least 1");
+        this.tolerance = toleranceMeters;
+        this.sink = sink;
+        windowX = new double[maxWindow];
+        windowY = new double[maxWindow];
+    }
+
+    public void add(double latitude, double longitude, double speedMph, long timestamp) {
+        if (!hasAnchor) {
+            setAnchor(latitude, longitude);
+            sink.onPoint(latitude, longitude, speedMph, timestamp);
+            return;
+        }
+
+        double x = (longitude - anchorLongitude) * metersPerDegreeLon;
+        double y = (latitude - anchorLatitude) * METERS_PER_DEGREE;
+        if (windowSize > 0 && (windowSize == windowX.length || deviates(x, y))) {
+            emitLast();
+            x = (longitude - anchorLongitude) * metersPerDegreeLon;
+            y = (latitude - anchorLatitude) * METERS_PER_DEGREE;
+        }
+
+        windowX[windowSize] = x;
+        windowY[windowSize] = y;
+        windowSize++;
+        lastLatitude = latitude;
+        lastLongitude = longitude;
+        lastSpeedMph = speedMph;
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Emit the pending last fix, if any (end of trip)
+     */
+    public void flush() {
+        if (windowSize > 0) emitLast();
+    }
+
+    /**
+     * Continue after a point that is already in the output (a restored path)
+     */
+    public void resumeFrom(double latitude, double longitude) {
+        setAnchor(latitude, longitude);
+    }
+
+    public void clear() {
+        hasAnchor = false;
+        windowSize = 0;
+    }
+
+    /**
+     * Fixes received but not yet emitted or dropped
+     */
+    public int pending() {
+        return windowSize;
+    }
+
+    private void emitLast() {
+        sink.onPoint(lastLatitude, lastLongitude, lastSpeedMph, lastTimestamp);
+        setAnchor(lastLatitude, lastLongitude);
+    }
+
+    private void setAnchor(double latitude, double longitude) {
+        hasAnchor = true;
+        anchorLatitude = latitude;
+        anchorLongitude = longitude;
+        metersPerDegreeLon = METERS_PER_DEGREE * GeoMath.cosLatitude(latitude);
+        windowSize = 0;
+    }
+
+    // Would any windowed fix be off the anchor -> (x, y) segment by more than the tolerance?
+    private boolean deviates(double x, double y) {
+        double lengthSquared = x * x + y * y;
+        double toleranceSquared = tolerance * tolerance;
+        for (int i = 0; i < windowSize; i++) {
+            double px = windowX[i];
+            double py = windowY[i];
+            double t = lengthSquared > 0 ? (px * x + py * y) / lengthSquared : 0;
+            t = t < 0 ? 0 : (t > 1 ? 1 : t);
+            double dx = px - t * x;
+            double dy = py - t * y;
+            if (dx * dx + dy * dy > toleranceSquared) return true;
+        }
+        return false;
+    }
+}
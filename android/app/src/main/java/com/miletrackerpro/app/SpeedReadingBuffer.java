@@ -0,0 +1,202 @@
+package com.miletrackerpro.app;
+
+/**
+ * MileTracker Pro - Speed Reading Buffer
+ * Fixed-capacity ring buffer of recent GPS fixes, stored as parallel
+ * primitive arrays.
+ *
+ * Windowed statistics (threshold counts, averages over accurate fixes) are
+ * registered up front and kept as running values: each add() adds the new
+ * fix to every window and evicts the fix that just fell out of it. A fix is
+ * processed in O(#windows) with no allocation.
+ */
+public final class SpeedReadingBuffer {
+
+    private static final int KIND_SPEED_ABOVE = 0;
+    private static final int KIND_SPEED_BELOW = 1;
+    private static final int KIND_ACCURATE_SPEED = 2;
+
+    private final int capacity;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] speeds;
+    private final long[] timestamps;
+    private final float[] accuracies;
+
+    private int head = 0; // next slot to write
+    private int size = 0;
+
+    private Window[] windows = new Window[0];
+
+    /**
+     * Running statistic over the most recent length fixes
+     */
+    public final class Window {
+        private final int length;
+        private final int kind;
+        private final double threshold;
+        private int count = 0;
+        private double sum = 0;
+
+        private Window(int length, int kind, double threshold) {
+            this.length = length;
+            this.kind = kind;
+            this.threshold = threshold;
+        }
+
+        /**
+         * Fixes in the window matching the condition
+         */
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Average speed of matching fixes (accurate-speed windows), 0 if none
+         */
+        public double average() {
+            return count > 0 ? sum / count : 0;
+        }
+
+        private boolean matches(double speed, float accuracy) {
+            switch (kind) {
+                case KIND_SPEED_ABOVE: return speed > threshold;
+                case KIND_SPEED_BELOW: return speed < threshold;
+                default: return accuracy < threshold;
+            }
+        }
+
+        private void include(double speed, float accuracy) {
+            if (matches(speed, accuracy)) {
+                count++;
+                sum += speed;
+            }
+        }
+
+        private void evict(double speed, float accuracy) {
+            if (matches(speed, accuracy)) {
+                count--;
+                // Reset exactly when empty so floating-point drift can't accumulate
+                sum = count == 0 ? 0 : sum - speed;
+            }
+        }
+
+        private void reset() {
+            count = 0;
+            sum = 0;
+        }
+    }
+
+    public SpeedReadingBuffer(int capacity) {
+        this.capacity = capacity;
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        speeds = new double[capacity];
+        timestamps = new long[capacity];
+        accuracies = new float[capacity];
+    }
+
+    /**
+     * Count of the last length fixes with speed above threshold
+     */
+    public Window speedAbove(int length, double thresholdMph) {
+        return register(new Window(length, KIND_SPEED_ABOVE, thresholdMph));
+    }
+
+    /**
+     * Count of the last length fixes with speed below threshold
+     */
+    public Window speedBelow(int length, double thresholdMph) {
+        return register(new Window(length, KIND_SPEED_BELOW, thresholdMph));
+    }
+
+    /**
+     * Average speed of the last length fixes whose accuracy is under maxAccuracy
+     */
+    public Window accurateSpeed(int length, float maxAccuracyMeters) {
+        return register(new Window(length, KIND_ACCURATE_SPEED, maxAccuracyMeters));
+    }
+
+    private Window register(Window window) {
+        if (window.length < 1 || window.length > capacity) {
+            throw new IllegalArgumentException("Window length must be 1.." + capacity);
+        }
+        Window[] grown = new Window[windows.length + 1];
+        System.arraycopy(windows, 0, grown, 0, windows.length);
+        grown[windows.length] = window;
+        windows = grown;
+
+        // Seed from fixes already buffered
+        for (int i = Math.max(0, size - window.length); i < size; i++) {
+            int slot = slotOf(i);
+            window.include(speeds[slot], accuracies[slot]);
+        }
+        return window;
+    }
+
+    public void add(double latitude, double longitude, double speedMph, long timestamp, float accuracy) {
+        for (Window window : windows) {
+            if (size >= window.length) {
+                int leaving = (head - window.length + capacity) % capacity;
+                window.evict(speeds[leaving], accuracies[leaving]);
+            }
+            window.include(speedMph, accuracy);
+        }
+
+        latitudes[head] = latitude;
+        longitudes[head] = longitude;
+        speeds[head] = speedMph;
+        timestamps[head] = timestamp;
+        accuracies[head] = accuracy;
+
+        head = (head + 1) % capacity;
+        if (size < capacity) size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        for (Window window : windows) {
+            window.reset();
+        }
+    }
+
+    // Accessors for the most recent fix
+
+    public double latestLatitude() {
+        return latitudes[latestSlot()];
+    }
+
+    public double latestLongitude() {
+        return longitudes[latestSlot()];
+    }
+
+    public double latestSpeedMph() {
+        return speeds[latestSlot()];
+    }
+
+    public long latestTimestamp() {
+        return timestamps[latestSlot()];
+    }
+
+    public float latestAccuracy() {
+        return accuracies[latestSlot()];
+    }
+
+    private int latestSlot() {
+        return (head - 1 + capacity) % capacity;
+    }
+
+    // Slot of the i-th buffered fix, oldest first
+    private int slotOf(int i) {
+        return (head - size + i + capacity) % capacity;
+    }
+}
@@ -0,0 +1,295 @@
+package com.miletrackerpro.app;
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MileTracker Pro - Trip Checkpoint
+ * Crash-safe log of the trip currently being recorded.
+ *
+ * begin() starts a fresh file holding the trip header; path points are
+ * buffered and appended as small delta-encoded chunks every N fixes or T
+ * seconds. Nothing is ever rewritten, so a checkpoint costs one short
+ * append no matter how long the trip is. clear() deletes the file when
+ * the trip ends; if the process dies first, restore() hands the header
+ * and path back on the next start.
+ *
+ * The stored path is simplified and carries no accuracy, so distance and
+ * stopped time can't be rebuilt from it faithfully. The caller's running
+ * totals (setTotals()) go into a small record ahead of each chunk, and
+ * restore() returns the latest ones as they were.
+ */
+public class TripCheckpoint {
+    private static final String TAG = "TripCheckpoint";
+
+    static final byte RECORD_HEADER = 1;
+    static final byte RECORD_POINTS = 2;
+    static final byte RECORD_TOTALS = 3;
+    private static final int TOTALS_BYTES = 24;
+
+    // Appends already survive a process kill; fsync only guards against power loss
+    private static final int SYNC_EVERY_RECORDS = 4;
+    private static final long SYNC_INTERVAL_MS = 2 * 60 * 1000;
+
+    private final File file;
+    private final int flushEveryPoints;
+    private final long flushIntervalMs;
+
+    private JournalFile journal;
+    private long tripId = 0;
+    private final PathCodec.Writer pending = new PathCodec.Writer(128);
+    private long lastFlushTime = 0;
+
+    private double distanceMeters = 0;
+    private long completedPauseMs = 0;
+    private long pauseStartTime = 0;
+    private boolean totalsChanged = false;
+
+    /**
+     * A trip recovered from disk: its last header, every checkpointed point
+     * and the last totals written
+     */
+    public static class Restored {
+        public final long tripId;
+        public final JSONObject header;
+        public final PathCodec.Writer path;
+        public final double distanceMeters;
+        public final long completedPauseMs;
+        public final long pauseStartTime; // 0 if not stopped
+
+        Restored(long tripId, JSONObject header, PathCodec.Writer path,
+                 double distanceMeters, long completedPauseMs, long pauseStartTime) {
+            this.tripId = tripId;
+            this.header = header;
+            this.path = path;
+            this.distanceMeters = distanceMeters;
+            this.completedPauseMs = completedPauseMs;
+            this.pauseStartTime = pauseStartTime;
+        }
+    }
+
+    public TripCheckpoint(File file, int flushEveryPoints, long flushIntervalMs) {
+        this.file = file;
+        this.flushEveryPoints = Math.max(1, flushEveryPoints);
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public synchronized boolean isActive() {
+        return journal != null;
+    }
+
+    /**
+     * Start checkpointing a new trip, discarding any previous checkpoint
+     */
+    public synchronized void begin(long tripId, JSONObject header) throws IOException {
+        closeJournal();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Failed to remove old checkpoint " + file.getName());
+        }
+
+        this.tripId = tripId;
+        pending.clear();
+        resetTotals();
+        journal = new JournalFile(file, SYNC_EVERY_RECORDS, SYNC_INTERVAL_MS);
+        journal.open(null);
+        writeHeader(header);
+        journal.sync();
+        lastFlushTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Record a changed header (e.g. once the start address resolves).
+     * Restore uses the most recent one.
+     */
+    public synchronized void updateHeader(JSONObject header) throws IOException {
+        if (journal == null) return;
+        writeHeader(header);
+    }
+
+    /**
+     * Record the trip's running distance and stopped time (a stop in
+     * progress since pauseStartTime, 0 if none). Written with the next
+     * chunk, so call it as often as they change.
+     */
+    public synchronized void setTotals(double distanceMeters, long completedPauseMs, long pauseStartTime) {
+        if (distanceMeters == this.distanceMeters && completedPauseMs == this.completedPauseMs
+                && pauseStartTime == this.pauseStartTime) {
+            return;
+        }
+        this.distanceMeters = distanceMeters;
+        this.completedPauseMs = completedPauseMs;
+        this.pauseStartTime = pauseStartTime;
+        totalsChanged = true;
+    }
+
+    /**
+     * Buffer a path point; writes a chunk once enough points or time have
+     * accumulated
+     */
+    public synchronized void addPoint(double latitude, double longitude, double speedMph, long timestamp) throws IOException {
+        if (journal == null) return;
+        pending.add(latitude, longitude, speedMph, timestamp);
+
+        long now = System.currentTimeMillis();
+        if (pending.pointCount() >= flushEveryPoints || now - lastFlushTime >= flushIntervalMs) {
+            flushLocked(now);
+        }
+    }
+
+    /**
+     * Write buffered points now (e.g. when the app goes to the background)
+     */
+    public synchronized void flush() throws IOException {
+        flushLocked(System.currentTimeMillis());
+        if (journal != null) journal.sync();
+    }
+
+    /**
+     * The trip ended normally - drop the checkpoint
+     */
+    public synchronized void clear() {
+        closeJournal();
+        pending.clear();
+        resetTotals();
+        tripId = 0;
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete checkpoint " + file.getName());
+        }
+    }
+
+    /**
+     * Load a checkpoint left behind by a previous process. Returns null if
+     * there is none. Checkpointing continues on the same file afterwards.
+     */
+    public synchronized Restored restore() {
+        if (journal != null || !file.exists()) return null;
+
+        final List<long[]> records = new ArrayList<>();
+        JournalFile existing = new JournalFile(file, SYNC_EVERY_RECORDS, SYNC_INTERVAL_MS);
+        try {
+            existing.open((offset, type, key, payloadLength) -> {
+                records.add(new long[] { offset, type, key });
+                return true;
+            });
+
+            JSONObject header = null;
+            long restoredId = 0;
+            PathCodec.Writer path = new PathCodec.Writer();
+            PathCodec.Reader reader = new PathCodec.Reader(new byte[0]);
+            boolean hasTotals = false;
+            double restoredDistance = 0;
+            long restoredPauseMs = 0;
+            long restoredPauseStart = 0;
+
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+                for (long[] record : records) {
+                    byte[] payload = existing.read(raf, record[0]);
+                    if (payload == null) break; // Corrupt record - keep what came before it
+
+                    if (record[1] == RECORD_HEADER) {
+                        header = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+                        restoredId = record[2];
+                    } else if (record[1] == RECORD_POINTS && header != null) {
+                        reader.reset(payload, payload.length);
+                        while (reader.next()) {
+                            path.add(reader.latitude(), reader.longitude(), reader.speedMph(), reader.timestamp());
+                        }
+                    } else if (record[1] == RECORD_TOTALS && header != null && payload.length == TOTALS_BYTES) {
+                        ByteBuffer totals = ByteBuffer.wrap(payload);
+                        restoredDistance = totals.getDouble();
+                        restoredPauseMs = totals.getLong();
+                        restoredPauseStart = totals.getLong();
+                        hasTotals = true;
+                    }
+                }
+            }
+
+            if (header == null) {
+                existing.close();
+                file.delete();
+                return null;
+            }
+
+            if (!hasTotals) {
+                // Written before the first chunk - only the path to go on
+                restoredDistance = pathLengthMeters(path);
+            }
+
+            journal = existing;
+            tripId = restoredId;
+            pending.clear();
+            distanceMeters = restoredDistance;
+            completedPauseMs = restoredPauseMs;
+            pauseStartTime = restoredPauseStart;
+            totalsChanged = false;
+            lastFlushTime = System.currentTimeMillis();
+            Log.d(TAG, "Restored trip " + restoredId + " with " + path.pointCount() + " points");
+            return new Restored(restoredId, header, path, restoredDistance, restoredPauseMs, restoredPauseStart);
+
+        } catch (IOException | JSONException | IllegalArgumentException | IllegalStateException e) {
+            Log.e(TAG, "Discarding unreadable checkpoint: " + e.getMessage(), e);
+            existing.close();
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeHeader(JSONObject header) throws IOException {
+        journal.append(RECORD_HEADER, tripId, header.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Totals go first: if the process dies between the two appends, the
+    // restored distance is a chunk ahead of the path rather than behind it
+    private void flushLocked(long now) throws IOException {
+        lastFlushTime = now;
+        if (journal == null) return;
+        if (totalsChanged) {
+            ByteBuffer totals = ByteBuffer.allocate(TOTALS_BYTES);
+            totals.putDouble(distanceMeters).putLong(completedPauseMs).putLong(pauseStartTime);
+            journal.append(RECORD_TOTALS, tripId, totals.array());
+            totalsChanged = false;
+        }
+        if (pending.pointCount() == 0) return;
+        journal.append(RECORD_POINTS, tripId, pending.toByteArray());
+        pending.clear();
+    }
+
+    private void resetTotals() {
+        distanceMeters = 0;
+        completedPauseMs = 0;
+        pauseStartTime = 0;
+        totalsChanged = false;
+    }
+
+    private static double pathLengthMeters(PathCodec.Writer path) {
+        PathCodec.Reader reader = new PathCodec.Reader(path.buffer(), path.byteLength());
+        double meters = 0;
+        double lastLat = Double.NaN;
+        double lastLon = 0;
+        while (reader.next()) {
+            if (!Double.isNaN(lastLat)) {
+                meters += GeoMath.distanceMeters(lastLat, lastLon, reader.latitude(), reader.longitude());
+            }
+            lastLat = reader.latitude();
+            lastLon = reader.longitude();
+        }
+        return meters;
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.miletrackerpro.app;
+
+/**
+ * MileTracker Pro - Trip Detection Engine
+ * State machine that turns GPS fixes into trip start / pause / resume / end
+ * events. Shared by the foreground activity and BackgroundLocationService,
+ * each with its own Profile of thresholds.
+ *
+ * Pure Java: primitives in, an event code out, event details read from
+ * accessors. Speed windows are running counts over a SpeedReadingBuffer, so
+ * onFix() is constant time and allocates nothing.
+ */
+public final class TripDetectionEngine {
+
+    public static final int EVENT_NONE = 0;
+    public static final int EVENT_TRIP_STARTED = 1;
+    public static final int EVENT_TRIP_PAUSED = 2;
+    public static final int EVENT_TRIP_RESUMED = 3;
+    public static final int EVENT_TRIP_ENDED = 4;
+    /** Trip ended at the pause point and a new one started at this fix */
+    public static final int EVENT_TRIP_SPLIT = 5;
+
+    public static final int STATE_IDLE = 0;
+    public static final int STATE_DRIVING = 1;
+    public static final int STATE_PAUSED = 2;
+
+    /**
+     * Detection thresholds. "k of the last n fixes" windows with k == n mean
+     * consecutive fixes.
+     *
+     * With streaks set, the windows are replaced by the foreground
+     * activity's original counters: a fix at or above the start speed adds
+     * to the moving run and clears the stopped run, one at or below the stop
+     * speed during a trip does the opposite, and anything between the two
+     * leaves both alone. The pause timeout is then only checked on stop-speed
+     * fixes. Without it, comparisons are strict (above / below), as the
+     * service has always used.
+     */
+    public static final class Profile {
+        public final double startSpeedMph;
+        public final int startReadings;
+        public final int startWindow;
+        public final double stopSpeedMph;
+        public final int stopReadings;
+        public final int stopWindow;
+        public final int stopConfirmations; // fixes in a row that must satisfy the stop window
+        public final int averageWindow;     // 0 disables the average-speed gate
+        public final float maxAccuracyMeters;
+        public final long pauseTimeoutMs;   // 0 ends the trip as soon as the stop is confirmed
+        public final double resumeRadiusMiles;
+        public final long maxTripMs;        // 0 for no limit
+        public final double minTripMiles;   // shorter trips are discarded by the caller
+        public final boolean streaks;       // inclusive run counters instead of windows
+
+        public Profile(double startSpeedMph, int startReadings, int startWindow,
+                       double stopSpeedMph, int stopReadings, int stopWindow, int stopConfirmations,
+                       int averageWindow, float maxAccuracyMeters,
+                       long pauseTimeoutMs, double resumeRadiusMiles, long maxTripMs, double minTripMiles,
+                       boolean streaks) {
+            if (startReadings < 1 || startReadings > startWindow || stopReadings < 1 || stopReadings > stopWindow) {
+                throw new IllegalArgumentException("Window readings must be 1..window length");
+            }
+            this.startSpeedMph = startSpeedMph;
+            this.startReadings = startReadings;
+            this.startWindow = startWindow;
+            this.stopSpeedMph = stopSpeedMph;
+            this.stopReadings = stopReadings;
+            this.stopWindow = stopWindow;
+            this.stopConfirmations = Math.max(1, stopConfirmations);
+            this.averageWindow = averageWindow;
+            this.maxAccuracyMeters = maxAccuracyMeters;
+            this.pauseTimeoutMs = pauseTimeoutMs;
+            this.resumeRadiusMiles = resumeRadiusMiles;
+            this.maxTripMs = maxTripMs;
+            this.minTripMiles = minTripMiles;
+            this.streaks = streaks;
+        }
+
+        int bufferCapacity() {
+            return Math.max(averageWindow, Math.max(startWindow, stopWindow));
+        }
+    }
+
+    /**
+     * Foreground activity: 3 fixes at 4.6+ mph start a trip, 4 at 2 mph or
+     * less pause it, and 8 minutes paused ends it; fixes between 2 and 4.6
+     * mph neither add to nor break a run. Moving on more than 0.05 mi from
+     * the pause point splits it into a new trip. Trips under 0.1 mi are not
+     * kept.
+     */
+    public static final Profile ACTIVITY_PROFILE = new Profile(
+        4.6, 3, 3,
+        2.0, 4, 4, 1,
+        0, 0f,
+        8 * 60 * 1000, 0.05, 0, 0.1,
+        true);
+
+    /**
+     * Background service: 2 of the last 3 fixes above 8 mph with the average
+     * of the last 5 accurate fixes above 8 mph start a trip; 3 of the last 4
+     * under 3 mph (average under 3 mph), seen on 2 fixes in a row, end it.
+     * Any fix that fails that check - including every fix while the average
+     * is 3 mph or more - starts the 2 over, as the service always did.
+     * Trips are capped at 10 minutes and must cover at least 0.5 mi.
+     */
+    public static final Profile SERVICE_PROFILE = new Profile(
+        8.0, 2, 3,
+        3.0, 3, 4, 2,
+        5, 100f,
+        0, 0, 10 * 60 * 1000, 0.5,
+        false);
+
+    private final Profile profile;
+    private final SpeedReadingBuffer readings;
+    private final SpeedReadingBuffer.Window startWindow;
+    private final SpeedReadingBuffer.Window stopWindow;
+    private final SpeedReadingBuffer.Window averageWindow;
+
+    private int state = STATE_IDLE;
+    private int stopConfirmations = 0;
+    private int movingStreak = 0;
+    private int stoppedStreak = 0;
+    private long tripStartTime = 0;
+    private double pauseLatitude;
+    private double pauseLongitude;
+    private long pauseStartTime = 0;
+
+    // Details of the last event
+    private double startLatitude;
+    private double startLongitude;
+    private long startTime;
+    private double endLatitude;
+    private double endLongitude;
+    private long endTime;
+
+    public TripDetectionEngine(Profile profile) {
+        this.profile = profile;
+        readings = new SpeedReadingBuffer(profile.bufferCapacity());
+        startWindow = readings.speedAbove(profile.startWindow, profile.startSpeedMph);
+        stopWindow = readings.speedBelow(profile.stopWindow, profile.stopSpeedMph);
+        averageWindow = profile.averageWindow > 0
+            ? readings.accurateSpeed(profile.averageWindow, profile.maxAccuracyMeters)
+            : null;
+    }
+
+    /**
+     * Feed one fix; returns an EVENT_ code
+     */
+    public int onFix(double latitude, double longitude, double speedMph, float accuracyMeters, long timestamp) {
+        readings.add(latitude, longitude, speedMph, timestamp, accuracyMeters);
+
+        boolean moving;
+        boolean stopped;
+        boolean slow = true; // whether this fix may end a paused trip
+        if (profile.streaks) {
+            slow = speedMph <= profile.stopSpeedMph;
+            if (speedMph >= profile.startSpeedMph) {
+                movingStreak++;
+                stoppedStreak = 0;
+            } else if (slow && state != STATE_IDLE) {
+                stoppedStreak++;
+                movingStreak = 0;
+            }
+            moving = movingStreak >= profile.startReadings;
+            stopped = stoppedStreak >= profile.stopReadings;
+        } else {
+            boolean averageKnown = averageWindow == null || averageWindow.count() > 0;
+            moving = averageKnown
+                && readings.size() >= profile.startWindow
+                && startWindow.count() >= profile.startReadings
+                && (averageWindow == null || averageWindow.average() > profile.startSpeedMph);
+            stopped = averageKnown
+                && readings.size() >= profile.stopWindow
+                && stopWindow.count() >= profile.stopReadings
+                && (averageWindow == null || averageWindow.average() < profile.stopSpeedMph);
+        }
+
+        switch (state) {
+            case STATE_IDLE:
+                if (moving) {
+                    startTrip(latitude, longitude, timestamp);
+                    return EVENT_TRIP_STARTED;
+                }
+                return EVENT_NONE;
+
+            case STATE_DRIVING:
+                if (profile.maxTripMs > 0 && timestamp - tripStartTime > profile.maxTripMs) {
+                    return endTrip(latitude, longitude, timestamp);
+                }
+                if (!stopped) {
+                    stopConfirmations = 0;
+                    return EVENT_NONE;
+                }
+                if (++stopConfirmations < profile.stopConfirmations) return EVENT_NONE;
+                if (profile.pauseTimeoutMs <= 0) {
+                    return endTrip(latitude, longitude, timestamp);
+                }
+                state = STATE_PAUSED;
+                stopConfirmations = 0;
+                pauseLatitude = latitude;
+                pauseLongitude = longitude;
+                pauseStartTime = timestamp;
+                return EVENT_TRIP_PAUSED;
+
+            default: // STATE_PAUSED
+                if (moving) {
+                    movingStreak = 0;
+                    stoppedStreak = 0;
+                    if (GeoMath.distanceMiles(pauseLatitude, pauseLongitude, latitude, longitude) > profile.resumeRadiusMiles) {
+                        // Moved on from somewhere else - the stop was a destination
+                        endTrip(pauseLatitude, pauseLongitude, timestamp);
+                        startTrip(latitude, longitude, timestamp);
+                        return EVENT_TRIP_SPLIT;
+                    }
+                    state = STATE_DRIVING;
+                    pauseStartTime = 0;
+                    return EVENT_TRIP_RESUMED;
+                }
+                if ((slow && timestamp - pauseStartTime > profile.pauseTimeoutMs)
+                        || (profile.maxTripMs > 0 && timestamp - tripStartTime > profile.maxTripMs)) {
+                    return endTrip(latitude, longitude, timestamp);
+                }
+                return EVENT_NONE;
+        }
+    }
+
+    /**
+     * Continue a trip that was in progress before a restart
+     */
+    public void resumeTrip(long tripStartTime) {
+        readings.clear();
+        state = STATE_DRIVING;
+        stopConfirmations = 0;
+        movingStreak = 0;
+        stoppedStreak = 0;
+        pauseStartTime = 0;
+        this.tripStartTime = tripStartTime;
+    }
+
+    /**
+     * Forget any trip in progress (ended or discarded by the caller)
+     */
+    public void reset() {
+        readings.clear();
+        state = STATE_IDLE;
+        stopConfirmations = 0;
+        movingStreak = 0;
+        stoppedStreak = 0;
+        pauseStartTime = 0;
+        tripStartTime = 0;
+    }
+
+    public Profile profile() {
+        return profile;
+    }
+
+    public int state() {
+        return state;
+    }
+
+    public boolean isInTrip() {
+        return state != STATE_IDLE;
+    }
+
+    /**
+     * Whether the fix just fed belongs to the trip in progress: every fix
+     * while driving, only stop-speed ones while paused. Faster fixes during
+     * a pause wait for the resume or split - after a split they belong to
+     * the next trip, not the one that ended at the pause point.
+     */
+    public boolean isTripFix(double speedMph) {
+        return state == STATE_DRIVING || (state == STATE_PAUSED && speedMph <= profile.stopSpeedMph);
+    }
+
+    /**
+     * Not in a trip, but a recent fix was above the start speed
+     */
+    public boolean isPossibleStart() {
+        return state == STATE_IDLE && (profile.streaks ? movingStreak > 0 : startWindow.count() > 0);
+    }
+
+    public long tripStartTime() {
+        return tripStartTime;
+    }
+
+    /**
+     * Time the current pause began, 0 if not paused
+     */
+    public long pauseStartTime() {
+        return pauseStartTime;
+    }
+
+    /**
+     * Fixes seen since the last reset, up to the buffer capacity
+     */
+    public int bufferedFixes() {
+        return readings.size();
+    }
+
+    public double latestLatitude() {
+        return readings.latestLatitude();
+    }
+
+    public double latestLongitude() {
+        return readings.latestLongitude();
+    }
+
+    public long latestTimestamp() {
+        return readings.latestTimestamp();
+    }
+
+    // Where and when the trip of the last STARTED / SPLIT event began
+    public double startLatitude() {
+        return startLatitude;
+    }
+
+    public double startLongitude() {
+        return startLongitude;
+    }
+
+    public long startTime() {
+        return startTime;
+    }
+
+    // Where and when the trip of the last ENDED / SPLIT event finished
+    public double endLatitude() {
+        return endLatitude;
+    }
+
+    public double endLongitude() {
+        return endLongitude;
+    }
+
+    public long endTime() {
+        return endTime;
+    }
+
+    private void startTrip(double latitude, double longitude, long timestamp) {
+        state = STATE_DRIVING;
+        stopConfirmations = 0;
+        movingStreak = 0;
+        stoppedStreak = 0;
+        pauseStartTime = 0;
+        tripStartTime = timestamp;
+        startLatitude = latitude;
+        startLongitude = longitude;
+        startTime = timestamp;
+    }
+
+    private int endTrip(double latitude, double longitude, long timestamp) {
+        endLatitude = latitude;
+        endLongitude = longitude;
+        endTime = timestamp;
+        reset();
+        return EVENT_TRIP_ENDED;
+    }
+}
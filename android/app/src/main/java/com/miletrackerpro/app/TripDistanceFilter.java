@@ -0,0 +1,303 @@
+package com.miletrackerpro.app;
+
+/**
+ * MileTracker Pro - Trip Distance Filter
+ * Streaming constant-velocity Kalman filter that turns raw GPS fixes into
+ * trip distance. Each axis of a local east/north plane (meters from the
+ * first fix) carries position and velocity; a fix's reported accuracy is
+ * its measurement noise, so a 50 m network fix moves the estimate far less
+ * than a 5 m GPS fix.
+ *
+ * Reported speed is fed in as a velocity measurement along the current
+ * heading (or as "not moving" below STOPPED_MPS), which keeps the estimate
+ * from wandering while parked. Fixes whose innovation falls outside the
+ * gate, or that imply an impossible speed, are rejected; if MAX_REJECTS
+ * arrive in a row the filter has lost track (tunnel exit, cold start on
+ * the wrong cell) and restarts at the new fix.
+ *
+ * Distance is summed between filtered positions as fixes arrive, and a
+ * step only counts once it is larger than the position uncertainty. That
+ * alone does not stop jitter at a standstill: the filter follows the fixes
+ * closely enough that a parked phone with 8 m jitter still walks off a few
+ * hundred meters in ten minutes. So while the reported speed is below
+ * STATIONARY_MPS and the filtered position is within STATIONARY_ACCURACIES
+ * of the fix's accuracy from the counted position, the position is held
+ * there and no distance is added. Slow creeping is not lost: once it
+ * carries the estimate past the gate, the whole step from the held
+ * position counts. Fixes without a speed reading are not gated.
+ *
+ * add() is constant time and allocates nothing; reading the total is a
+ * field read.
+ */
+public final class TripDistanceFilter {
+
+    private static final float DEFAULT_ACCURACY_METERS = 15f; // fixes that don't report one
+    private static final float MIN_ACCURACY_METERS = 3f;
+    private static final double ACCEL_NOISE = 2.5;           // m/s^2, ordinary driving
+    private static final double SPEED_NOISE = 1.0;           // m/s, reported speed
+    private static final double STOPPED_MPS = 0.5;
+    private static final double STATIONARY_MPS = 1.0;
+    private static final double STATIONARY_ACCURACIES = 2;   // gate radius, in reported accuracies
+    private static final double MPH_TO_MPS = 0.44704;
+
+    private static final double GATE = 16;                   // squared Mahalanobis distance, 2 dof
+    private static final double MAX_SPEED_MPS = 70;          // ~155 mph; anything faster is a bad fix
+    private static final int MAX_REJECTS = 3;
+    private static final double MIN_STEP_METERS = 1;
+
+    // Re-anchor the local plane before the flat-earth error becomes measurable
+    private static final double RECENTER_METERS = 20000;
+
+    private boolean initialized = false;
+    private double originLatitude;
+    private double originLongitude;
+    private double metersPerDegreeLat;
+    private double metersPerDegreeLon;
+
+    // State and covariance per axis: x = east, y = north
+    private double x, vx, pxx, pxv, pvvx;
+    private double y, vy, pyy, pyv, pvvy;
+    private long lastTime;
+
+    // Last accepted raw fix, for the implied-speed check
+    private double lastFixX, lastFixY;
+    private long lastFixTime;
+
+    // Filtered position where distance was last counted
+    private double anchorX, anchorY;
+    private double distanceMeters = 0;
+
+    private int consecutiveRejects = 0;
+    private int rejectedFixes = 0;
+
+    /**
+     * Feed one fix. accuracyMeters <= 0 means unknown; speedMph < 0 means
+     * no speed reading. Returns false if the fix was rejected or out of order.
+     */
+    public boolean add(double latitude, double longitude, float accuracyMeters, double speedMph, long timestamp) {
+        double accuracy = accuracyMeters > 0 ? Math.max(accuracyMeters, MIN_ACCURACY_METERS) : DEFAULT_ACCURACY_METERS;
+        double r = accuracy * accuracy;
+
+        if (!initialized) {
+            start(latitude, longitude, r, timestamp);
+            return true;
+        }
+        if (timestamp <= lastTime) return false;
+
+        double zx = (longitude - originLongitude) * metersPerDegreeLon;
+        double zy = (latitude - originLatitude) * metersPerDegreeLat;
+
+        predict((timestamp - lastTime) / 1000.0);
+        lastTime = timestamp;
+
+        double ix = zx - x;
+        double iy = zy - y;
+        double mahalanobis = ix * ix / (pxx + r) + iy * iy / (pyy + r);
+        double jump = Math.hypot(zx - lastFixX, zy - lastFixY);
+        double impliedSpeed = jump / ((timestamp - lastFixTime) / 1000.0);
+
+        if (mahalanobis > GATE || impliedSpeed > MAX_SPEED_MPS) {
+            rejectedFixes++;
+            if (++consecutiveRejects < MAX_REJECTS) return false;
+
+            // Lost track - restart here, bridging the gap only if it was drivable
+            double bridge = impliedSpeed <= MAX_SPEED_MPS ? Math.hypot(zx - anchorX, zy - anchorY) : 0;
+            double total = distanceMeters + bridge;
+            start(latitude, longitude, r, timestamp);
+            distanceMeters = total;
+            return true;
+        }
+        consecutiveRejects = 0;
+
+        updatePositionX(zx, r);
+        updatePositionY(zy, r);
+        if (speedMph >= 0) {
+            updateSpeed(speedMph * MPH_TO_MPS);
+        }
+        lastFixX = zx;
+        lastFixY = zy;
+        lastFixTime = timestamp;
+
+        if (speedMph >= 0 && speedMph * MPH_TO_MPS < STATIONARY_MPS
+                && Math.hypot(x - anchorX, y - anchorY) <= STATIONARY_ACCURACIES * accuracy) {
+            // Stationary - hold the counted position instead of following jitter
+            x = anchorX;
+            y = anchorY;
+            vx = vy = 0;
+            return true;
+        }
+
+        double step = Math.hypot(x - anchorX, y - anchorY);
+        if (step > Math.max(MIN_STEP_METERS, Math.sqrt(pxx + pyy))) {
+            distanceMeters += step;
+            anchorX = x;
+            anchorY = y;
+        }
+
+        if (Math.abs(x) > RECENTER_METERS || Math.abs(y) > RECENTER_METERS) {
+            recenter();
+        }
+        return true;
+    }
+
+    /**
+     * Continue a trip from a checkpoint: restart the filter at its last
+     * point with the distance already covered carried over
+     */
+    public void resumeAt(double latitude, double longitude, long timestamp, double distanceMeters) {
+        start(latitude, longitude, DEFAULT_ACCURACY_METERS * DEFAULT_ACCURACY_METERS, timestamp);
+        this.distanceMeters = distanceMeters;
+        rejectedFixes = 0;
+    }
+
+    public void reset() {
+        initialized = false;
+        distanceMeters = 0;
+        consecutiveRejects = 0;
+        rejectedFixes = 0;
+    }
+
+    public boolean isEmpty() {
+        return !initialized;
+    }
+
+    public double distanceMeters() {
+        return distanceMeters;
+    }
+
+    public double distanceMiles() {
+        return distanceMeters / GeoMath.METERS_PER_MILE;
+    }
+
+    /**
+     * Fixes rejected as outliers since the last reset
+     */
+    public int rejectedFixes() {
+        return rejectedFixes;
+    }
+
+    public double latitude() {
+        return originLatitude + y / metersPerDegreeLat;
+    }
+
+    public double longitude() {
+        return originLongitude + x / metersPerDegreeLon;
+    }
+
+    /**
+     * Filtered ground speed, in mph
+     */
+    public double speedMph() {
+        return Math.hypot(vx, vy) / MPH_TO_MPS;
+    }
+
+    private void start(double latitude, double longitude, double r, long timestamp) {
+        initialized = true;
+        setOrigin(latitude, longitude);
+        x = y = 0;
+        vx = vy = 0;
+        pxx = pyy = r;
+        pxv = pyv = 0;
+        pvvx = pvvy = 100; // velocity unknown - 10 m/s either way
+        lastTime = timestamp;
+        lastFixX = lastFixY = 0;
+        lastFixTime = timestamp;
+        anchorX = anchorY = 0;
+        distanceMeters = 0;
+        consecutiveRejects = 0;
+    }
+
+    private void setOrigin(double latitude, double longitude) {
+        originLatitude = latitude;
+        originLongitude = longitude;
+        metersPerDegreeLat = Math.toRadians(GeoMath.EARTH_RADIUS_METERS);
+        metersPerDegreeLon = metersPerDegreeLat * GeoMath.cosLatitude(latitude);
+    }
+
+    private void predict(double dt) {
+        double q = ACCEL_NOISE * ACCEL_NOISE;
+        double dt2 = dt * dt;
+        double q11 = q * dt2 * dt2 / 4;
+        double q12 = q * dt2 * dt / 2;
+        double q22 = q * dt2;
+
+        x += vx * dt;
+        pxx += 2 * dt * pxv + dt2 * pvvx + q11;
+        pxv += dt * pvvx + q12;
+        pvvx += q22;
+
+        y += vy * dt;
+        pyy += 2 * dt * pyv + dt2 * pvvy + q11;
+        pyv += dt * pvvy + q12;
+        pvvy += q22;
+    }
+
+    private void updatePositionX(double z, double r) {
+        double s = pxx + r;
+        double k0 = pxx / s;
+        double k1 = pxv / s;
+        double e = z - x;
+        x += k0 * e;
+        vx += k1 * e;
+        pvvx -= k1 * pxv;
+        pxv -= k0 * pxv;
+        pxx -= k0 * pxx;
+    }
+
+    private void updatePositionY(double z, double r) {
+        double s = pyy + r;
+        double k0 = pyy / s;
+        double k1 = pyv / s;
+        double e = z - y;
+        y += k0 * e;
+        vy += k1 * e;
+        pvvy -= k1 * pyv;
+        pyv -= k0 * pyv;
+        pyy -= k0 * pyy;
+    }
+
+    // Speed has no direction: measure velocity along the current heading,
+    // or zero on both axes when stopped or the heading is still unknown
+    private void updateSpeed(double speedMps) {
+        double vxTarget = 0;
+        double vyTarget = 0;
+        double heading = Math.hypot(vx, vy);
+        if (speedMps > STOPPED_MPS) {
+            if (heading < STOPPED_MPS) return;
+            vxTarget = speedMps * vx / heading;
+            vyTarget = speedMps * vy / heading;
+        }
+        double r = SPEED_NOISE * SPEED_NOISE;
+
+        double s = pvvx + r;
+        double k0 = pxv / s;
+        double k1 = pvvx / s;
+        double e = vxTarget - vx;
+        x += k0 * e;
+        vx += k1 * e;
+        pxx -= k0 * pxv;
+        pxv -= k0 * pvvx;
+        pvvx -= k1 * pvvx;
+
+        s = pvvy + r;
+        k0 = pyv / s;
+        k1 = pvvy / s;
+        e = vyTarget - vy;
+        y += k0 * e;
+        vy += k1 * e;
+        pyy -= k0 * pyv;
+        pyv -= k0 * pvvy;
+        pvvy -= k1 * pvvy;
+    }
+
+    private void recenter() {
+        double latitude = latitude();
+        double longitude = longitude();
+        anchorX -= x;
+        anchorY -= y;
+        lastFixX -= x;
+        lastFixY -= y;
+        x = y = 0;
+        setOrigin(latitude, longitude);
+    }
+}
@@ -0,0 +1,522 @@
+package com.miletrackerpro.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * MileTracker Pro - Trip Journal
+ * Durable append-only store for trips completed by BackgroundLocationService.
+ * Replaces the "completedTrips" JSON string in SharedPreferences, which had
+ * to be parsed and rewritten in full on every save.
+ */
+public class TripJournal {
+    private static final String TAG = "TripJournal";
+    private static final String JOURNAL_NAME = "trip_journal.bin";
+    private static final String LEGACY_PREFS_NAME = "MileTrackerGPS";
+    private static final String LEGACY_TRIPS_KEY = "completedTrips";
+
+    static final byte RECORD_TRIP = 1;
+    static final byte RECORD_REMOVE = 2;
+
+    private static final int SYNC_EVERY_RECORDS = 8;
+    private static final long SYNC_INTERVAL_MS = 30 * 1000;
+
+    // Compact once removed records outweigh live ones and are worth the rewrite
+    private static final long COMPACT_MIN_DEAD_BYTES = 64 * 1024;
+
+    private static TripJournal instance;
+
+    private final Context context;
+    private final JournalFile journal;
+    private boolean opened = false;
+
+    // Live records in file order: offsets ascending, parallel trip ids
+    private long[] offsets = new long[64];
+    private long[] tripIds = new long[64];
+    private int[] sizes = new int[64];
+    private int count = 0;
+
+    // Per-trip summary for queries, parallel to the index. Filled when a
+    // trip is appended, or read from the payload the first time a query
+    // needs it (records indexed at open have headers only).
+    private boolean[] summarized = new boolean[64];
+    private long[] startTimes = new long[64];
+    private double[] distances = new double[64];
+    private long[] durations = new long[64];
+    private String[] categories = new String[64];
+    private long liveBytes = 0;
+    private long deadBytes = 0;
+
+    /**
+     * One page of trips returned by readPage()
+     */
+    public static class Page {
+        public final List<String> trips;
+        public final long nextCursor;
+        public final boolean hasMore;
+
+        Page(List<String> trips, long nextCursor, boolean hasMore) {
+            this.trips = trips;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+    }
+
+    /**
+     * Filter for query(). from/to bound the trip start time (to exclusive);
+     * 0 leaves that end open, as does a null category.
+     */
+    public static class Query {
+        public final long from;
+        public final long to;
+        public final String category;
+
+        public Query(long from, long to, String category) {
+            this.from = from;
+            this.to = to;
+            this.category = category;
+        }
+    }
+
+    /**
+     * One group returned by aggregate()
+     */
+    public static class Bucket {
+        public final String key;
+        public int trips = 0;
+        public double miles = 0;
+        public long durationMs = 0;
+
+        Bucket(String key) {
+            this.key = key;
+        }
+    }
+
+    public static final String GROUP_CATEGORY = "category";
+    public static final String GROUP_DAY = "day";
+    public static final String GROUP_WEEK = "week";
+    public static final String GROUP_MONTH = "month";
+
+    /**
+     * Shared instance so the service and the React Native module see the
+     * same in-memory index. Does no disk I/O - the journal is opened by
+     * open() or on first use.
+     */
+    public static synchronized TripJournal getInstance(Context context) {
+        if (instance == null) {
+            instance = new TripJournal(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TripJournal(Context context) {
+        this.context = context;
+        File dir = new File(context.getFilesDir(), "journal");
+        this.journal = new JournalFile(new File(dir, JOURNAL_NAME), SYNC_EVERY_RECORDS, SYNC_INTERVAL_MS);
+    }
+
+    /**
+     * Index the journal, migrate legacy trips and compact if worthwhile.
+     * Call from a background thread to keep this off the first real use;
+     * every other method opens on demand.
+     */
+    public synchronized void open() {
+        if (opened) return;
+        opened = true;
+        try {
+            resetIndex();
+            journal.open(indexVisitor());
+            migrateLegacyTrips();
+            if (deadBytes > COMPACT_MIN_DEAD_BYTES && deadBytes > liveBytes) {
+                compact();
+            }
+            Log.d(TAG, "Opened trip journal with " + count + " trips");
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open trip journal: " + e.getMessage(), e);
+        }
+    }
+
+    private void resetIndex() {
+        count = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+    }
+
+    private JournalFile.RecordVisitor indexVisitor() {
+        return (offset, type, key, payloadLength) -> {
+            int size = JournalFile.HEADER_SIZE + payloadLength;
+            if (type == RECORD_TRIP) {
+                addEntry(offset, key, size);
+            } else if (type == RECORD_REMOVE) {
+                removeEntry(key);
+                deadBytes += size;
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Move trips from the old SharedPreferences string into the journal once.
+     * Trips already in the journal are skipped, so a crash between the
+     * journal sync and the prefs commit cannot duplicate them on the rerun.
+     */
+    private void migrateLegacyTrips() throws IOException {
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        String legacy = prefs.getString(LEGACY_TRIPS_KEY, null);
+        if (legacy == null) return;
+
+        try {
+            JSONArray tripsArray = new JSONArray(legacy);
+            int migrated = 0;
+            for (int i = 0; i < tripsArray.length(); i++) {
+                JSONObject trip = tripsArray.optJSONObject(i);
+                if (trip == null) continue;
+                if (!trip.has("id")) {
+                    // Stable id, so a rerun recognises it
+                    trip.put("id", trip.optLong("startTime", i));
+                }
+                if (indexOfTrip(trip.getLong("id")) >= 0) continue;
+                append(trip);
+                migrated++;
+            }
+            journal.sync();
+            if (!prefs.edit().remove(LEGACY_TRIPS_KEY).commit()) {
+                Log.w(TAG, "Legacy trips migrated but not cleared - next open will skip them");
+            }
+            Log.d(TAG, "Migrated " + migrated + " trips from SharedPreferences");
+        } catch (JSONException e) {
+            Log.e(TAG, "Legacy trip migration failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Append a completed trip. Costs one record write regardless of how many
+     * trips are already stored.
+     */
+    public synchronized void append(JSONObject trip) throws IOException {
+        open();
+        long tripId = trip.optLong("id", System.currentTimeMillis());
+        byte[] payload = trip.toString().getBytes(StandardCharsets.UTF_8);
+        long offset = journal.append(RECORD_TRIP, tripId, payload);
+        addEntry(offset, tripId, JournalFile.HEADER_SIZE + payload.length);
+        summarize(count - 1, trip);
+    }
+
+    /**
+     * Drop a trip (e.g. once the JS layer has synced it). The space is
+     * reclaimed on the next compaction.
+     */
+    public synchronized boolean remove(long tripId) throws IOException {
+        open();
+        int index = indexOfTrip(tripId);
+        if (index < 0) return false;
+
+        journal.append(RECORD_REMOVE, tripId, null);
+        removeEntry(tripId);
+        deadBytes += JournalFile.HEADER_SIZE;
+        return true;
+    }
+
+    public synchronized int size() {
+        open();
+        return count;
+    }
+
+    /**
+     * Read up to limit trips starting at cursor (0 for the first page).
+     * Cursors stay valid until the next compaction.
+     */
+    public synchronized Page readPage(long cursor, int limit) throws IOException {
+        open();
+        List<String> trips = new ArrayList<>();
+        int start = Arrays.binarySearch(offsets, 0, count, cursor);
+        if (start < 0) start = -start - 1;
+
+        int end = Math.min(count, start + Math.max(0, limit));
+        if (start < end) {
+            try (RandomAccessFile raf = new RandomAccessFile(journal.getFile(), "r")) {
+                for (int i = start; i < end; i++) {
+                    byte[] payload = journal.read(raf, offsets[i]);
+                    if (payload != null) {
+                        trips.add(new String(payload, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        long nextCursor = end < count ? offsets[end] : journal.length();
+        return new Page(trips, nextCursor, end < count);
+    }
+
+    /**
+     * Read a single trip by id, or null if it is not in the journal
+     */
+    public synchronized JSONObject getTrip(long tripId) {
+        open();
+        int index = indexOfTrip(tripId);
+        if (index < 0) return null;
+        try {
+            byte[] payload = journal.read(offsets[index]);
+            return payload != null ? new JSONObject(new String(payload, StandardCharsets.UTF_8)) : null;
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "Failed to read trip " + tripId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Trips matching the query, newest first, without their encoded path
+     * (getTrip() has it). Pass cursor 0 for the first page, then the
+     * returned nextCursor. Only the trips on the page are read from disk.
+     */
+    public synchronized Page query(Query query, long cursor, int limit) throws IOException {
+        open();
+        ensureSummaries();
+        List<String> trips = new ArrayList<>();
+        limit = Math.max(1, limit);
+
+        // cursor is the offset of the last trip returned; continue below it
+        int i = count - 1;
+        if (cursor > 0) {
+            i = Arrays.binarySearch(offsets, 0, count, cursor);
+            i = i >= 0 ? i - 1 : -i - 2;
+        }
+
+        long nextCursor = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(journal.getFile(), "r")) {
+            for (; i >= 0 && trips.size() < limit; i--) {
+                if (!matches(query, i)) continue;
+                byte[] payload = journal.read(raf, offsets[i]);
+                if (payload == null) continue;
+                try {
+                    JSONObject trip = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+                    trip.remove("path");
+                    trips.add(trip.toString());
+                    nextCursor = offsets[i];
+                } catch (JSONException e) {
+                    Log.w(TAG, "Skipping unreadable trip " + tripIds[i] + ": " + e.getMessage());
+                }
+            }
+        }
+
+        boolean hasMore = false;
+        for (; i >= 0; i--) {
+            if (matches(query, i)) {
+                hasMore = true;
+                break;
+            }
+        }
+        return new Page(trips, nextCursor, hasMore);
+    }
+
+    /**
+     * Trip count, miles and driving time per group, in key order. Works
+     * from the in-memory summaries; no payloads are read once they exist.
+     */
+    public synchronized List<Bucket> aggregate(String groupBy, Query query) {
+        open();
+        ensureSummaries();
+        Map<String, Bucket> buckets = new TreeMap<>();
+        Calendar cal = Calendar.getInstance();
+
+        for (int i = 0; i < count; i++) {
+            if (!matches(query, i)) continue;
+            String key = groupKey(groupBy, i, cal);
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(key);
+                buckets.put(key, bucket);
+            }
+            bucket.trips++;
+            bucket.miles += distances[i];
+            bucket.durationMs += durations[i];
+        }
+
+        return new ArrayList<>(buckets.values());
+    }
+
+    /**
+     * Start of a stats period ("Month", "Quarter", "YTD") containing now;
+     * anything else means all time (0)
+     */
+    public static long periodStart(String period, long now) {
+        if (period == null) return 0;
+        Calendar start = Calendar.getInstance();
+        start.setTimeInMillis(now);
+        switch (period) {
+            case "Month":
+                break;
+            case "Quarter":
+                start.set(Calendar.MONTH, (start.get(Calendar.MONTH) / 3) * 3);
+                break;
+            case "YTD":
+                start.set(Calendar.MONTH, Calendar.JANUARY);
+                break;
+            default:
+                return 0;
+        }
+        start.set(Calendar.DAY_OF_MONTH, 1);
+        start.set(Calendar.HOUR_OF_DAY, 0);
+        start.set(Calendar.MINUTE, 0);
+        start.set(Calendar.SECOND, 0);
+        start.set(Calendar.MILLISECOND, 0);
+        return start.getTimeInMillis();
+    }
+
+    private boolean matches(Query query, int i) {
+        if (query == null) return true;
+        if (query.from > 0 && startTimes[i] < query.from) return false;
+        if (query.to > 0 && startTimes[i] >= query.to) return false;
+        return query.category == null || query.category.equalsIgnoreCase(categories[i]);
+    }
+
+    private String groupKey(String groupBy, int i, Calendar cal) {
+        if (GROUP_CATEGORY.equals(groupBy)) return categories[i];
+
+        cal.setTimeInMillis(startTimes[i]);
+        int year = cal.get(Calendar.YEAR);
+        if (GROUP_DAY.equals(groupBy)) {
+            return String.format(Locale.US, "%04d-%02d-%02d", year,
+                cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
+        }
+        if (GROUP_WEEK.equals(groupBy)) {
+            // Week-based year, so the last days of December can land in week 1
+            return String.format(Locale.US, "%04d-W%02d", cal.getWeekYear(),
+                cal.get(Calendar.WEEK_OF_YEAR));
+        }
+        return String.format(Locale.US, "%04d-%02d", year, cal.get(Calendar.MONTH) + 1);
+    }
+
+    // Read the summary of every trip indexed from headers only
+    private void ensureSummaries() {
+        int missing = 0;
+        for (int i = 0; i < count; i++) {
+            if (!summarized[i]) missing++;
+        }
+        if (missing == 0) return;
+
+        try (RandomAccessFile raf = new RandomAccessFile(journal.getFile(), "r")) {
+            for (int i = 0; i < count; i++) {
+                if (summarized[i]) continue;
+                byte[] payload = journal.read(raf, offsets[i]);
+                JSONObject trip = null;
+                if (payload != null) {
+                    try {
+                        trip = new JSONObject(new String(payload, StandardCharsets.UTF_8));
+                    } catch (JSONException e) {
+                        Log.w(TAG, "Unreadable trip " + tripIds[i] + ": " + e.getMessage());
+                    }
+                }
+                summarize(i, trip != null ? trip : new JSONObject());
+            }
+            Log.d(TAG, "Summarized " + missing + " trips for queries");
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to summarize trips: " + e.getMessage(), e);
+        }
+    }
+
+    private void summarize(int i, JSONObject trip) {
+        startTimes[i] = trip.optLong("startTime", tripIds[i]);
+        distances[i] = trip.optDouble("distance", 0);
+        durations[i] = trip.optLong("duration", 0);
+        categories[i] = trip.optString("category", "");
+        summarized[i] = true;
+    }
+
+    /**
+     * Rewrite the journal with only live trips and swap it in atomically
+     */
+    public synchronized void compact() throws IOException {
+        open();
+        File source = journal.getFile();
+        File compacted = new File(source.getParentFile(), JOURNAL_NAME + ".compact");
+        JournalFile target = new JournalFile(compacted, Integer.MAX_VALUE, Long.MAX_VALUE);
+        if (compacted.exists()) compacted.delete();
+
+        journal.sync();
+        target.open(null);
+        try (RandomAccessFile raf = new RandomAccessFile(source, "r")) {
+            for (int i = 0; i < count; i++) {
+                byte[] payload = journal.read(raf, offsets[i]);
+                if (payload != null) {
+                    target.append(RECORD_TRIP, tripIds[i], payload);
+                }
+            }
+        }
+        target.close();
+
+        long before = source.length();
+        resetIndex();
+        journal.replaceWith(compacted, indexVisitor());
+        Log.d(TAG, "Compacted trip journal: " + before + " -> " + journal.length() + " bytes");
+    }
+
+    /**
+     * Flush batched appends to disk (call when tracking stops)
+     */
+    public void sync() {
+        journal.sync();
+    }
+
+    private void addEntry(long offset, long tripId, int size) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            tripIds = Arrays.copyOf(tripIds, count * 2);
+            sizes = Arrays.copyOf(sizes, count * 2);
+            summarized = Arrays.copyOf(summarized, count * 2);
+            startTimes = Arrays.copyOf(startTimes, count * 2);
+            distances = Arrays.copyOf(distances, count * 2);
+            durations = Arrays.copyOf(durations, count * 2);
+            categories = Arrays.copyOf(categories, count * 2);
+        }
+        offsets[count] = offset;
+        tripIds[count] = tripId;
+        sizes[count] = size;
+        summarized[count] = false;
+        categories[count] = null;
+        count++;
+        liveBytes += size;
+    }
+
+    private void removeEntry(long tripId) {
+        int index = indexOfTrip(tripId);
+        if (index < 0) return;
+
+        liveBytes -= sizes[index];
+        deadBytes += sizes[index];
+        System.arraycopy(offsets, index + 1, offsets, index, count - index - 1);
+        System.arraycopy(tripIds, index + 1, tripIds, index, count - index - 1);
+        System.arraycopy(sizes, index + 1, sizes, index, count - index - 1);
+        System.arraycopy(summarized, index + 1, summarized, index, count - index - 1);
+        System.arraycopy(startTimes, index + 1, startTimes, index, count - index - 1);
+        System.arraycopy(distances, index + 1, distances, index, count - index - 1);
+        System.arraycopy(durations, index + 1, durations, index, count - index - 1);
+        System.arraycopy(categories, index + 1, categories, index, count - index - 1);
+        count--;
+    }
+
+    private int indexOfTrip(long tripId) {
+        // Most lookups are for recent trips, so scan from the end
+        for (int i = count - 1; i >= 0; i--) {
+            if (tripIds[i] == tripId) return i;
+        }
+        return -1;
+    }
+}
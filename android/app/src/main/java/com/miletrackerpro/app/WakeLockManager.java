@@ -0,0 +1,211 @@
+package com.miletrackerpro.app;
+
+import android.content.SharedPreferences;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * MileTracker Pro - Wake Lock Manager
+ * One partial wake lock shared by several reasons to stay awake. The lock
+ * is held while any reason is, and released as soon as none is - idle
+ * monitoring between fixes holds nothing.
+ *
+ * Every hold has a timeout. Holds that should last (an active trip) are
+ * re-armed as fixes keep arriving, so if fixes stop the lock lapses on
+ * its own instead of keeping the CPU up until tracking stops.
+ *
+ * Hold time and acquisitions are accounted per reason, and for the lock
+ * as a whole. The totals are written to SharedPreferences at most once a
+ * minute and when tracking stops, so the React Native module can report
+ * them (getWakeLockStats) whether or not the service is running. The JS
+ * app in this tree has no diagnostics screen to call it from yet, so the
+ * totals are also logged each time tracking stops.
+ */
+public class WakeLockManager {
+    private static final String TAG = "WakeLockManager";
+
+    public static final String REASON_TRIP = "trip";
+    public static final String REASON_FIX_BATCH = "fixBatch";
+    public static final String TOTAL = "total";
+
+    private static final String[] REASONS = { REASON_TRIP, REASON_FIX_BATCH };
+
+    private static final String PREFS_HELD_MS = "wakeLockHeldMs.";
+    private static final String PREFS_ACQUISITIONS = "wakeLockAcquisitions.";
+    private static final String PREFS_SINCE = "wakeLockStatsSince";
+    private static final long PERSIST_INTERVAL_MS = 60 * 1000;
+
+    /**
+     * Accumulated figures for one reason (or TOTAL)
+     */
+    public static class Stats {
+        public final String reason;
+        public final long heldMs;
+        public final long acquisitions;
+
+        Stats(String reason, long heldMs, long acquisitions) {
+            this.reason = reason;
+            this.heldMs = heldMs;
+            this.acquisitions = acquisitions;
+        }
+    }
+
+    private final PowerManager.WakeLock wakeLock;
+    private final SharedPreferences prefs;
+
+    // Per reason (last slot: the lock as a whole); elapsedRealtime, 0 = not held
+    private final long[] heldSince = new long[REASONS.length + 1];
+    private final long[] deadline = new long[REASONS.length + 1];
+    private final long[] heldMs = new long[REASONS.length + 1];
+    private final long[] acquisitions = new long[REASONS.length + 1];
+    private long lastPersist = 0;
+
+    public WakeLockManager(PowerManager.WakeLock wakeLock, SharedPreferences prefs) {
+        this.wakeLock = wakeLock;
+        this.prefs = prefs;
+        wakeLock.setReferenceCounted(false);
+        if (!prefs.contains(PREFS_SINCE)) {
+            prefs.edit().putLong(PREFS_SINCE, System.currentTimeMillis()).apply();
+        }
+        for (int slot = 0; slot <= REASONS.length; slot++) {
+            heldMs[slot] = prefs.getLong(PREFS_HELD_MS + nameOf(slot), 0);
+            acquisitions[slot] = prefs.getLong(PREFS_ACQUISITIONS + nameOf(slot), 0);
+        }
+    }
+
+    /**
+     * Hold the lock for reason for up to timeoutMs from now. Calling again
+     * while held re-arms the timeout without counting a new acquisition.
+     */
+    public synchronized void acquire(String reason, long timeoutMs) {
+        long now = SystemClock.elapsedRealtime();
+        expire(now);
+
+        int slot = slotOf(reason);
+        if (heldSince[slot] == 0) {
+            heldSince[slot] = now;
+            acquisitions[slot]++;
+        }
+        deadline[slot] = now + timeoutMs;
+        apply(now);
+    }
+
+    public synchronized void release(String reason) {
+        long now = SystemClock.elapsedRealtime();
+        expire(now);
+        end(slotOf(reason), now);
+        apply(now);
+    }
+
+    /**
+     * Drop every hold and record the totals (tracking stopped)
+     */
+    public synchronized void releaseAll() {
+        long now = SystemClock.elapsedRealtime();
+        expire(now);
+        for (int slot = 0; slot < REASONS.length; slot++) {
+            end(slot, now);
+        }
+        apply(now);
+        persist(now);
+
+        StringBuilder summary = new StringBuilder("Wake lock totals since ")
+            .append(new Date(statsSince(prefs))).append(':');
+        for (int slot = 0; slot <= REASONS.length; slot++) {
+            summary.append(' ').append(nameOf(slot)).append(' ')
+                .append(heldMs[slot] / 1000).append("s/").append(acquisitions[slot]).append('x');
+        }
+        Log.i(TAG, summary.toString());
+    }
+
+    /**
+     * Stats for every reason, then TOTAL, as last written - up to a minute
+     * behind while tracking
+     */
+    public static List<Stats> readStats(SharedPreferences prefs) {
+        List<Stats> stats = new ArrayList<>();
+        for (int slot = 0; slot <= REASONS.length; slot++) {
+            String name = nameOf(slot);
+            stats.add(new Stats(name, prefs.getLong(PREFS_HELD_MS + name, 0),
+                                prefs.getLong(PREFS_ACQUISITIONS + name, 0)));
+        }
+        return stats;
+    }
+
+    /**
+     * Wall-clock time the figures have been accumulating since
+     */
+    public static long statsSince(SharedPreferences prefs) {
+        return prefs.getLong(PREFS_SINCE, 0);
+    }
+
+    // Account for holds whose timeout passed; the OS let go of the lock then
+    private void expire(long now) {
+        for (int slot = 0; slot <= REASONS.length; slot++) {
+            if (heldSince[slot] != 0 && deadline[slot] <= now) {
+                end(slot, deadline[slot]);
+            }
+        }
+    }
+
+    private void end(int slot, long at) {
+        if (heldSince[slot] == 0) return;
+        heldMs[slot] += Math.max(0, at - heldSince[slot]);
+        heldSince[slot] = 0;
+    }
+
+    // Holds in progress are written up to now
+    private void persist(long now) {
+        SharedPreferences.Editor editor = prefs.edit();
+        for (int slot = 0; slot <= REASONS.length; slot++) {
+            long running = heldSince[slot] != 0 ? now - heldSince[slot] : 0;
+            editor.putLong(PREFS_HELD_MS + nameOf(slot), heldMs[slot] + running);
+            editor.putLong(PREFS_ACQUISITIONS + nameOf(slot), acquisitions[slot]);
+        }
+        editor.apply();
+        lastPersist = now;
+    }
+
+    // Hold the lock until the latest deadline of any reason, or release it
+    private void apply(long now) {
+        int total = REASONS.length;
+        long until = 0;
+        for (int slot = 0; slot < REASONS.length; slot++) {
+            if (heldSince[slot] != 0) until = Math.max(until, deadline[slot]);
+        }
+
+        if (until > now) {
+            if (heldSince[total] == 0) {
+                heldSince[total] = now;
+                acquisitions[total]++;
+            }
+            deadline[total] = until;
+            wakeLock.acquire(until - now);
+        } else {
+            end(total, now);
+            if (wakeLock.isHeld()) {
+                wakeLock.release();
+            }
+        }
+
+        if (now - lastPersist >= PERSIST_INTERVAL_MS) {
+            persist(now);
+        }
+    }
+
+    private static int slotOf(String reason) {
+        for (int slot = 0; slot < REASONS.length; slot++) {
+            if (REASONS[slot].equals(reason)) return slot;
+        }
+        throw new IllegalArgumentException("Unknown wake lock reason: " + reason);
+    }
+
+    private static String nameOf(int slot) {
+        return slot < REASONS.length ? REASONS[slot] : TOTAL;
+    }
+}
@@ -0,0 +1,177 @@
+package com.miletrackerpro.app;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * MileTracker Pro - Geo Math Benchmark
+ * Micro-benchmark for the GeoMath kernels, plus a check of the
+ * equirectangular error bound it documents.
+ *
+ * Lives in the unit test source set, so it never ships in the APK. Runs on
+ * a plain JVM, no Android classes, with the app and unit test classes on
+ * the classpath:
+ *   java com.miletrackerpro.app.GeoMathBenchmark [--points N] [--rounds N]
+ * Each variant sums the same set of random-walk trips (GPS-fix sized steps,
+ * each trip starting at its own latitude); rounds are timed after warmup
+ * and the median ns/segment is printed. Exits with status 1 if the error
+ * bound fails.
+ */
+public final class GeoMathBenchmark {
+
+    private static final int WARMUP_ROUNDS = 20;
+    private static final double ERROR_BOUND = 1e-7;
+    private static final double MAX_CHECKED_LATITUDE = 80;
+    private static final int TRIP_POINTS = 5000;
+
+    private static final String[] VARIANTS = {
+        "legacy (toRadians + atan2)",
+        "haversine",
+        "haversine, cached cos",
+        "equirectangular, cached cos",
+        "distanceMeters",
+        "pathLengthMeters (batch)"
+    };
+
+    // Keeps results live so the JIT can't drop the loops
+    private static double sink;
+
+    private GeoMathBenchmark() {}
+
+    public static void main(String[] args) {
+        int points = 100000;
+        int rounds = 50;
+        for (int i = 0; i < args.length; i++) {
+            if ("--points".equals(args[i]) && i + 1 < args.length) {
+                points = Math.max(2, Integer.parseInt(args[++i]));
+            } else if ("--rounds".equals(args[i]) && i + 1 < args.length) {
+                rounds = Math.max(1, Integer.parseInt(args[++i]));
+            } else {
+                System.err.println("Usage: GeoMathBenchmark [--points N] [--rounds N]");
+                System.exit(2);
+            }
+        }
+
+        boolean boundOk = checkErrorBound(new Random(7), 1000000);
+
+        double[] latitudes = new double[points];
+        double[] longitudes = new double[points];
+        double[] cosLatitudes = new double[points];
+        randomWalk(new Random(42), latitudes, longitudes);
+        for (int i = 0; i < points; i++) {
+            cosLatitudes[i] = GeoMath.cosLatitude(latitudes[i]);
+        }
+
+        int trips = (points + TRIP_POINTS - 1) / TRIP_POINTS;
+        int segments = points - trips;
+        double reference = run(VARIANTS.length - 1, latitudes, longitudes, cosLatitudes);
+        System.out.println(String.format(Locale.US, "%d trips, %d segments, path length %.1f km",
+            trips, segments, reference / 1000));
+
+        for (int variant = 0; variant < VARIANTS.length; variant++) {
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                sink += run(variant, latitudes, longitudes, cosLatitudes);
+            }
+            long[] times = new long[rounds];
+            double total = 0;
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                total = run(variant, latitudes, longitudes, cosLatitudes);
+                times[i] = System.nanoTime() - start;
+                sink += total;
+            }
+            Arrays.sort(times);
+            System.out.println(String.format(Locale.US, "%-30s %7.2f ns/segment  (length %+.1e relative to batch)",
+                VARIANTS[variant], (double) times[rounds / 2] / segments,
+                (total - reference) / reference));
+        }
+
+        if (sink == 42) System.out.println(); // Never true; reads sink
+        System.exit(boundOk ? 0 : 1);
+    }
+
+    // Sum of every trip's length; trips are TRIP_POINTS fixes each, and no
+    // segment joins the end of one trip to the start of the next
+    private static double run(int variant, double[] lats, double[] lons, double[] cosLats) {
+        double total = 0;
+        for (int from = 0; from < lats.length; from += TRIP_POINTS) {
+            total += runTrip(variant, lats, lons, cosLats, from, Math.min(lats.length, from + TRIP_POINTS));
+        }
+        return total;
+    }
+
+    private static double runTrip(int variant, double[] lats, double[] lons, double[] cosLats, int from, int to) {
+        double total = 0;
+        switch (variant) {
+            case 0:
+                for (int i = from + 1; i < to; i++) total += legacyMeters(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+                return total;
+            case 1:
+                for (int i = from + 1; i < to; i++) total += GeoMath.haversineMeters(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+                return total;
+            case 2:
+                for (int i = from + 1; i < to; i++) {
+                    total += GeoMath.haversineMeters(lats[i - 1], lons[i - 1], cosLats[i - 1], lats[i], lons[i], cosLats[i]);
+                }
+                return total;
+            case 3:
+                for (int i = from + 1; i < to; i++) {
+                    total += GeoMath.equirectangularMeters(lats[i - 1], lons[i - 1], cosLats[i - 1], lats[i], lons[i], cosLats[i]);
+                }
+                return total;
+            case 4:
+                for (int i = from + 1; i < to; i++) total += GeoMath.distanceMeters(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+                return total;
+            default:
+                return GeoMath.pathLengthMeters(lats, lons, from, to);
+        }
+    }
+
+    // The per-pair kernel the app used before GeoMath
+    private static double legacyMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return GeoMath.EARTH_RADIUS_METERS * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    // Fixes 1-15 s apart at 0-40 m/s; each trip of TRIP_POINTS fixes starts
+    // somewhere new
+    private static void randomWalk(Random random, double[] lats, double[] lons) {
+        double lat = 0;
+        double lon = 0;
+        double heading = 0;
+        for (int i = 0; i < lats.length; i++) {
+            if (i % TRIP_POINTS == 0) {
+                lat = (random.nextDouble() * 2 - 1) * 70;
+                lon = (random.nextDouble() * 2 - 1) * 180;
+            }
+            heading += random.nextGaussian() * 0.3;
+            double step = random.nextDouble() * 40 * (1 + random.nextInt(15));
+            lat += step * Math.cos(heading) / 111195;
+            lon += step * Math.sin(heading) / (111195 * GeoMath.cosLatitude(lat));
+            lats[i] = lat;
+            lons[i] = lon;
+        }
+    }
+
+    private static boolean checkErrorBound(Random random, int samples) {
+        double worst = 0;
+        for (int i = 0; i < samples; i++) {
+            double lat1 = (random.nextDouble() * 2 - 1) * MAX_CHECKED_LATITUDE;
+            double lon1 = (random.nextDouble() * 2 - 1) * 180;
+            double lat2 = lat1 + (random.nextDouble() * 2 - 1) * GeoMath.SHORT_SEGMENT_DEGREES;
+            double lon2 = lon1 + (random.nextDouble() * 2 - 1) * GeoMath.SHORT_SEGMENT_DEGREES;
+            double exact = GeoMath.haversineMeters(lat1, lon1, lat2, lon2);
+            if (exact < 1) continue;
+            worst = Math.max(worst, Math.abs(GeoMath.equirectangularMeters(lat1, lon1, lat2, lon2) - exact) / exact);
+        }
+        boolean ok = worst <= ERROR_BOUND;
+        System.out.println(String.format(Locale.US, "%s equirectangular max relative error %.2e (bound %.0e)",
+            ok ? "ok  " : "FAIL", worst, ERROR_BOUND));
+        return ok;
+    }
+}
@@ -0,0 +1,472 @@
+package com.miletrackerpro.app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * MileTracker Pro - Trip Replay
+ * Replays recorded GPS fix streams through TripDetectionEngine on the
+ * trace's own clock, so a missed or split trip can be reproduced without
+ * driving it again.
+ *
+ * Traces are CSV (timestamp_ms,latitude,longitude,speed_mph[,accuracy_m]),
+ * GPX (trkpt with time and optional speed in m/s) or a PathCodec
+ * "mtp-delta-v1" path as stored in trip checkpoints. A comment line
+ * "# expect trips=N miles=X" (or <!-- expect ... --> in GPX) sets the
+ * expected outcome for regression runs, and "profile=activity|service" in
+ * the same line the profile the trace is replayed with (otherwise the
+ * --profile option, service by default). src/test/resources/replay-traces
+ * holds a small corpus for the activity profile (normal trip, split at a
+ * destination, start in stop-and-go traffic); its miles are the distance
+ * driven while the trips were in progress.
+ *
+ * Lives in the unit test source set, so neither it nor the corpus ships in
+ * the APK. Runs on a plain JVM, no Android classes, with the app and unit
+ * test classes on the classpath:
+ *   java com.miletrackerpro.app.TripReplay [--profile activity|service]
+ *        [--iterations N] trace-or-directory...
+ * Prints trips found and distance error per trace, then replay throughput.
+ * Exits with status 1 if any trace misses its expectation.
+ */
+public final class TripReplay {
+
+    private static final float DEFAULT_ACCURACY_METERS = 5f;
+    private static final double MPS_TO_MPH = 2.237;
+
+    // Distance tolerance for "miles=" expectations
+    private static final double MILES_TOLERANCE = 0.05;
+
+    /**
+     * Recorded fixes in parallel primitive arrays
+     */
+    public static final class Trace {
+        public final String name;
+        private double[] latitudes = new double[256];
+        private double[] longitudes = new double[256];
+        private double[] speeds = new double[256];
+        private float[] accuracies = new float[256];
+        private long[] timestamps = new long[256];
+        private int size = 0;
+
+        public int expectedTrips = -1;
+        public double expectedMiles = Double.NaN;
+        public TripDetectionEngine.Profile profile; // null: the command line's
+
+        public Trace(String name) {
+            this.name = name;
+        }
+
+        public void add(double latitude, double longitude, double speedMph, float accuracy, long timestamp) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                speeds = Arrays.copyOf(speeds, capacity);
+                accuracies = Arrays.copyOf(accuracies, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+            }
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            speeds[size] = speedMph;
+            accuracies[size] = accuracy;
+            timestamps[size] = timestamp;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Outcome of one replay
+     */
+    public static final class Result {
+        public int trips;          // trips at or above the profile's minimum distance
+        public int discardedTrips; // shorter ones
+        public double miles;       // total of kept trips
+        public final int[] eventCounts = new int[6];
+
+        void reset() {
+            trips = 0;
+            discardedTrips = 0;
+            miles = 0;
+            Arrays.fill(eventCounts, 0);
+        }
+    }
+
+    private TripReplay() {}
+
+    /**
+     * Push every fix of trace through a fresh engine. Trip distance follows
+     * BackgroundLocationService: every in-trip fix goes through a
+     * TripDistanceFilter.
+     */
+    public static Result replay(Trace trace, TripDetectionEngine.Profile profile) {
+        Result result = new Result();
+        replay(trace, new TripDetectionEngine(profile), new TripDistanceFilter(), result);
+        return result;
+    }
+
+    /**
+     * Allocation-free replay into an existing engine, filter and result
+     */
+    public static void replay(Trace trace, TripDetectionEngine engine, TripDistanceFilter distance, Result result) {
+        engine.reset();
+        distance.reset();
+        result.reset();
+        double minMiles = engine.profile().minTripMiles;
+
+        for (int i = 0; i < trace.size; i++) {
+            double lat = trace.latitudes[i];
+            double lon = trace.longitudes[i];
+            double speed = trace.speeds[i];
+            float accuracy = trace.accuracies[i];
+            long time = trace.timestamps[i];
+            boolean wasInTrip = engine.isInTrip();
+            int event = engine.onFix(lat, lon, speed, accuracy, time);
+            result.eventCounts[event]++;
+
+            switch (event) {
+                case TripDetectionEngine.EVENT_TRIP_STARTED:
+                    distance.reset();
+                    distance.add(lat, lon, accuracy, speed, time);
+                    break;
+
+                case TripDetectionEngine.EVENT_TRIP_SPLIT:
+                    countTrip(result, distance.distanceMiles(), minMiles); // Ended at the pause point, before this fix
+                    distance.reset();
+                    distance.add(lat, lon, accuracy, speed, time);
+                    break;
+
+                case TripDetectionEngine.EVENT_TRIP_ENDED:
+                    distance.add(lat, lon, accuracy, speed, time);
+                    countTrip(result, distance.distanceMiles(), minMiles);
+                    break;
+
+                default:
+                    if (wasInTrip && engine.isTripFix(speed)) {
+                        distance.add(lat, lon, accuracy, speed, time);
+                    }
+                    break;
+            }
+        }
+
+        // Trace ended mid-trip: count it as the service's forced end would
+        if (engine.isInTrip()) {
+            countTrip(result, distance.distanceMiles(), minMiles);
+        }
+    }
+
+    private static void countTrip(Result result, double miles, double minMiles) {
+        if (miles >= minMiles) {
+            result.trips++;
+            result.miles += miles;
+        } else {
+            result.discardedTrips++;
+        }
+    }
+
+    // ----- Trace readers -----
+
+    public static Trace read(File file) throws IOException {
+        String name = file.getName().toLowerCase(Locale.US);
+        if (name.endsWith(".gpx")) {
+            try (Reader in = new FileReader(file)) {
+                return readGpx(file.getName(), in);
+            }
+        }
+        if (name.endsWith(".csv") || name.endsWith(".txt")) {
+            try (Reader in = new FileReader(file)) {
+                return readCsv(file.getName(), in);
+            }
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            return readPath(file.getName(), data, read);
+        }
+    }
+
+    /**
+     * timestamp_ms,latitude,longitude,speed_mph[,accuracy_m]; a non-numeric
+     * first line is taken as a header
+     */
+    public static Trace readCsv(String name, Reader source) throws IOException {
+        Trace trace = new Trace(name);
+        BufferedReader in = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            if (line.startsWith("#")) {
+                parseExpectation(trace, line);
+                continue;
+            }
+
+            String[] fields = line.split(",");
+            try {
+                if (fields.length < 4) throw new NumberFormatException("expected 4 or 5 columns");
+                trace.add(
+                    Double.parseDouble(fields[1].trim()),
+                    Double.parseDouble(fields[2].trim()),
+                    Double.parseDouble(fields[3].trim()),
+                    fields.length > 4 ? Float.parseFloat(fields[4].trim()) : DEFAULT_ACCURACY_METERS,
+                    Long.parseLong(fields[0].trim()));
+            } catch (NumberFormatException e) {
+                if (trace.size == 0 && lineNumber == 1) continue; // Header row
+                throw new IOException(name + ":" + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * Track points of a GPX file. Speed comes from a speed element (m/s) when
+     * present, otherwise from the distance and time to the previous point.
+     */
+    public static Trace readGpx(String name, Reader source) throws IOException {
+        Trace trace = new Trace(name);
+        StringBuilder xml = new StringBuilder();
+        char[] chunk = new char[8192];
+        int n;
+        while ((n = source.read(chunk)) > 0) {
+            xml.append(chunk, 0, n);
+        }
+
+        int comment = xml.indexOf("<!--");
+        while (comment >= 0) {
+            int end = xml.indexOf("-->", comment);
+            if (end < 0) break;
+            parseExpectation(trace, xml.substring(comment + 4, end).trim());
+            comment = xml.indexOf("<!--", end);
+        }
+
+        int pos = 0;
+        double lastLat = 0;
+        double lastLon = 0;
+        long lastTime = 0;
+        while ((pos = xml.indexOf("<trkpt", pos)) >= 0) {
+            int tagEnd = xml.indexOf(">", pos);
+            int close = xml.indexOf("</trkpt>", pos);
+            if (tagEnd < 0) break;
+            String tag = xml.substring(pos, tagEnd);
+            String body = close > tagEnd ? xml.substring(tagEnd + 1, close) : "";
+            pos = close > 0 ? close : tagEnd;
+
+            double lat = Double.parseDouble(attribute(tag, "lat"));
+            double lon = Double.parseDouble(attribute(tag, "lon"));
+            String timeText = element(body, "time");
+            if (timeText == null) throw new IOException(name + ": trkpt without time");
+            long time = parseIsoTime(timeText);
+
+            double speedMph;
+            String speedText = element(body, "speed");
+            if (speedText != null) {
+                speedMph = Double.parseDouble(speedText) * MPS_TO_MPH;
+            } else if (trace.size > 0 && time > lastTime) {
+                speedMph = GeoMath.distanceMiles(lastLat, lastLon, lat, lon) / ((time - lastTime) / 3600000.0);
+            } else {
+                speedMph = 0;
+            }
+
+            String hdop = element(body, "hdop");
+            float accuracy = hdop != null ? (float) (Double.parseDouble(hdop) * 5) : DEFAULT_ACCURACY_METERS;
+
+            trace.add(lat, lon, speedMph, accuracy, time);
+            lastLat = lat;
+            lastLon = lon;
+            lastTime = time;
+        }
+        return trace;
+    }
+
+    /**
+     * A PathCodec-encoded path (trip checkpoints, "path" of journal trips)
+     */
+    public static Trace readPath(String name, byte[] data, int length) {
+        Trace trace = new Trace(name);
+        PathCodec.Reader reader = new PathCodec.Reader(data, length);
+        while (reader.next()) {
+            trace.add(reader.latitude(), reader.longitude(), reader.speedMph(),
+                      DEFAULT_ACCURACY_METERS, reader.timestamp());
+        }
+        return trace;
+    }
+
+    private static void parseExpectation(Trace trace, String comment) {
+        String text = comment.startsWith("#") ? comment.substring(1).trim() : comment;
+        if (!text.startsWith("expect")) return;
+        for (String part : text.substring(6).trim().split("\\s+")) {
+            if (part.startsWith("trips=")) {
+                trace.expectedTrips = Integer.parseInt(part.substring(6));
+            } else if (part.startsWith("miles=")) {
+                trace.expectedMiles = Double.parseDouble(part.substring(6));
+            } else if (part.startsWith("profile=")) {
+                trace.profile = profileNamed(part.substring(8));
+            }
+        }
+    }
+
+    public static TripDetectionEngine.Profile profileNamed(String name) {
+        if ("activity".equals(name)) return TripDetectionEngine.ACTIVITY_PROFILE;
+        if ("service".equals(name)) return TripDetectionEngine.SERVICE_PROFILE;
+        throw new IllegalArgumentException("Unknown profile: " + name);
+    }
+
+    private static String attribute(String tag, String name) throws IOException {
+        int i = tag.indexOf(" " + name + "=");
+        if (i < 0) throw new IOException("trkpt without " + name);
+        int start = i + name.length() + 3;
+        char quote = tag.charAt(start - 1);
+        int end = tag.indexOf(quote, start);
+        return tag.substring(start, end);
+    }
+
+    private static String element(String body, String name) {
+        int start = body.indexOf("<" + name + ">");
+        if (start < 0) return null;
+        start += name.length() + 2;
+        int end = body.indexOf("</" + name + ">", start);
+        return end > start ? body.substring(start, end).trim() : null;
+    }
+
+    private static long parseIsoTime(String text) throws IOException {
+        String pattern = text.indexOf('.') >= 0 ? "yyyy-MM-dd'T'HH:mm:ss.SSSX" : "yyyy-MM-dd'T'HH:mm:ssX";
+        if (text.indexOf('.') >= 0) {
+            // Normalize fractional seconds to milliseconds
+            int dot = text.indexOf('.');
+            int zone = dot + 1;
+            while (zone < text.length() && Character.isDigit(text.charAt(zone))) zone++;
+            String fraction = (text.substring(dot + 1, zone) + "000").substring(0, 3);
+            text = text.substring(0, dot + 1) + fraction + text.substring(zone);
+        }
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try {
+            return format.parse(text).getTime();
+        } catch (ParseException e) {
+            throw new IOException("Bad GPX time: " + text);
+        }
+    }
+
+    // ----- Command line -----
+
+    public static void main(String[] args) throws IOException {
+        TripDetectionEngine.Profile profile = TripDetectionEngine.SERVICE_PROFILE;
+        int iterations = 1;
+        List<File> files = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--profile".equals(args[i]) && i + 1 < args.length) {
+                profile = profileNamed(args[++i]);
+            } else if ("--iterations".equals(args[i]) && i + 1 < args.length) {
+                iterations = Math.max(1, Integer.parseInt(args[++i]));
+            } else {
+                collect(new File(args[i]), files);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: TripReplay [--profile activity|service] [--iterations N] trace-or-directory...");
+            System.exit(2);
+        }
+
+        List<Trace> traces = new ArrayList<>();
+        long totalFixes = 0;
+        for (File file : files) {
+            Trace trace = read(file);
+            traces.add(trace);
+            totalFixes += trace.size;
+        }
+
+        // One engine per profile in use; a trace's own profile wins
+        TripDetectionEngine defaultEngine = new TripDetectionEngine(profile);
+        TripDetectionEngine[] engines = new TripDetectionEngine[traces.size()];
+        for (int i = 0; i < engines.length; i++) {
+            TripDetectionEngine.Profile traceProfile = traces.get(i).profile;
+            engines[i] = traceProfile == null || traceProfile == profile
+                ? defaultEngine : new TripDetectionEngine(traceProfile);
+        }
+
+        // Correctness pass
+        TripDistanceFilter distance = new TripDistanceFilter();
+        Result result = new Result();
+        int failures = 0;
+        for (int t = 0; t < traces.size(); t++) {
+            Trace trace = traces.get(t);
+            replay(trace, engines[t], distance, result);
+            boolean tripsOk = trace.expectedTrips < 0 || trace.expectedTrips == result.trips;
+            boolean milesOk = Double.isNaN(trace.expectedMiles)
+                || Math.abs(result.miles - trace.expectedMiles) <= Math.max(MILES_TOLERANCE, trace.expectedMiles * 0.02);
+            if (!tripsOk || !milesOk) failures++;
+
+            StringBuilder line = new StringBuilder();
+            line.append(tripsOk && milesOk ? "ok   " : "FAIL ").append(trace.name)
+                .append(": ").append(trace.size).append(" fixes, ")
+                .append(result.trips).append(" trips");
+            if (trace.expectedTrips >= 0) line.append(" (expected ").append(trace.expectedTrips).append(")");
+            line.append(String.format(Locale.US, ", %.2f mi", result.miles));
+            if (!Double.isNaN(trace.expectedMiles)) {
+                double error = result.miles - trace.expectedMiles;
+                line.append(String.format(Locale.US, " (expected %.2f, error %+.2f mi / %+.1f%%)", trace.expectedMiles,
+                    error, trace.expectedMiles > 0 ? 100 * error / trace.expectedMiles : 0));
+            }
+            if (result.discardedTrips > 0) line.append(", ").append(result.discardedTrips).append(" too short");
+            line.append(String.format(Locale.US, " [start %d pause %d resume %d end %d split %d]",
+                result.eventCounts[TripDetectionEngine.EVENT_TRIP_STARTED],
+                result.eventCounts[TripDetectionEngine.EVENT_TRIP_PAUSED],
+                result.eventCounts[TripDetectionEngine.EVENT_TRIP_RESUMED],
+                result.eventCounts[TripDetectionEngine.EVENT_TRIP_ENDED],
+                result.eventCounts[TripDetectionEngine.EVENT_TRIP_SPLIT]));
+            System.out.println(line);
+        }
+
+        // Throughput pass - same engines and result reused, nothing allocated per fix
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (int t = 0; t < traces.size(); t++) {
+                replay(traces.get(t), engines[t], distance, result);
+            }
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        System.out.println(String.format(Locale.US,
+            "%d traces x %d iterations in %.3f s: %.0f traces/s, %.0f fixes/s",
+            traces.size(), iterations, seconds,
+            traces.size() * (double) iterations / seconds, totalFixes * (double) iterations / seconds));
+
+        if (failures > 0) {
+            System.out.println(failures + " of " + traces.size() + " traces did not match expectations");
+            System.exit(1);
+        }
+    }
+
+    private static void collect(File file, List<File> files) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) return;
+            Arrays.sort(children);
+            for (File child : children) collect(child, files);
+        } else if (file.isFile()) {
+            files.add(file);
+        }
+    }
+}